@@ -34,6 +34,7 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.MacAddress;
 import android.net.Network;
@@ -47,73 +48,119 @@ import android.net.wifi.WifiManager;
 import android.net.wifi.WifiNetworkSuggestion;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.text.TextUtils;
 
+import androidx.annotation.MainThread;
 import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
 
 import com.hmdm.MDMService;
+import com.hmdm.wifimanager.connect.CandidateQueue;
+import com.hmdm.wifimanager.connect.ConnectionEngine;
+import com.hmdm.wifimanager.connect.ConnectionStateMachine;
 import com.hmdm.wifimanager.model.AllowedItem;
-import com.hmdm.wifimanager.model.HiddenWiFiItem;
+import com.hmdm.wifimanager.model.Bssid;
 import com.hmdm.wifimanager.model.MDMConfig;
+import com.hmdm.wifimanager.model.SecurityProfile;
 import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.platform.AndroidWifiPlatform;
+import com.hmdm.wifimanager.platform.ConfiguredNetworks;
+import com.hmdm.wifimanager.platform.NetworkProvisioner;
+import com.hmdm.wifimanager.platform.SuggestionSync;
+import com.hmdm.wifimanager.policy.KnownGoodCache;
+import com.hmdm.wifimanager.policy.PolicyHolder;
+import com.hmdm.wifimanager.policy.WiFiPolicy;
+import com.hmdm.wifimanager.scan.AccessPointCache;
+import com.hmdm.wifimanager.scan.ScanDelta;
+import com.hmdm.wifimanager.scan.ScanDiffer;
+import com.hmdm.wifimanager.scan.ScanIndex;
+import com.hmdm.wifimanager.scan.ScanScheduler;
+import com.hmdm.wifimanager.score.ConnectionHistory;
+import com.hmdm.wifimanager.score.ScoringEngine;
+import com.hmdm.wifimanager.score.WeightedScorer;
+import com.hmdm.wifimanager.telemetry.ConnectivityTelemetry;
 import com.hmdm.wifimanager.ui.fragments.IMainView;
 import com.hmdm.wifimanager.ui.fragments.IParamsView;
+import com.hmdm.wifimanager.util.LongObjectMap;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * All the state is owned by the worker thread: the broadcasts, scan processing, policy evaluation
+ * and WifiManager calls run there. The UI thread only renders the published immutable snapshots.
+ */
 public class Presenter {
     private final static String TAG = "HeadwindWiFi";
+    private final static String PREFERENCES = "com.hmdm.wifimanager.PREFERENCES";
+    private final static String PREF_PROVISIONED = "provisioned";
+    private final static String PREF_SUGGESTIONS = "suggestions";
+    private final static String PREF_SUGGESTION_SALT = "suggestionSalt";
+    /**
+     * Passphrase of the suggestions built for removal only.
+     */
+    private final static String REMOVAL_PASSPHRASE = "removed-suggestion";
     /**
-     * Interval between scans.
+     * Signal level of the connection which doesn't need frequent scans, dBm.
      */
-    private static int SCAN_DELAY = 5 * 1000;
+    private final static int GOOD_RSSI = -70;
     /**
      * Receiver to get the network scanning results.
      */
     class ScanReceiver extends BroadcastReceiver {
         @Override
         public void onReceive(Context context, Intent intent) {
+            boolean resultsUpdated = true;
             if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.M) {
-                boolean resultsUpdated = intent.getBooleanExtra(EXTRA_RESULTS_UPDATED, false);
+                resultsUpdated = intent.getBooleanExtra(EXTRA_RESULTS_UPDATED, false);
                 MDMService.Log.d(TAG, "ScanReceiver; onReceive(); resultsUpdated: " + resultsUpdated);
-
-                // Refresh data only if there are new results or this is the first scan
-                if (resultsUpdated || lastScanSSIDMap == null || lastScanBSSIDMap == null) {
-                    lastScanSSIDMap = createSSIDMap(wifiManager.getScanResults());
-                    lastScanBSSIDMap = createBSSIDMap(wifiManager.getScanResults());
-                    MDMService.Log.d(TAG, "ScanReceiver; onReceive(); lastScan.size(): " + lastScanSSIDMap.size());
-
-                    updateConnectedWiFiNetwork();
-                    if (iMainView != null) iMainView.onScanComplete(createList());
-                    if (iParamsView != null) iParamsView.onParamsResults(lastScanSSIDMap, connectionInfo, connectedState);
-                }
             }
-            else {
-                lastScanSSIDMap = createSSIDMap(wifiManager.getScanResults());
-                lastScanBSSIDMap = createBSSIDMap(wifiManager.getScanResults());
-                MDMService.Log.d(TAG, "ScanReceiver; onReceive(); lastScan.size(): " + lastScanSSIDMap.size());
 
-                updateConnectedWiFiNetwork();
-                if (iMainView != null) iMainView.onScanComplete(createList());
-                if (iParamsView != null) iParamsView.onParamsResults(lastScanSSIDMap, connectionInfo, connectedState);
+            if (scanRequestedAt != 0) {
+                telemetry.record(ConnectivityTelemetry.Stage.SCAN, null, SystemClock.elapsedRealtime() - scanRequestedAt);
+                scanRequestedAt = 0;
             }
 
+            // Refresh data if there are new results (also from the scans of the system or other apps)
+            // or this is the first scan
+            List<WiFiItem> results = getScanResults();
+            long newest = ScanIndex.getNewestTimestamp(results);
+            if (resultsUpdated || lastScanSSIDMap == null || lastScanBSSIDMap == null || newest > lastResultsTimestamp)
+                onScanResults(results, newest);
+
             // Schedule next scan
-            handler.removeCallbacksAndMessages(null);
-            handler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    startScan();
-                }
-            }, SCAN_DELAY);
+            long now = SystemClock.elapsedRealtime();
+            scanScheduler.onScanResults(now, newest);
+            scheduleScan(scanScheduler.getNextDelay(now));
         }
     }
 
+    /**
+     * Applies the new scanning results: only the changes are delivered to the views.
+     */
+    private void onScanResults(List<WiFiItem> results, long newest) {
+        boolean firstScan = lastScanSSIDMap == null;
+        resultsReceivedAt = SystemClock.elapsedRealtime();
+        lastResultsTimestamp = Math.max(lastResultsTimestamp, newest);
+        ScanDelta delta = scanDiffer.update(accessPointCache.update(results), policies.get().getAllowedList());
+        ScanIndex index = scanDiffer.getIndex();
+        lastScanBSSIDMap = index.getByBssid();
+        lastScanSSIDMap = index.getBySsid();
+        engine.setScan(index, firstScan || !delta.getAdded().isEmpty());
+        MDMService.Log.d(TAG, "ScanReceiver; onReceive(); lastScan.size(): " + lastScanSSIDMap.size() + "; " + delta);
+
+        updateConnectedWiFiNetwork();
+        resultsReceivedAt = 0;
+        if (firstScan || !delta.isEmpty())
+            publishScan(firstScan ? null : delta);
+    }
+
     /**
      * Receiver to get the network states.
      */
@@ -127,17 +174,38 @@ public class Presenter {
                     MDMService.Log.d(TAG, "ConnectionStateReceiver; onReceive(); NETWORK_STATE_CHANGED_ACTION; netInfo: " + netInfo.toString());
 
                     connectedState = netInfo.getState();
+                    engine.setDisconnected(connectedState == NetworkInfo.State.DISCONNECTED);
+                    long now = SystemClock.elapsedRealtime();
 
                     if (netInfo.isConnected()) {
-                        tryConnectToId = -1;
-                        tryConnectToSSID = "";
-                        tryConnectToBSSID = "";
+                        if (connectedAt == 0)
+                            connectedAt = now;
+                        if (connection.isActive()) {
+                            worker.removeCallbacks(connectionDeadline);
+                            connection.onConnected(now);
+                            MDMService.Log.d(TAG, "ConnectionStateReceiver; onReceive(); connected; " + connection);
+                            recordConnectionTelemetry();
+                            if (!TextUtils.isEmpty(connection.getSsid()))
+                                engine.recordSuccess(connection.getSsid(), connection.getBssid(), connection.getTotalDuration());
+                        }
+                        // Let the network roam again
+                        engine.onConnected();
 
                         updateConnectedWiFiNetwork();
-                        if (iMainView != null)
-                            iMainView.onScanComplete(createList());
-                        if (iParamsView != null)
-                            iParamsView.onParamsResults(lastScanSSIDMap, connectionInfo, connectedState);
+                        rememberKnownGood();
+                        if (disconnectedAt != 0) {
+                            String ssid = connectionInfo != null ? Utils.unquote(connectionInfo.getSSID()) : null;
+                            telemetry.record(ConnectivityTelemetry.Stage.DISCONNECTED, ssid, now - disconnectedAt);
+                            disconnectedAt = 0;
+                            MDMService.Log.d(TAG, "ConnectionStateReceiver; onReceive(); telemetry; " + ssid + ": "
+                                    + telemetry.getSnapshot().format(ssid));
+                        }
+                        publishScan(null);
+                    }
+                    else if (connectedState == NetworkInfo.State.DISCONNECTED && connectedAt != 0) {
+                        connectedAt = 0;
+                        disconnectedAt = now;
+                        connectKnownGood("disconnected");
                     }
                 }
             }
@@ -145,100 +213,44 @@ public class Presenter {
                 SupplicantState newState = intent.getParcelableExtra(WifiManager.EXTRA_NEW_STATE);
                 int error = intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, -1);
 
-                if (tryConnectToId != -1) {
-                    WifiConfiguration config = searchConfigured(tryConnectToId);
+                MDMService.Log.d(TAG, "ConnectionStateReceiver; onReceive(); SUPPLICANT_STATE_CHANGED_ACTION; newState: "
+                        + newState + "; error: " + error + "; connection: " + connection);
 
-                    if (config != null) {
-                        MDMService.Log.d(TAG, "ConnectionStateReceiver; onReceive(); SUPPLICANT_STATE_CHANGED_ACTION; newState: "
-                                + newState.toString() + "; error: " + error + "; tryConnectToId: " + tryConnectToId + "; (" + config.SSID + "); tryConnectToSSID: " + tryConnectToSSID);
-                    }
-                    else {
-                        MDMService.Log.d(TAG, "ConnectionStateReceiver; onReceive(); SUPPLICANT_STATE_CHANGED_ACTION; newState: "
-                                + newState.toString() + "; error: " + error + "; tryConnectToId: " + tryConnectToId + "; tryConnectToSSID: " + tryConnectToSSID);
-                    }
+                long now = SystemClock.elapsedRealtime();
+                if (newState == SupplicantState.DISCONNECTED) {
+                    if (connection.onDisconnected(error == ERROR_AUTHENTICATING, now))
+                        onConnectionFailed(error);
                 }
                 else {
-                    MDMService.Log.d(TAG, "ConnectionStateReceiver; onReceive(); SUPPLICANT_STATE_CHANGED_ACTION; newState: "
-                            + newState.toString() + "; error: " + error + "; tryConnectToId: " + tryConnectToId + "; tryConnectToSSID: " + tryConnectToSSID);
-                }
-
-                if (newState == SupplicantState.DISCONNECTED) {
-                    if (error == ERROR_AUTHENTICATING) {
-                        if (tryConnectToId != -1) {
-                            WifiConfiguration config = searchConfigured(tryConnectToId);
-
-                            if (iParamsView != null)
-                                iParamsView.onConnectionError(error, config == null ? "" : config.SSID);
-
-                            // Forget the network
-                            wifiManager.disableNetwork(tryConnectToId);
-                            wifiManager.removeNetwork(tryConnectToId);
-
-                            if (lastConfig != null && lastConfig.allowed != null && !TextUtils.isEmpty(tryConnectToSSID) && !TextUtils.isEmpty(tryConnectToBSSID)) {
-                                for (AllowedItem item : lastConfig.allowed) {
-                                    if (tryConnectToSSID.equalsIgnoreCase(item.ssid) || tryConnectToBSSID.equalsIgnoreCase(item.bssid))
-                                        item.wrongPassword = true;
-                                }
-
-                                tryConnectToSSID = "";
-                                tryConnectToBSSID = "";
-                            }
-
-                            tryConnectToId = -1;
-                        }
-                    }
-                    else if (tryConnectToId != -1) {
-                        // Workaround!
-                        // On some devices, the state SupplicantState.DISCONNECTED may occasionally sent during the connection
-                        // To exclude wrong handling of the series of states during the connection attempt,
-                        // I introduced the parameter tryAttempts.
-                        // Here we ignore SupplicantState.DISCONNECTED 3 times during the connection
-                        if (tryAttempts < 3)
-                            tryAttempts++;
-                        else {
-                            tryAttempts = 0;
-
-                            WifiConfiguration config = searchConfigured(tryConnectToId);
-
-                            if (iParamsView != null)
-                                iParamsView.onConnectionError(error, config == null ? "" : config.SSID);
-
-                            // Forget the network
-                            wifiManager.disableNetwork(tryConnectToId);
-                            wifiManager.removeNetwork(tryConnectToId);
-
-                            if (lastConfig != null && lastConfig.allowed != null && !TextUtils.isEmpty(tryConnectToSSID) && !TextUtils.isEmpty(tryConnectToBSSID)) {
-                                for (AllowedItem item : lastConfig.allowed) {
-                                    if (tryConnectToSSID.equalsIgnoreCase(item.ssid) || tryConnectToBSSID.equalsIgnoreCase(item.bssid))
-                                        item.wrongPassword = true;
-                                }
-
-                                tryConnectToSSID = "";
-                                tryConnectToBSSID = "";
-                            }
-
-                            tryConnectToId = -1;
-                        }
-                    }
+                    ConnectionStateMachine.State state = getConnectionState(newState);
+                    if (state != null && connection.advance(state, now))
+                        scheduleConnectionDeadline();
                 }
             }
+            else if (intent.getAction().equals(ConfiguredNetworks.CONFIGURED_NETWORKS_CHANGED_ACTION)) {
+                configuredNetworks.invalidate();
+            }
             else if (intent.getAction().equals(WIFI_STATE_CHANGED_ACTION)) {
                 int state = intent.getIntExtra(WifiManager.EXTRA_WIFI_STATE, WifiManager.WIFI_STATE_UNKNOWN);
                 if (state != lastWiFiState) {
                     lastWiFiState = state;
+                    configuredNetworks.invalidate();
 
                     MDMService.Log.d(TAG, "ConnectionStateReceiver; onReceive(); WIFI_STATE_CHANGED_ACTION; state: " + Utils.formatWiFiState(state)
                             + "; lastWiFiState: " + Utils.formatWiFiState(lastWiFiState));
 
                     switch (state) {
                         case WIFI_STATE_ENABLED:
-                            handler.removeCallbacksAndMessages(null);
-                            startScan();
-                            if (iMainView != null) iMainView.onSetWiFiState(true);
+                            requestScan("wifiEnabled", false);
+                            // The saved networks are not available while WiFi is off
+                            provisionNetworks(policies.get());
+                            connectKnownGood("wifiEnabled");
+                            publishWiFiState(true);
                             break;
                         case WIFI_STATE_DISABLED:
-                            startScanTime = 0;
-                            if (iMainView != null) iMainView.onSetWiFiState(false);
+                            scanScheduler.cancel();
+                            cancelConnection();
+                            publishWiFiState(false);
                             break;
                     }
                 }
@@ -248,91 +260,334 @@ public class Presenter {
 
     private static final Presenter instance = new Presenter();
 
-    private Handler handler = new Handler();
-    private WifiManager wifiManager;
     /**
-     * Interface for MainFragment events.
+     * Thread owning the state of the presenter.
+     */
+    private final HandlerThread workerThread;
+    /**
+     * Runs the tasks on the worker thread.
+     */
+    private final Handler worker;
+    /**
+     * Schedules the scans on the worker thread (separate from the tasks, so it can be cleared).
+     */
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * WiFi functions of the system, metered.
+     */
+    private final AndroidWifiPlatform platform;
+    /**
+     * Saved networks, requested from the system only when changed.
+     */
+    private final ConfiguredNetworks configuredNetworks;
+    /**
+     * Saves the allowed networks when the configuration is applied.
+     */
+    private final NetworkProvisioner provisioner;
+    /**
+     * Records of the provisioner as saved in the preferences, null if not loaded.
+     */
+    private String provisionedJson;
+    /**
+     * Outcome of the last provisioning, null if none.
+     */
+    private volatile NetworkProvisioner.Result provisioning;
+    /**
+     * Network suggestions submitted by the app, null if not loaded.
+     */
+    private SuggestionSync suggestionSync;
+    /**
+     * Records of the suggestions as saved in the preferences.
+     */
+    private String suggestionsJson;
+    /**
+     * Interface for MainFragment events, used on the UI thread only.
      */
     private IMainView iMainView;
     /**
-     * Interface for ParamsFragment events.
+     * Interface for ParamsFragment events, used on the UI thread only.
      */
     private IParamsView iParamsView;
+    /**
+     * Latest state published for the UI.
+     */
+    private volatile WiFiSnapshot snapshot = WiFiSnapshot.EMPTY;
     private ScanReceiver scanReceiver;
     private ConnectionStateReceiver connectionStateReceiver;
     /**
      * List for latest scanning results.
      */
     private Map<String, WiFiItem> lastScanSSIDMap;
-    private Map<String, WiFiItem> lastScanBSSIDMap;
-    private long startScanTime = 0;
+    private LongObjectMap<WiFiItem> lastScanBSSIDMap;
+    /**
+     * Smoothed signal levels; keeps the access points missing from a few scans.
+     */
+    private final AccessPointCache accessPointCache = new AccessPointCache();
+    private final ScanDiffer scanDiffer = new ScanDiffer();
+    /**
+     * Displayed items by scanning result, valid for listCachePolicy only.
+     */
+    private final Map<WiFiItem, WiFiItem> listCache = new IdentityHashMap<>();
+    private WiFiPolicy listCachePolicy;
+    /**
+     * Decides when to scan, according to the platform throttling and the connection state.
+     */
+    private final ScanScheduler scanScheduler = ScanScheduler.create(Build.VERSION.SDK_INT >= Build.VERSION_CODES.P);
+    /**
+     * Time of the freshest processed scanning results, ms since boot.
+     */
+    private long lastResultsTimestamp;
+    private final Runnable periodicScan = new Runnable() {
+        @Override
+        public void run() {
+            requestScan("periodic", true);
+        }
+    };
     private int lastWiFiState;
     /**
-     * Latest configuration of Headwind MDM.
+     * Compiled configuration of Headwind MDM.
      */
-    private MDMConfig lastConfig;
+    private final PolicyHolder policies = new PolicyHolder();
     private WifiInfo connectionInfo;
     private NetworkInfo.State connectedState;
     /**
-     * id of the network we're currently connecting.
+     * Automatic connection: candidates, failover and the known good access points.
+     */
+    private final ConnectionEngine engine;
+    /**
+     * Connection attempt made by the app, tracked by the engine.
      */
-    private int tryConnectToId = -1;
+    private final ConnectionStateMachine connection;
+    /**
+     * Latency of the scans, connections and enforcement.
+     */
+    private final ConnectivityTelemetry telemetry = new ConnectivityTelemetry();
+    /**
+     * Time of our scan request waiting for the results, ms since boot; 0 if none.
+     */
+    private long scanRequestedAt;
+    /**
+     * Time of the scanning results being processed, ms since boot; 0 if none.
+     */
+    private long resultsReceivedAt;
+    /**
+     * Time of the current connection, ms since boot; 0 if not connected.
+     */
+    private long connectedAt;
+    /**
+     * Time when the connection was lost, ms since boot; 0 if connected or unknown.
+     */
+    private long disconnectedAt;
+    /**
+     * Aborts the connection attempt stuck in a phase.
+     */
+    private final Runnable connectionDeadline = new Runnable() {
+        @Override
+        public void run() {
+            if (connection.checkDeadline(SystemClock.elapsedRealtime()))
+                onConnectionFailed(-1);
+            else
+                scheduleConnectionDeadline();
+        }
+    };
     /**
-     * SSID of the network we're currently connecting.
+     * Outcomes of the connection attempts, used to rank the networks.
      */
-    private String tryConnectToSSID = "";
-    private String tryConnectToBSSID = "";
-    private int tryAttempts = 0;
+    private final ConnectionHistory connectionHistory = new ConnectionHistory();
 
     public static Presenter getInstance() {
         return instance;
     }
 
     private Presenter() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P)
-            SCAN_DELAY = 30 * 1000;
+        MDMService.Log.d(TAG, "ctr; scan interval: " + scanScheduler.getInterval() + " ms");
+
+        WifiManager wifiManager = (WifiManager) WFMApp.getContext().getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+        platform = wifiManager != null ? new AndroidWifiPlatform(wifiManager) : null;
+        configuredNetworks = new ConfiguredNetworks(platform);
+        provisioner = new NetworkProvisioner(configuredNetworks, new NetworkProvisioner.Configurator() {
+            @Override
+            public boolean configure(WifiConfiguration config, AllowedItem item) {
+                return configureAllowed(config, item);
+            }
+        });
+        engine = new ConnectionEngine(platform, configuredNetworks, policies, connectionHistory,
+                new ConnectionEngine.Storage() {
+                    @Override
+                    public String load(String key) {
+                        SharedPreferences preferences = getPreferences();
+                        return preferences != null ? preferences.getString(key, null) : null;
+                    }
+
+                    @Override
+                    public void save(String key, String json) {
+                        SharedPreferences preferences = getPreferences();
+                        if (preferences != null)
+                            preferences.edit().putString(key, json).apply();
+                    }
+                },
+                new ConnectionEngine.Clock() {
+                    @Override
+                    public long currentTimeMillis() {
+                        return System.currentTimeMillis();
+                    }
 
-        MDMService.Log.d(TAG, "ctr; SCAN_DELAY: " + SCAN_DELAY + " ms");
+                    @Override
+                    public long elapsedRealtime() {
+                        return SystemClock.elapsedRealtime();
+                    }
+                },
+                new ConnectionEngine.Listener() {
+                    @Override
+                    public boolean onProvisioningNeeded(WiFiPolicy policy) {
+                        // Only the skipped networks may be saved after the scan
+                        NetworkProvisioner.Result last = provisioning;
+                        return (last == null || last.getSkipped() > 0) && provisionNetworks(policy);
+                    }
+
+                    @Override
+                    public void onCandidateChosen(CandidateQueue.Candidate candidate) {
+                        MDMService.Log.d(TAG, "connectNextCandidate; " + candidate);
+                        if (resultsReceivedAt != 0)
+                            telemetry.record(ConnectivityTelemetry.Stage.DECISION, candidate.getAccessPoint().getSSID(),
+                                    SystemClock.elapsedRealtime() - resultsReceivedAt);
+                    }
+
+                    @Override
+                    public void onConnectionStarted(String ssid, long enableTime) {
+                        telemetry.record(ConnectivityTelemetry.Stage.ENABLE, ssid, enableTime);
+                        scheduleConnectionDeadline();
+                    }
 
-        wifiManager = (WifiManager) WFMApp.getContext().getApplicationContext().getSystemService(Context.WIFI_SERVICE);
+                    @Override
+                    public void onConnectionError(int error, String ssid) {
+                        publishConnectionError(error, ssid);
+                    }
+                });
+        connection = engine.getConnection();
+
+        workerThread = new HandlerThread(TAG);
+        workerThread.start();
+        worker = new Handler(workerThread.getLooper());
+        handler = new Handler(workerThread.getLooper());
     }
 
+    @MainThread
     public void setiMainView(IMainView iMainView) {
         this.iMainView = iMainView;
 
-        if (iMainView != null && wifiManager != null)
-            iMainView.onSetWiFiState(wifiManager.isWifiEnabled());
+        if (iMainView != null) {
+            worker.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (platform != null)
+                        publishWiFiState(platform.isWifiEnabled());
+                }
+            });
+        }
     }
 
+    @MainThread
     public void setiParamsView(IParamsView iParamsView) {
         this.iParamsView = iParamsView;
     }
 
-    public void setLastConfig(MDMConfig lastConfig) {
-        this.lastConfig = lastConfig;
-        if (lastConfig != null) {
-            ArrayList<AllowedItem> list = new ArrayList<>();
-            for (AllowedItem item : lastConfig.allowed) {
-                if (!TextUtils.isEmpty(item.ssid) || !TextUtils.isEmpty(item.bssid))
-                    list.add(item);
+    /**
+     * Compiles the configuration in background and applies it when ready.
+     */
+    public void setLastConfig(final MDMConfig lastConfig) {
+        worker.post(new Runnable() {
+            @Override
+            public void run() {
+                // The wrong passwords known from the previous configurations are kept
+                WiFiPolicy policy = policies.compile(lastConfig, engine.getFailureLedger());
+                scanScheduler.setMaxResultAge(lastConfig != null ? lastConfig.scanMaxAge * 1000L : 0);
+                engine.setScoringEngine(new ScoringEngine(new WeightedScorer(lastConfig != null ? lastConfig.scoring : null), connectionHistory));
+                MDMService.Log.d(TAG, "setLastConfig; policy version: " + policy.getVersion() + "; mode: " + policy.getMode());
+
+                provisionNetworks(policy);
+                onPolicyChanged();
             }
+        });
+    }
 
-            this.lastConfig.allowed = list;
-        }
-
+    private void onPolicyChanged() {
         updateConnectedWiFiNetwork();
-        if (iMainView != null) iMainView.onScanComplete(createList());
-        if (iParamsView != null) iParamsView.onParamsResults(lastScanSSIDMap, connectionInfo, connectedState);
+        publishScan(null);
+    }
+
+    /**
+     * Publishes the scanning results and the connection state for the views.
+     * @param delta changes since the previous scan, null if the views should be fully refreshed.
+     */
+    private void publishScan(@Nullable final ScanDelta delta) {
+        final WiFiSnapshot current = snapshot.withScan(createList(), lastScanSSIDMap)
+                .withConnection(connectionInfo, connectedState);
+        snapshot = current;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (iMainView != null) iMainView.onScanComplete(current.getItems(), delta);
+                if (iParamsView != null && current.getSsidMap() != null)
+                    iParamsView.onParamsResults(current.getSsidMap(), delta, current.getConnectionInfo(), current.getConnectedState());
+            }
+        });
+    }
+
+    private void publishConnection() {
+        final WiFiSnapshot current = snapshot.withConnection(connectionInfo, connectedState);
+        snapshot = current;
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (iMainView != null) iMainView.onSetConnectionParams(current.getConnectionInfo(), current.getConnectedState());
+            }
+        });
+    }
+
+    private void publishWiFiState(final boolean enabled) {
+        snapshot = snapshot.withWiFiEnabled(enabled);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (iMainView != null) iMainView.onSetWiFiState(enabled);
+            }
+        });
+    }
+
+    private void publishConnectionError(final int error, final String ssid) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (iParamsView != null) iParamsView.onConnectionError(error, ssid);
+            }
+        });
     }
 
     public void startScan() {
-        MDMService.Log.d(TAG, "startScan;");
+        worker.post(new Runnable() {
+            @Override
+            public void run() {
+                requestScan("startScan", false);
+            }
+        });
+    }
 
-        if (wifiManager != null) {
+    /**
+     * Starts the scan if the scheduler allows it, otherwise schedules the next attempt.
+     * @param trigger what caused the request, for the logs.
+     * @param periodic true if the request should respect the interval of the current connection state.
+     */
+    private void requestScan(String trigger, boolean periodic) {
+        MDMService.Log.d(TAG, "startScan; trigger: " + trigger);
+
+        if (platform != null) {
             if (scanReceiver == null) {
                 MDMService.Log.d(TAG, "startScan; init ScanReceiver");
                 scanReceiver = new ScanReceiver();
-                WFMApp.getContext().getApplicationContext().registerReceiver(scanReceiver, new IntentFilter(SCAN_RESULTS_AVAILABLE_ACTION));
+                WFMApp.getContext().getApplicationContext().registerReceiver(scanReceiver, new IntentFilter(SCAN_RESULTS_AVAILABLE_ACTION),
+                        null, worker);
             }
 
             if (connectionStateReceiver == null) {
@@ -342,37 +597,66 @@ public class Presenter {
                 intentFilter.addAction(NETWORK_STATE_CHANGED_ACTION);
                 intentFilter.addAction(SUPPLICANT_STATE_CHANGED_ACTION);
                 intentFilter.addAction(WIFI_STATE_CHANGED_ACTION);
-                WFMApp.getContext().getApplicationContext().registerReceiver(connectionStateReceiver, intentFilter);
+                intentFilter.addAction(ConfiguredNetworks.CONFIGURED_NETWORKS_CHANGED_ACTION);
+                WFMApp.getContext().getApplicationContext().registerReceiver(connectionStateReceiver, intentFilter, null, worker);
             }
 
-            if (wifiManager.isWifiEnabled()) {
-                MDMService.Log.d(TAG, "startScan; wifiManager.isWifiEnabled(): true");
+            if (platform.isWifiEnabled()) {
+                MDMService.Log.d(TAG, "startScan; platform.isWifiEnabled(): true");
 
-                if (System.currentTimeMillis() - startScanTime > SCAN_DELAY) {
-                    boolean start = wifiManager.startScan();
-                    startScanTime = System.currentTimeMillis();
+                long now = SystemClock.elapsedRealtime();
+                if (periodic && !scanScheduler.isInFlight())
+                    pollScanResults(now);
+                ScanScheduler.Decision decision = scanScheduler.request(now, trigger, periodic);
+                MDMService.Log.d(TAG, "startScan; " + decision);
 
-                    MDMService.Log.d(TAG, "startScan; wifiManager.startScan(): " + start + "; startScanTime: " + startScanTime);
+                if (decision.getAction() == ScanScheduler.Action.START) {
+                    boolean start = platform.startScan();
+                    scanScheduler.onStartResult(start, now);
+                    scanRequestedAt = start ? now : 0;
 
-                    if (!start) {
-                        handler.removeCallbacksAndMessages(null);
-                        handler.postDelayed(new Runnable() {
-                            @Override
-                            public void run() {
-                                startScan();
-                            }
-                        }, SCAN_DELAY);
-                    }
+                    MDMService.Log.d(TAG, "startScan; platform.startScan(): " + start + "; " + scanScheduler);
+
+                    // If the results don't arrive, try again after the timeout
+                    scheduleScan(start ? ScanScheduler.SCAN_TIMEOUT : scanScheduler.getNextDelay(now));
                 }
                 else
-                    MDMService.Log.d(TAG, "startScan; delta time < SCAN_DELAY");
+                    scheduleScan(decision.getDelay());
             }
             else
-                MDMService.Log.d(TAG, "startScan; wifiManager.isWifiEnabled(): false");
+                MDMService.Log.d(TAG, "startScan; platform.isWifiEnabled(): false");
+        }
+    }
+
+    /**
+     * Applies the results of the scans started by the system or other apps since our last scan, if any.
+     * Reading the results is much cheaper than scanning, and fresh results make the periodic scan unnecessary.
+     */
+    private void pollScanResults(long now) {
+        List<WiFiItem> results = getScanResults();
+        long newest = ScanIndex.getNewestTimestamp(results);
+        if (newest > lastResultsTimestamp) {
+            MDMService.Log.d(TAG, "pollScanResults; new results, age: " + (now - newest) + " ms");
+            onScanResults(results, newest);
+            scanScheduler.onScanResults(now, newest);
         }
     }
 
+    private void scheduleScan(long delay) {
+        handler.removeCallbacksAndMessages(null);
+        handler.postDelayed(periodicScan, delay);
+    }
+
     public void stopScan() {
+        worker.post(new Runnable() {
+            @Override
+            public void run() {
+                cancelScan();
+            }
+        });
+    }
+
+    private void cancelScan() {
         MDMService.Log.d(TAG, "stopScan;");
 
         if (scanReceiver != null) {
@@ -381,63 +665,57 @@ public class Presenter {
         }
 
         handler.removeCallbacksAndMessages(null);
-        startScanTime = 0;
+        scanScheduler.cancel();
+        // The result of the attempt would be missed
+        cancelConnection();
 
         if (connectionStateReceiver != null) {
             WFMApp.getContext().getApplicationContext().unregisterReceiver(connectionStateReceiver);
             connectionStateReceiver = null;
+            // Without the broadcasts, the saved networks may change unnoticed
+            configuredNetworks.invalidate();
         }
+
+        if (platform != null)
+            MDMService.Log.d(TAG, "stopScan; " + platform.getMeter() + "; " + configuredNetworks);
+        MDMService.Log.d(TAG, "stopScan; telemetry; " + telemetry.getSnapshot());
     }
 
-    public void setWiFiState(boolean enable) {
-        if (wifiManager != null) {
-            if (enable && !wifiManager.isWifiEnabled()) {
-                wifiManager.setWifiEnabled(true);
-            }
-            else if (!enable && wifiManager.isWifiEnabled()) {
-                wifiManager.setWifiEnabled(false);
-                lastScanSSIDMap.clear();
-                lastScanBSSIDMap.clear();
-                if (iMainView != null) iMainView.onScanComplete(createList());
+    public void setWiFiState(final boolean enable) {
+        worker.post(new Runnable() {
+            @Override
+            public void run() {
+                applyWiFiState(enable);
             }
-        }
+        });
     }
 
-    private Map<String, WiFiItem> createSSIDMap(List<ScanResult> list) {
-        Map<String, WiFiItem> map = new HashMap<>();
-
-        if (list != null && list.size() > 0) {
-            for (ScanResult item : list) {
-                if (!TextUtils.isEmpty(item.SSID)) {
-                    map.put(item.SSID, new WiFiItem(item));
-                }
+    private void applyWiFiState(boolean enable) {
+        if (platform != null) {
+            if (enable && !platform.isWifiEnabled()) {
+                platform.setWifiEnabled(true);
             }
-        }
-
-        if (lastConfig != null) {
-            for (AllowedItem item : lastConfig.allowed) {
-                // the "hidden" flag is used only if network is not visible in the scan results
-                if (item.hidden && !map.containsKey(item.ssid) && (!TextUtils.isEmpty(item.ssid) || !TextUtils.isEmpty(item.bssid))) {
-                    map.put(item.ssid, new HiddenWiFiItem(item.ssid, item.security));
-                }
+            else if (!enable && platform.isWifiEnabled()) {
+                platform.setWifiEnabled(false);
+                accessPointCache.clear();
+                scanDiffer.clear();
+                lastScanSSIDMap = scanDiffer.getIndex().getBySsid();
+                lastScanBSSIDMap = scanDiffer.getIndex().getByBssid();
+                engine.setScan(scanDiffer.getIndex(), false);
+                publishScan(null);
             }
         }
-
-        return map;
     }
 
-    private Map<String, WiFiItem> createBSSIDMap(List<ScanResult> list) {
-        Map<String, WiFiItem> map = new HashMap<>();
-
-        if (list != null && list.size() > 0) {
-            for (ScanResult item : list) {
-                if (!TextUtils.isEmpty(item.BSSID)) {
-                    map.put(item.BSSID, new WiFiItem(item));
-                }
+    private List<WiFiItem> getScanResults() {
+        List<WiFiItem> result = new ArrayList<>();
+        List<ScanResult> scanResults = platform.getScanResults();
+        if (scanResults != null) {
+            for (ScanResult item : scanResults) {
+                result.add(new WiFiItem(item));
             }
         }
-
-        return map;
+        return result;
     }
 
     /**
@@ -445,138 +723,92 @@ public class Presenter {
      */
     private void updateConnectedWiFiNetwork() {
         getWiFiConnectionInfo();
+        updateScanState();
         updateConnectedWithConfig();
     }
 
+    /**
+     * Scan often while searching for a network, and rarely while the connection is good.
+     */
+    private void updateScanState() {
+        ScanScheduler.State state;
+        if (connectionInfo == null)
+            state = ScanScheduler.State.SEARCHING;
+        else if (connectionInfo.getRssi() < GOOD_RSSI)
+            state = ScanScheduler.State.CONNECTED_WEAK;
+        else
+            state = ScanScheduler.State.CONNECTED_GOOD;
+
+        if (state != scanScheduler.getState()) {
+            scanScheduler.setState(state);
+            MDMService.Log.d(TAG, "updateScanState; " + state + "; interval: " + scanScheduler.getInterval() + " ms");
+        }
+    }
+
     private void updateConnectedWithConfig() {
-        if (lastConfig != null) {
+        WiFiPolicy policy = policies.get();
+        if (policy.isConfigured()) {
             // Check if the active connection matches the configuration
             if (connectionInfo != null
                     && !TextUtils.isEmpty(Utils.unquote(connectionInfo.getSSID()))
                     && !TextUtils.isEmpty(Utils.unquote(connectionInfo.getBSSID()))) {
-                if (!lastConfig.allAllowed) {
-                    boolean allowed = false;
-
-                    if (lastConfig.allowed != null) {
-                        for (AllowedItem item : lastConfig.allowed) {
-                            if (!TextUtils.isEmpty(item.ssid)
-                                    && Utils.unquote(connectionInfo.getSSID()).equalsIgnoreCase(item.ssid)) {
-                                allowed = true;
-                            }
-                            else if (!TextUtils.isEmpty(item.bssid)
-                                    && Utils.unquote(connectionInfo.getBSSID()).equalsIgnoreCase(item.bssid)) {
-                                allowed = true;
-                            }
-                            break;
-                        }
-                    }
-
-                    // If we're connected to the network which isn't in the list, forget it and disconnect
-                    if (!allowed) {
-                        if (wifiManager != null) {
-                            wifiManager.disableNetwork(connectionInfo.getNetworkId());
-                            wifiManager.removeNetwork(connectionInfo.getNetworkId());
-                            wifiManager.disconnect();
-                        }
-
-                        // Refresh the parameters of the current connection
-                        getWiFiConnectionInfo();
-                        if (iMainView != null) iMainView.onSetConnectionParams(connectionInfo, connectedState);
-
-                        return;
-                    }
-                }
-                // Connection only to the password protected networks or networks configured on the server
-                else if (!lastConfig.freeAllowed) {
-                    boolean allowed = false;
+                if (policy.getMode() != WiFiPolicy.Mode.UNRESTRICTED) {
+                    String ssid = Utils.unquote(connectionInfo.getSSID());
 
                     // Check if the connected network is password protected
-                    WiFiItem current = getScanResultBySSID(Utils.unquote(connectionInfo.getSSID()));
-                    if (current.hasEncryption())
-                        allowed = true;
-                    else {
-                        if (lastConfig.allowed != null) {
-                            for (AllowedItem item : lastConfig.allowed) {
-                                // Add password check
-                                if (!TextUtils.isEmpty(item.ssid)
-                                        && Utils.unquote(connectionInfo.getSSID()).equalsIgnoreCase(item.ssid)) {
-                                    allowed = true;
-                                    break;
-                                }
-                                else if (!TextUtils.isEmpty(item.bssid)
-                                        && Utils.unquote(connectionInfo.getSSID()).equalsIgnoreCase(item.bssid)) {
-                                    allowed = true;
-                                    break;
-                                }
-                            }
-                        }
+                    boolean encrypted = false;
+                    if (policy.getMode() == WiFiPolicy.Mode.PROTECTED_OR_LISTED) {
+                        WiFiItem current = getScanResultBySSID(ssid);
+                        encrypted = current != null && current.hasEncryption();
                     }
 
                     // If we're connected to the network which isn't in the list or has no password, forget it and disconnect
-                    if (!allowed) {
-                        if (wifiManager != null) {
-                            wifiManager.disableNetwork(connectionInfo.getNetworkId());
-                            wifiManager.removeNetwork(connectionInfo.getNetworkId());
-                            wifiManager.disconnect();
+                    if (!policy.evaluate(ssid, connectionInfo.getBSSID(), encrypted).isAllowed()) {
+                        if (platform != null) {
+                            platform.disableNetwork(connectionInfo.getNetworkId());
+                            configuredNetworks.remove(connectionInfo.getNetworkId());
+                            platform.disconnect();
+                            if (connectedAt != 0)
+                                telemetry.record(ConnectivityTelemetry.Stage.ENFORCEMENT, ssid, SystemClock.elapsedRealtime() - connectedAt);
                         }
 
                         // Refresh the parameters of the current connection
                         getWiFiConnectionInfo();
-                        if (iMainView != null) iMainView.onSetConnectionParams(connectionInfo, connectedState);
+                        publishConnection();
 
                         return;
                     }
                 }
             }
-            // If there's no active connection
-            else {
-                if (lastConfig.allAllowed) {
-                    // Connection only to the password protected networks or networks configured on the server
-                    if (!lastConfig.freeAllowed) {
-                        // Search for allowed network with the best signal strength
-                        int bestId = getBestWiFiNetwork();
-
-                        // If not found, save the configured networks
-                        if (bestId == -1)
-                            saveAllowedFromConfig();
-
-                        // Search again for allowed network with the best signal strength
-                        bestId = getBestWiFiNetwork();
-
-                        // Trying to connect to the found network
-                        if (bestId != -1) {
-                            tryConnectToId = bestId;
-                            wifiManager.enableNetwork(bestId, true);
-                            wifiManager.reconnect();
-                        }
-                    }
-                }
-                // Connection only to the networks configured on the server
-                else
-                    tryConnectToAllowed();
+            // If there's no active connection and no attempt in progress,
+            // try the viable networks one by one, the best first
+            else if (platform != null && !connection.isActive()) {
+                engine.connectBest();
             }
         }
 
-        if (iMainView != null) iMainView.onSetConnectionParams(connectionInfo, connectedState);
+        publishConnection();
     }
 
     private WiFiItem getScanResultBySSID(String ssid) {
         WiFiItem result = null;
 
-        if (wifiManager != null && ssid != null) {
-            List<ScanResult> scanResults = wifiManager.getScanResults();
-
-            if (scanResults != null && scanResults.size() > 0) {
-                for (ScanResult item: scanResults) {
-                    if (!TextUtils.isEmpty(item.SSID) && item.SSID.equalsIgnoreCase(ssid)) {
-                        result = new WiFiItem(item);
-                        break;
+        if (platform != null && ssid != null) {
+            // The latest scanning results are applied on each broadcast, no need to request them again
+            if (lastScanSSIDMap != null && lastScanSSIDMap.size() > 0) {
+                result = lastScanSSIDMap.get(ssid);
+            }
+            else {
+                List<ScanResult> scanResults = platform.getScanResults();
+                if (scanResults != null) {
+                    for (ScanResult item: scanResults) {
+                        if (!TextUtils.isEmpty(item.SSID) && item.SSID.equalsIgnoreCase(ssid)) {
+                            result = new WiFiItem(item);
+                            break;
+                        }
                     }
                 }
             }
-            else if (lastScanSSIDMap != null && lastScanSSIDMap.size() > 0) {
-                result = lastScanSSIDMap.get(ssid);
-            }
         }
 
         return result;
@@ -584,20 +816,21 @@ public class Presenter {
 
     private WiFiItem getScanResultByBSSID(String bssid) {
         WiFiItem result = null;
+        long key = Bssid.parse(bssid);
 
-        if (wifiManager != null) {
-            List<ScanResult> scanResults = wifiManager.getScanResults();
+        if (platform != null && key != Bssid.NONE) {
+            List<ScanResult> scanResults = platform.getScanResults();
 
             if (scanResults != null && scanResults.size() > 0) {
                 for (ScanResult item: scanResults) {
-                    if (!TextUtils.isEmpty(item.BSSID) && item.BSSID.equalsIgnoreCase(bssid)) {
+                    if (Bssid.parse(item.BSSID) == key) {
                         result = new WiFiItem(item);
                         break;
                     }
                 }
             }
             else if (lastScanBSSIDMap != null && lastScanBSSIDMap.size() > 0) {
-                result = lastScanBSSIDMap.get(bssid);
+                result = lastScanBSSIDMap.get(key);
             }
         }
 
@@ -605,89 +838,106 @@ public class Presenter {
     }
 
     /**
-     * Get the networkId of the network having the best signal strength.
-     * @return
+     * After WiFi is turned on or the connection is lost, connects to the access point
+     * where the last connection succeeded, without waiting for the scan (see ConnectionEngine).
+     * @param trigger reason of the reconnection, for logging.
      */
-    @SuppressWarnings("MissingPermission")
-    private int getBestWiFiNetwork() {
-        if (wifiManager != null && lastScanSSIDMap != null) {
-            List<WifiConfiguration> list = wifiManager.getConfiguredNetworks();
-            if (list != null) {
-                ArrayList<WiFiItem> filtered = new ArrayList<>();
-                for (WifiConfiguration config : list) {
-                    WiFiItem item = lastScanSSIDMap.get(config.SSID);
-                    if (item != null && (item.hasEncryption() || isAllowed(config.SSID, config.BSSID))) {
-                        filtered.add(lastScanSSIDMap.get(config.SSID));
-                    }
-                }
+    private void connectKnownGood(String trigger) {
+        if (platform == null || !policies.get().isConfigured() || connection.isActive())
+            return;
+        getWiFiConnectionInfo();
+        if (connectionInfo != null)
+            return;
 
-                if (filtered.size() > 0) {
-                    Collections.sort(filtered, new Comparator<WiFiItem>() {
-                        @Override
-                        public int compare(WiFiItem o1, WiFiItem o2) {
-                            return o1.getLevel() - o2.getLevel();
-                        }
-                    });
+        KnownGoodCache.Entry entry = engine.connectKnownGood();
+        if (entry != null)
+            MDMService.Log.d(TAG, "connectKnownGood; " + trigger + "; " + entry);
+    }
 
-                    for (WifiConfiguration config : list) {
-                        if (config.SSID.equalsIgnoreCase(filtered.get(0).getSSID()) && !isWrong(config.SSID, config.BSSID))
-                            return config.networkId;
-                    }
-                }
-            }
-        }
+    /**
+     * Saves the access point of the current connection to an allowed network as known good.
+     */
+    private void rememberKnownGood() {
+        if (connectionInfo == null)
+            return;
+        String ssid = Utils.unquote(connectionInfo.getSSID());
+        String bssid = connectionInfo.getBSSID();
+        WiFiItem accessPoint = lastScanBSSIDMap != null ? lastScanBSSIDMap.get(Bssid.parse(bssid)) : null;
+        int frequency = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? connectionInfo.getFrequency()
+                : (accessPoint != null ? accessPoint.getFrequency() : 0);
+        if (accessPoint == null)
+            accessPoint = getScanResultBySSID(ssid);
+        String capabilities = accessPoint != null && !accessPoint.isHidden() ? accessPoint.getCapabilities() : null;
+        engine.rememberKnownGood(ssid, bssid, frequency, capabilities);
+    }
 
-        return -1;
+    /**
+     * Records the phases of the successful attempt.
+     */
+    private void recordConnectionTelemetry() {
+        String ssid = connection.getSsid();
+        telemetry.record(ConnectivityTelemetry.Stage.ASSOCIATION, ssid, connection.getDuration(ConnectionStateMachine.State.ASSOCIATING)
+                + connection.getDuration(ConnectionStateMachine.State.AUTHENTICATING));
+        // The supplicant may skip reporting the completed handshake
+        if (connection.getDuration(ConnectionStateMachine.State.OBTAINING_IP) > 0)
+            telemetry.record(ConnectivityTelemetry.Stage.OBTAINING_IP, ssid, connection.getDuration(ConnectionStateMachine.State.OBTAINING_IP));
+        telemetry.record(ConnectivityTelemetry.Stage.CONNECT, ssid, connection.getTotalDuration());
     }
 
-    private void setupSecurity(String capabilities, WifiConfiguration config, String preSharedKey) {
-        if (!TextUtils.isEmpty(capabilities) && config != null) {
-            boolean isWPA = capabilities.contains("WPA") || capabilities.contains("WPA2") || capabilities.contains("WPA3");
-            if (isWPA) {
-                config.allowedProtocols.set(WifiConfiguration.Protocol.WPA);
-                config.allowedProtocols.set(WifiConfiguration.Protocol.RSN);
-            }
+    private void scheduleConnectionDeadline() {
+        worker.removeCallbacks(connectionDeadline);
+        long deadline = connection.getDeadline();
+        if (deadline != ConnectionStateMachine.NO_DEADLINE)
+            worker.postDelayed(connectionDeadline, Math.max(0, deadline - SystemClock.elapsedRealtime()));
+    }
 
-            if (capabilities.contains("EAP"))
-                config.allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.LEAP);
-            else if (isWPA)
-                config.allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.OPEN);
-            else if (capabilities.contains("WEP"))
-                config.allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.SHARED);
-
-            if (capabilities.contains("IEEE802.1X"))
-                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.IEEE8021X);
-            else if (capabilities.contains("WPA") && capabilities.contains("EAP"))
-                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_EAP);
-            else if (capabilities.contains("WPA") && capabilities.contains("PSK"))
-                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
-            else if (capabilities.contains("WPA2") && capabilities.contains("PSK"))
-                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
-            else if (capabilities.contains("WPA3") && capabilities.contains("PSK"))
-                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
-            else
-                config.allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+    /**
+     * Stops tracking the connection attempt, for example when WiFi is turned off.
+     */
+    private void cancelConnection() {
+        worker.removeCallbacks(connectionDeadline);
+        engine.cancel();
+    }
 
-            if (capabilities.contains("CCMP") || capabilities.contains("TKIP")) {
-                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.CCMP);
-                config.allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.TKIP);
-            }
+    /**
+     * Maps the supplicant state to the phase of the connection. The supplicant authenticates (802.11)
+     * before the association, and the key handshake follows the association.
+     * @return phase, null if the state doesn't move the connection forward.
+     */
+    @Nullable
+    private static ConnectionStateMachine.State getConnectionState(@Nullable SupplicantState state) {
+        if (state == null)
+            return null;
+        switch (state) {
+            case AUTHENTICATING:
+            case ASSOCIATING:
+                return ConnectionStateMachine.State.ASSOCIATING;
+            case ASSOCIATED:
+            case FOUR_WAY_HANDSHAKE:
+            case GROUP_HANDSHAKE:
+                return ConnectionStateMachine.State.AUTHENTICATING;
+            case COMPLETED:
+                return ConnectionStateMachine.State.OBTAINING_IP;
+            default:
+                return null;
+        }
+    }
 
-            if (!TextUtils.isEmpty(preSharedKey)) {
-                if (capabilities.contains("WEP")) {
-                    if (preSharedKey.matches("\\p{XDigit}+")) {
-                        config.wepKeys[0] = preSharedKey;
-                    } else {
-                        config.wepKeys[0] = "\"" + preSharedKey + "\"";
-                    }
+    /**
+     * Delays the next attempts to the network and fails over to the next candidate, see ConnectionEngine.
+     * @param error supplicant error, -1 if unknown.
+     */
+    private void onConnectionFailed(int error) {
+        worker.removeCallbacks(connectionDeadline);
+        MDMService.Log.d(TAG, "onConnectionFailed; " + connection);
+        engine.onConnectionFailed(error);
+        MDMService.Log.d(TAG, "onConnectionFailed; " + engine);
+    }
 
-                    config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP40);
-                    config.wepTxKeyIndex = 0;
-                } else {
-                    config.preSharedKey = "\"" + preSharedKey + "\"";
-                }
-            }
-        }
+    @Nullable
+    private SharedPreferences getPreferences() {
+        Context context = WFMApp.getContext();
+        return context != null ? context.getApplicationContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE) : null;
     }
 
     private boolean isWiFiConnected() {
@@ -707,176 +957,76 @@ public class Presenter {
         }
     }
 
-    private void tryConnectToAllowed() {
-        if (wifiManager != null && lastScanSSIDMap != null && lastConfig != null && lastConfig.allowed != null) {
-            for (AllowedItem item : lastConfig.allowed) {
-                if ((lastScanSSIDMap.containsKey(item.ssid) || lastScanBSSIDMap.containsKey(item.bssid)) && !item.wrongPassword) {
-                    WiFiItem network = item.ssid != null ? lastScanSSIDMap.get(item.ssid) : lastScanBSSIDMap.get(item.bssid);
-                    if (network != null) {
-                        // Search in saved
-                        int id = -1;
-                        WifiConfiguration config = searchConfigured(network.getSSID());
-
-                        // Save if not found
-                        if (config == null) {
-                            config = new WifiConfiguration();
-                            config.SSID = "\"" + network.getSSID() + "\"";
-                            if (!TextUtils.isEmpty(network.getBSSID())) {
-                                config.BSSID = network.getBSSID();
-                            }
-                            config.hiddenSSID = network.isHidden();
-                            setupSecurity(network.getCapabilities(), config, item.password);
-                            id = wifiManager.addNetwork(config);
-                        } else {
-                            id = config.networkId;
-                        }
-
-                        if (id != -1) {
-                            tryConnectToId = id;
-                            if (connectedState != NetworkInfo.State.DISCONNECTED) {
-                                wifiManager.disconnect();
-                            }
-                            wifiManager.enableNetwork(id, true);
-                            if (!network.isHidden()) {
-                                wifiManager.reconnect();
-                            } else {
-                                wifiManager.reassociate();
-                            }
-                            break;
-                        }
-                    }
-                }
-            }
+    /**
+     * Brings the saved networks in line with the allowed networks of the policy, see NetworkProvisioner.
+     * @return true if the saved networks have changed.
+     */
+    private boolean provisionNetworks(WiFiPolicy policy) {
+        if (platform == null || !policy.isConfigured()
+                || (policy.getMode() != WiFiPolicy.Mode.LISTED_ONLY && policy.getMode() != WiFiPolicy.Mode.PROTECTED_OR_LISTED)
+                || (BuildConfig.WIFI_SUGGESTION && Build.VERSION.SDK_INT > Build.VERSION_CODES.Q)
+                || !platform.isWifiEnabled())
+            return false;
+
+        SharedPreferences preferences = getPreferences();
+        if (provisionedJson == null) {
+            provisionedJson = preferences != null ? preferences.getString(PREF_PROVISIONED, "") : "";
+            provisioner.loadJson(provisionedJson);
         }
+        NetworkProvisioner.Result result = provisioner.provision(policy, engine.getFailureLedger());
+        provisioning = result;
+        String json = provisioner.toJson();
+        if (preferences != null && !json.equals(provisionedJson))
+            preferences.edit().putString(PREF_PROVISIONED, json).apply();
+        provisionedJson = json;
+        MDMService.Log.d(TAG, "provisionNetworks; policy version: " + policy.getVersion() + "; " + result);
+        return result.hasChanges();
     }
 
-    private void saveAllowedFromConfig() {
-        if (wifiManager != null && lastScanSSIDMap != null && lastConfig != null && lastConfig.allowed != null) {
-            for (AllowedItem item : lastConfig.allowed) {
-                if (lastScanSSIDMap.containsKey(item.ssid)) {
-                    WiFiItem network = lastScanSSIDMap.get(item.ssid);
-                    if (network != null) {
-                        int id = -1;
-                        WifiConfiguration config = searchConfigured(network.getSSID());
-                        // Save if not found
-                        if (config == null) {
-                            config = new WifiConfiguration();
-                            config.SSID = "\"" + network.getSSID() + "\"";
-
-                            setupSecurity(network.getCapabilities(), config, item.password);
-
-                            id = wifiManager.addNetwork(config);
-                        }
-                    }
-                }
-            }
+    /**
+     * Applies the security type of the allowed network: set in the configuration, or found by the scan.
+     * @return false if the security type is unknown yet.
+     */
+    private boolean configureAllowed(WifiConfiguration config, AllowedItem item) {
+        String capabilities;
+        if (!TextUtils.isEmpty(item.security)) {
+            capabilities = item.security.startsWith("[") ? item.security : "[" + item.security + "]";
+        } else {
+            WiFiItem network = lastScanSSIDMap != null ? lastScanSSIDMap.get(item.ssid) : null;
+            if (network == null || network.isHidden())
+                return false;
+            capabilities = network.getCapabilities();
         }
-    }
 
-    @Nullable
-    @SuppressWarnings("MissingPermission")
-    private WifiConfiguration getWiFiConfigById(int id) {
-        if (wifiManager != null) {
-            List<WifiConfiguration> list = wifiManager.getConfiguredNetworks();
-            if (list != null) {
-                for (WifiConfiguration config : list) {
-                    if (config.networkId == id)
-                        return config;
-                }
-            }
+        config.hiddenSSID = item.hidden;
+        if (!TextUtils.isEmpty(item.bssid)) {
+            config.BSSID = item.bssid;
         }
-
-        return null;
+        // Replace the outdated settings of a saved network
+        config.allowedProtocols.clear();
+        config.allowedAuthAlgorithms.clear();
+        config.allowedKeyManagement.clear();
+        config.allowedPairwiseCiphers.clear();
+        config.allowedGroupCiphers.clear();
+        SecurityProfile.compile(capabilities).applyTo(config, item.password);
+        return true;
     }
 
     private ArrayList<WiFiItem> createList() {
-        ArrayList<WiFiItem> result = new ArrayList<>();
-
-        if (lastScanSSIDMap == null || lastScanSSIDMap.size() == 0)
-            result.add(null);
-        else {
-            if (lastConfig == null) {
-                for (WiFiItem item : lastScanSSIDMap.values()) {
-                    WiFiItem newItem = item.clone();
-                    newItem.setAllowed(true);
-                    newItem.setUserAction(true);
-                    newItem.setWrong(false);
-                    result.add(newItem);
-                }
-            }
-            else {
-                // If only networks from the list are allowed
-                if (!lastConfig.allAllowed) {
-                    if (lastConfig.allowed != null) {
-                        for (WiFiItem item : lastScanSSIDMap.values()) {
-                            WiFiItem newItem = item.clone();
-                            boolean isAllowed = isAllowed(item.getSSID(), item.getBSSID());
-                            newItem.setAllowed(isAllowed);
-                            newItem.setUserAction(!(isAllowed && item.hasEncryption()));
-                            newItem.setWrong(isWrong(item.getSSID(), item.getBSSID()));
-                            result.add(newItem);
-                        }
-                    }
-                }
-                // Networks from the list and password-encrypted networks are allowed
-                else if (!lastConfig.freeAllowed) {
-                    if (lastConfig.allowed != null) {
-                        for (WiFiItem item : lastScanSSIDMap.values()) {
-                            WiFiItem newItem = item.clone();
-                            boolean isAllowed = isAllowed(item.getSSID(), item.getBSSID());
-                            newItem.setAllowed(isAllowed || item.hasEncryption());
-                            newItem.setUserAction(!(isAllowed && item.hasEncryption()));
-                            newItem.setWrong(isWrong(item.getSSID(), item.getBSSID()));
-                            result.add(newItem);
-                        }
-                    }
-                }
-                // All networks allowed
-                else {
-                    for (WiFiItem item : lastScanSSIDMap.values()) {
-                        WiFiItem newItem = item.clone();
-                        newItem.setAllowed(true);
-                        newItem.setUserAction(true);
-                        newItem.setWrong(false);
-                        result.add(newItem);
-                    }
-                }
-            }
+        WiFiPolicy policy = policies.get();
+        if (policy != listCachePolicy) {
+            listCache.clear();
+            listCachePolicy = policy;
         }
-
-        return result;
-    }
-
-    private boolean isAllowed(String ssid, String bssid) {
-        boolean allowed = false;
-
-        if (!TextUtils.isEmpty(ssid)) {
-            for (AllowedItem item : lastConfig.allowed) {
-                if (item.ssid != null && item.ssid.equalsIgnoreCase(ssid)) {
-                    allowed = true;
-                    break;
-                }
-            }
-        }
-
-        if (!allowed && !TextUtils.isEmpty(bssid)) {
-            for (AllowedItem item : lastConfig.allowed) {
-                if (item.bssid != null && item.bssid.equalsIgnoreCase(bssid)) {
-                    allowed = true;
-                    break;
-                }
-            }
-        }
-
-        return allowed;
+        return policy.createList(lastScanSSIDMap, listCache);
     }
 
     /**
      * Retrieves the parameters of the current WiFi connection.
      */
     private void getWiFiConnectionInfo() {
-        if (wifiManager != null) {
-            connectionInfo = wifiManager.getConnectionInfo();
+        if (platform != null) {
+            connectionInfo = platform.getConnectionInfo();
 
             if (connectionInfo != null && (connectedState == null || connectedState == NetworkInfo.State.DISCONNECTED))
                 connectionInfo = null;
@@ -901,155 +1051,195 @@ public class Presenter {
             connectionInfo = null;
     }
 
-    public void userAction(WiFiItem network, String password) {
+    public void userAction(final WiFiItem network, final String password) {
+        worker.post(new Runnable() {
+            @Override
+            public void run() {
+                applyUserAction(network, password);
+            }
+        });
+    }
+
+    private void applyUserAction(WiFiItem network, String password) {
         if (connectionInfo != null) {
             boolean connectToOther = !Utils.unquote(connectionInfo.getSSID()).equalsIgnoreCase(network.getSSID());
 
-            wifiManager.disableNetwork(connectionInfo.getNetworkId());
-            wifiManager.removeNetwork(connectionInfo.getNetworkId());
-            wifiManager.disconnect();
+            platform.disableNetwork(connectionInfo.getNetworkId());
+            configuredNetworks.remove(connectionInfo.getNetworkId());
+            platform.disconnect();
 
             if (connectToOther) {
-                connectWifi(network, password);
+                engine.connect(network, password);
             }
         }
         else {
-            connectWifi(network, password);
+            engine.connect(network, password);
         }
     }
 
+    public boolean isWrong(String ssid, String bssid) {
+        return policies.get().isWrong(ssid, bssid);
+    }
+
     /**
-     * Search in the list of saved networks.
-     * @param ssid
-     * @return
+     * @return latest state published for the UI.
      */
-    @SuppressWarnings("MissingPermission")
-    private WifiConfiguration searchConfigured(String ssid) {
-        List<WifiConfiguration> wifiConfigurationList = wifiManager.getConfiguredNetworks();
-        if (wifiConfigurationList != null) {
-            for (WifiConfiguration config : wifiConfigurationList) {
-                if (config.SSID.equalsIgnoreCase("\"" + ssid + "\"")) {
-                    return config;
-                }
-            }
-        }
-
-        return null;
+    public WiFiSnapshot getSnapshot() {
+        return snapshot;
     }
 
-    @SuppressWarnings("MissingPermission")
-    private WifiConfiguration searchConfigured(int id) {
-        List<WifiConfiguration> wifiConfigurationList = wifiManager.getConfiguredNetworks();
-        if (wifiConfigurationList != null) {
-            for (WifiConfiguration config : wifiConfigurationList) {
-                if (config.networkId == id) {
-                    return config;
-                }
-            }
-        }
-
-        return null;
+    public Map<String, WiFiItem> getLastScanSSIDMap() {
+        return snapshot.getSsidMap();
     }
 
-    public boolean isWrong(String ssid, String bssid) {
-        if (lastConfig != null && lastConfig.allowed != null) {
-            for (AllowedItem item : lastConfig.allowed) {
-                if ((ssid != null && ssid.equalsIgnoreCase(item.ssid)) || (bssid != null && bssid.equalsIgnoreCase(item.bssid)))
-                    return item.wrongPassword;
-            }
-        }
-        return false;
+    public WifiInfo getConnectionInfo() {
+        return snapshot.getConnectionInfo();
     }
 
-    private boolean connectWifi(WiFiItem network, String password) {
-        // Search in saved networks
-        WifiConfiguration config = searchConfigured(network.getSSID());
-
-        // Save if not found
-        int id = -1;
-        if (config == null) {
-            config = new WifiConfiguration();
-            config.SSID = "\"" + network.getSSID() + "\"";
-            config.hiddenSSID = network.isHidden();
-            setupSecurity(network.getCapabilities(), config, password);
-            id = wifiManager.addNetwork(config);
-        } else {
-            id = config.networkId;
-        }
+    public String getPasswordFromAllowed(String ssid, String bssid) {
+        return policies.get().getPasswordFromAllowed(ssid, bssid);
+    }
 
-        // Connect
-        if (id != -1) {
-            tryConnectToId = id;
-            tryConnectToSSID = network.getSSID();
-            tryConnectToBSSID = network.getBSSID();
-            if (connectedState != NetworkInfo.State.DISCONNECTED) {
-                wifiManager.disconnect();
-            }
-            wifiManager.enableNetwork(id, true);
-            if (!network.isHidden()) {
-                // for hidden networks, reconnect should be delayed to let the system save the network first
-                wifiManager.reconnect();
-            } else {
-                wifiManager.reassociate();
-            }
-        }
+    public NetworkInfo.State getConnectedState() {
+        return snapshot.getConnectedState();
+    }
 
-        return true;
+    /**
+     * @return outcome of the last provisioning of the allowed networks, null if none.
+     */
+    @Nullable
+    public NetworkProvisioner.Result getProvisioning() {
+        return provisioning;
     }
 
-    public Map<String, WiFiItem> getLastScanSSIDMap() {
-        return lastScanSSIDMap;
+    /**
+     * @return latency histograms of the scans, connections and enforcement, in total and by network.
+     */
+    public ConnectivityTelemetry.Snapshot getTelemetry() {
+        return telemetry.getSnapshot();
     }
 
-    public WifiInfo getConnectionInfo() {
-        return connectionInfo;
+    /**
+     * Registers the allowed networks as suggestions in background.
+     * Only the changes since the previous call are submitted.
+     */
+    public void suggestNetworks(final Context context, final MDMConfig config) {
+        worker.post(new Runnable() {
+            @Override
+            public void run() {
+                int status = applySuggestions(context, config);
+                MDMService.Log.d(TAG, "suggestNetworks; status: " + status);
+            }
+        });
     }
 
-    public String getPasswordFromAllowed(String ssid, String bssid) {
-        if (lastConfig != null && lastConfig.allowed != null && (!TextUtils.isEmpty(ssid) || !TextUtils.isEmpty(bssid))) {
-            for (AllowedItem item : lastConfig.allowed) {
-                if ((ssid.equalsIgnoreCase(item.ssid) || bssid.equalsIgnoreCase(item.bssid)) && !TextUtils.isEmpty(item.password))
-                    return item.password;
+    /**
+     * @return status of the platform call which failed, or STATUS_NETWORK_SUGGESTIONS_SUCCESS.
+     */
+    private int applySuggestions(Context context, MDMConfig config) {
+        if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.Q || platform == null) {
+            return 0;
+        }
+
+        SharedPreferences preferences = getPreferences();
+        if (suggestionSync == null) {
+            String salt = preferences != null ? preferences.getString(PREF_SUGGESTION_SALT, null) : null;
+            if (salt == null) {
+                salt = SuggestionSync.newSalt();
+                if (preferences != null)
+                    preferences.edit().putString(PREF_SUGGESTION_SALT, salt).apply();
             }
+            suggestionSync = new SuggestionSync(salt);
+            suggestionsJson = preferences != null ? preferences.getString(PREF_SUGGESTIONS, "") : "";
+            suggestionSync.loadJson(suggestionsJson);
         }
 
-        return "";
-    }
+        SuggestionSync.Plan plan = suggestionSync.plan(config.allowed);
+        if (plan.isEmpty()) {
+            MDMService.Log.d(TAG, "applySuggestions; unchanged: " + plan.getUnchanged());
+            return WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS;
+        }
 
-    public NetworkInfo.State getConnectedState() {
-        return connectedState;
+        int status = WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS;
+        if (!plan.getRemoved().isEmpty()) {
+            long start = SystemClock.elapsedRealtime();
+            int removeStatus = platform.removeNetworkSuggestions(buildSuggestions(plan.getRemoved()));
+            MDMService.Log.d(TAG, "applySuggestions; removed: " + plan.getRemoved() + "; status: " + removeStatus
+                    + "; " + (SystemClock.elapsedRealtime() - start) + " ms");
+            // Invalid suggestions are already gone
+            if (removeStatus == WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS
+                    || removeStatus == WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_REMOVE_INVALID)
+                suggestionSync.onRemoved(plan);
+            else
+                status = removeStatus;
+        }
+        if (!plan.getAdded().isEmpty()) {
+            long start = SystemClock.elapsedRealtime();
+            int addStatus = platform.addNetworkSuggestions(buildSuggestions(plan.getAdded()));
+            MDMService.Log.d(TAG, "applySuggestions; added: " + plan.getAdded() + "; status: " + addStatus
+                    + "; " + (SystemClock.elapsedRealtime() - start) + " ms");
+            if (addStatus == WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS)
+                suggestionSync.onAdded(plan);
+            else if (addStatus == WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_ADD_DUPLICATE)
+                // A single duplicate rejects the whole batch
+                status = addSuggestionsSeparately(plan.getAdded());
+            else
+                status = addStatus;
+        }
+
+        String json = suggestionSync.toJson();
+        if (preferences != null && !json.equals(suggestionsJson))
+            preferences.edit().putString(PREF_SUGGESTIONS, json).apply();
+        suggestionsJson = json;
+        MDMService.Log.d(TAG, "applySuggestions; " + plan + "; submitted: " + suggestionSync.size());
+        return status;
     }
 
-    public int suggestNetworks(Context context, MDMConfig config) {
-        if (android.os.Build.VERSION.SDK_INT < android.os.Build.VERSION_CODES.Q) {
-            return 0;
+    /**
+     * Adds the suggestions one by one. A duplicate (submitted before the records were saved, possibly
+     * with other passphrase) is removed and added again. Only the added suggestions are recorded.
+     * @return status of the first failure, or success.
+     */
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private int addSuggestionsSeparately(List<SuggestionSync.Suggestion> list) {
+        int status = WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS;
+        for (SuggestionSync.Suggestion item : list) {
+            List<WifiNetworkSuggestion> single = buildSuggestions(Collections.singletonList(item));
+            int addStatus = platform.addNetworkSuggestions(single);
+            if (addStatus == WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_ADD_DUPLICATE) {
+                platform.removeNetworkSuggestions(single);
+                addStatus = platform.addNetworkSuggestions(single);
+            }
+            MDMService.Log.d(TAG, "applySuggestions; added: " + item + "; status: " + addStatus);
+            if (addStatus == WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS)
+                suggestionSync.onAdded(item);
+            else if (status == WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS)
+                status = addStatus;
         }
+        return status;
+    }
 
-        final List<WifiNetworkSuggestion> suggestionsList =
-                new ArrayList<WifiNetworkSuggestion>();
-
-        for (AllowedItem item : config.allowed) {
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private List<WifiNetworkSuggestion> buildSuggestions(List<SuggestionSync.Suggestion> list) {
+        List<WifiNetworkSuggestion> result = new ArrayList<>(list.size());
+        for (SuggestionSync.Suggestion item : list) {
             final WifiNetworkSuggestion.Builder builder =
                     new WifiNetworkSuggestion.Builder();
-            if (item.ssid != null) {
-                builder.setSsid(item.ssid);
+            if (item.getSsid() != null) {
+                builder.setSsid(item.getSsid());
             }
-            if (item.bssid != null) {
-                builder.setBssid(MacAddress.fromString(item.bssid));
+            if (item.getBssid() != null) {
+                builder.setBssid(MacAddress.fromString(item.getBssid()));
             }
-            if (item.hidden) {
+            if (item.isHidden()) {
                 builder.setIsHiddenSsid(true);
             }
-            if (item.password != null) {
-                builder.setWpa2Passphrase(item.password);
+            if (item.isSecured()) {
+                // Removal matches the suggestions by SSID, BSSID and security type, the passphrase is not compared
+                builder.setWpa2Passphrase(item.getPassword() != null ? item.getPassword() : REMOVAL_PASSPHRASE);
             }
-            WifiNetworkSuggestion suggestion = builder.build();
-            suggestionsList.add(suggestion);
+            result.add(builder.build());
         }
-        final WifiManager wifiManager =
-                (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
-
-        final int status = wifiManager.addNetworkSuggestions(suggestionsList);
-        return status;
+        return result;
     }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager;
+
+import android.net.NetworkInfo;
+import android.net.wifi.WifiInfo;
+
+import androidx.annotation.Nullable;
+
+import com.hmdm.wifimanager.model.WiFiItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable state of the WiFi manager, published by the worker thread for rendering on the UI thread.
+ * Each change creates a new snapshot; the lists and maps are never modified after publishing.
+ */
+public final class WiFiSnapshot {
+    public static final WiFiSnapshot EMPTY = new WiFiSnapshot(false, Collections.<WiFiItem>emptyList(), null, null, null);
+
+    private final boolean wifiEnabled;
+    private final List<WiFiItem> items;
+    private final Map<String, WiFiItem> ssidMap;
+    private final WifiInfo connectionInfo;
+    private final NetworkInfo.State connectedState;
+
+    private WiFiSnapshot(boolean wifiEnabled, List<WiFiItem> items, Map<String, WiFiItem> ssidMap,
+                         WifiInfo connectionInfo, NetworkInfo.State connectedState) {
+        this.wifiEnabled = wifiEnabled;
+        this.items = items;
+        this.ssidMap = ssidMap;
+        this.connectionInfo = connectionInfo;
+        this.connectedState = connectedState;
+    }
+
+    /**
+     * @param items displayed items, copied.
+     * @param ssidMap latest scanning results by SSID, must not be modified by the caller afterwards.
+     */
+    public WiFiSnapshot withScan(List<WiFiItem> items, @Nullable Map<String, WiFiItem> ssidMap) {
+        return new WiFiSnapshot(wifiEnabled, Collections.unmodifiableList(new ArrayList<>(items)),
+                ssidMap != null ? Collections.unmodifiableMap(ssidMap) : null, connectionInfo, connectedState);
+    }
+
+    public WiFiSnapshot withConnection(@Nullable WifiInfo connectionInfo, @Nullable NetworkInfo.State connectedState) {
+        if (connectionInfo == this.connectionInfo && connectedState == this.connectedState)
+            return this;
+        return new WiFiSnapshot(wifiEnabled, items, ssidMap, connectionInfo, connectedState);
+    }
+
+    public WiFiSnapshot withWiFiEnabled(boolean wifiEnabled) {
+        if (wifiEnabled == this.wifiEnabled)
+            return this;
+        return new WiFiSnapshot(wifiEnabled, items, ssidMap, connectionInfo, connectedState);
+    }
+
+    public boolean isWiFiEnabled() {
+        return wifiEnabled;
+    }
+
+    /**
+     * @return displayed items (unmodifiable).
+     */
+    public List<WiFiItem> getItems() {
+        return items;
+    }
+
+    /**
+     * @return latest scanning results by SSID (unmodifiable), null before the first scan.
+     */
+    @Nullable
+    public Map<String, WiFiItem> getSsidMap() {
+        return ssidMap;
+    }
+
+    @Nullable
+    public WifiInfo getConnectionInfo() {
+        return connectionInfo;
+    }
+
+    @Nullable
+    public NetworkInfo.State getConnectedState() {
+        return connectedState;
+    }
+}
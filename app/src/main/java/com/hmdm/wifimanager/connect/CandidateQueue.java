@@ -0,0 +1,139 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.connect;
+
+import com.hmdm.wifimanager.model.WiFiItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Networks to try one by one until the connection is established, the best first.
+ * When an attempt fails, the next candidate is taken without waiting for the next scan. Not thread safe.
+ */
+public class CandidateQueue {
+    public static final class Candidate {
+        private final WiFiItem accessPoint;
+        private final int rank;
+        private final int priority;
+        private final double score;
+
+        /**
+         * @param accessPoint best access point of the network.
+         * @param rank preference group, the lower groups are tried first.
+         * @param priority position of the network in the configuration, -1 if not listed.
+         * @param score score of the access point, orders the candidates within the group.
+         */
+        public Candidate(WiFiItem accessPoint, int rank, int priority, double score) {
+            this.accessPoint = accessPoint;
+            this.rank = rank;
+            this.priority = priority;
+            this.score = score;
+        }
+
+        public WiFiItem getAccessPoint() {
+            return accessPoint;
+        }
+
+        public int getRank() {
+            return rank;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * @return true if this candidate should be tried before the other one.
+         */
+        public boolean isBetterThan(Candidate other) {
+            return ORDER.compare(this, other) < 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s (%s): rank %d, score %.3f", accessPoint.getSSID(), accessPoint.getBSSID(), rank, score);
+        }
+    }
+
+    private static final Comparator<Candidate> ORDER = new Comparator<Candidate>() {
+        @Override
+        public int compare(Candidate o1, Candidate o2) {
+            int result = Integer.compare(o1.rank, o2.rank);
+            if (result == 0)
+                result = Double.compare(o2.score, o1.score);
+            if (result == 0)
+                result = o1.accessPoint.getSSID().compareTo(o2.accessPoint.getSSID());
+            if (result == 0)
+                result = Long.compare(o1.accessPoint.getBssidKey(), o2.accessPoint.getBssidKey());
+            return result;
+        }
+    };
+
+    private final List<Candidate> candidates = new ArrayList<>();
+    private int next;
+
+    /**
+     * Replaces the queue with the new candidates.
+     */
+    public void reset(List<Candidate> list) {
+        candidates.clear();
+        candidates.addAll(list);
+        Collections.sort(candidates, ORDER);
+        next = 0;
+    }
+
+    /**
+     * @return next candidate, null if all candidates have been tried.
+     */
+    public Candidate poll() {
+        return next < candidates.size() ? candidates.get(next++) : null;
+    }
+
+    /**
+     * @return number of the candidates not tried yet.
+     */
+    public int size() {
+        return candidates.size() - next;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        candidates.clear();
+        next = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "candidates: " + candidates.size() + "; remaining: " + size();
+    }
+}
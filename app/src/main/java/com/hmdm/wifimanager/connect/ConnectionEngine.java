@@ -0,0 +1,559 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.connect;
+
+import android.net.wifi.WifiConfiguration;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.model.SecurityProfile;
+import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.platform.ConfiguredNetworks;
+import com.hmdm.wifimanager.platform.WifiPlatform;
+import com.hmdm.wifimanager.policy.FailureLedger;
+import com.hmdm.wifimanager.policy.KnownGoodCache;
+import com.hmdm.wifimanager.policy.PolicyHolder;
+import com.hmdm.wifimanager.policy.WiFiPolicy;
+import com.hmdm.wifimanager.scan.ScanIndex;
+import com.hmdm.wifimanager.score.ConnectionHistory;
+import com.hmdm.wifimanager.score.ScoringEngine;
+import com.hmdm.wifimanager.score.WeightedScorer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Automatic connection to the allowed networks: collects the candidates from the scanning results,
+ * fails over to the next candidate when an attempt fails, and reconnects to the known good access point
+ * without waiting for the scan. Failed networks are delayed by the ledger (see FailureLedger),
+ * the network is forgotten only if the authentication failed.
+ * Runs on the caller's thread, the time is taken from the clock. Not thread safe.
+ */
+public class ConnectionEngine {
+    public static final String KEY_FAILURE_LEDGER = "failureLedger";
+    public static final String KEY_KNOWN_GOOD = "knownGood";
+
+    public interface Clock {
+        /**
+         * @return wall clock time, ms; used by the saved records.
+         */
+        long currentTimeMillis();
+
+        /**
+         * @return time since boot, ms; used by the connection phases.
+         */
+        long elapsedRealtime();
+    }
+
+    /**
+     * Keeps the records of the engine between the app runs.
+     */
+    public interface Storage {
+        /**
+         * @return JSON saved by save(), null if none.
+         */
+        String load(String key);
+
+        void save(String key, String json);
+    }
+
+    public interface Listener {
+        /**
+         * Called when no candidate is found and the scan has found new networks: the networks
+         * from the configuration skipped for unknown security type may be saved now.
+         * @return true if the saved networks have changed.
+         */
+        boolean onProvisioningNeeded(WiFiPolicy policy);
+
+        /**
+         * Called before the attempt to connect to the candidate is started.
+         */
+        void onCandidateChosen(CandidateQueue.Candidate candidate);
+
+        /**
+         * Called when the network is enabled, the attempt is tracked by getConnection().
+         * @param enableTime duration of the enableNetwork() call, ms.
+         */
+        void onConnectionStarted(String ssid, long enableTime);
+
+        /**
+         * Called when the attempt has failed, before the failover.
+         * @param error supplicant error, -1 if unknown.
+         * @param ssid quoted SSID of the saved network, empty if it's not found.
+         */
+        void onConnectionError(int error, String ssid);
+    }
+
+    private final WifiPlatform platform;
+    private final ConfiguredNetworks networks;
+    private final PolicyHolder policies;
+    private final ConnectionHistory history;
+    private final Storage storage;
+    private final Clock clock;
+    private final Listener listener;
+    /**
+     * Connection attempt made by the app.
+     */
+    private final ConnectionStateMachine connection = new ConnectionStateMachine();
+    /**
+     * Networks to try if the current attempt fails.
+     */
+    private final CandidateQueue candidates = new CandidateQueue();
+    private ScoringEngine scoringEngine;
+    /**
+     * Latest scanning results, null if none.
+     */
+    private ScanIndex scan;
+    /**
+     * The scans have found networks not seen before since the last provisioning.
+     */
+    private boolean newNetworksFound;
+    /**
+     * There's no connection to drop before the attempt.
+     */
+    private boolean disconnected;
+    /**
+     * Connection failures with backoff, null if not loaded.
+     */
+    private FailureLedger failureLedger;
+    /**
+     * Last access point of each allowed network where the connection succeeded, null if not loaded.
+     */
+    private KnownGoodCache knownGood;
+    /**
+     * Network pinned to the known good access point for the fast reconnection, -1 if none.
+     */
+    private int pinnedNetworkId = -1;
+    /**
+     * BSSID of the pinned network before pinning, restored afterwards.
+     */
+    private String pinnedBssid;
+
+    public ConnectionEngine(WifiPlatform platform, ConfiguredNetworks networks, PolicyHolder policies,
+                            ConnectionHistory history, Storage storage, Clock clock, Listener listener) {
+        this.platform = platform;
+        this.networks = networks;
+        this.policies = policies;
+        this.history = history;
+        this.storage = storage;
+        this.clock = clock;
+        this.listener = listener;
+        scoringEngine = new ScoringEngine(new WeightedScorer(null), history);
+    }
+
+    public ConnectionStateMachine getConnection() {
+        return connection;
+    }
+
+    public void setScoringEngine(ScoringEngine scoringEngine) {
+        this.scoringEngine = scoringEngine;
+    }
+
+    /**
+     * Applies the latest scanning results.
+     * @param newNetworks true if the scan has found networks not seen before.
+     */
+    public void setScan(ScanIndex scan, boolean newNetworks) {
+        this.scan = scan;
+        if (newNetworks)
+            newNetworksFound = true;
+    }
+
+    /**
+     * @param disconnected true if there's no connection to drop before the attempt.
+     */
+    public void setDisconnected(boolean disconnected) {
+        this.disconnected = disconnected;
+    }
+
+    private static boolean isEmpty(String s) {
+        return s == null || s.isEmpty();
+    }
+
+    /**
+     * Collects the networks for the automatic connection, each represented by its best access point.
+     * In the PROTECTED_OR_LISTED mode, the saved networks are ranked by score; if none is found
+     * and the scan has found new networks, the networks from the configuration which were skipped
+     * for unknown security type are provisioned again. In the LISTED_ONLY mode,
+     * the networks are ranked by their position in the configuration, then by score.
+     */
+    List<CandidateQueue.Candidate> getCandidates(WiFiPolicy policy) {
+        List<CandidateQueue.Candidate> result = collectCandidates(policy);
+        if (result.isEmpty() && policy.getMode() == WiFiPolicy.Mode.PROTECTED_OR_LISTED && newNetworksFound) {
+            newNetworksFound = false;
+            if (listener.onProvisioningNeeded(policy))
+                result = collectCandidates(policy);
+        }
+        return result;
+    }
+
+    private List<CandidateQueue.Candidate> collectCandidates(WiFiPolicy policy) {
+        List<CandidateQueue.Candidate> result = new ArrayList<>();
+        boolean listedOnly = policy.getMode() == WiFiPolicy.Mode.LISTED_ONLY;
+        if (scan == null || (!listedOnly && policy.getMode() != WiFiPolicy.Mode.PROTECTED_OR_LISTED))
+            return result;
+
+        long now = clock.currentTimeMillis();
+        for (Map.Entry<String, WiFiItem> entry : scan.getBySsid().entrySet()) {
+            String ssid = entry.getKey();
+            // PROTECTED_OR_LISTED: only the saved networks (the listed ones are saved when nothing is found)
+            if (!listedOnly && networks.getBySsid(ssid) == null)
+                continue;
+
+            List<WiFiItem> group = scan.getGroup(ssid);
+            if (group == null)
+                group = Collections.singletonList(entry.getValue());
+
+            CandidateQueue.Candidate best = null;
+            for (WiFiItem accessPoint : group) {
+                int priority = policy.getPriority(ssid, accessPoint.getBssidKey());
+                if (listedOnly ? priority < 0 : !policy.evaluate(accessPoint).isAllowed())
+                    continue;
+                if (policy.isWrong(priority) || isBlocked(policy, ssid, accessPoint.getBSSID(), now))
+                    continue;
+
+                CandidateQueue.Candidate candidate = new CandidateQueue.Candidate(accessPoint,
+                        listedOnly ? priority : 0, priority, scoringEngine.score(accessPoint));
+                if (best == null || candidate.isBetterThan(best))
+                    best = candidate;
+            }
+            if (best != null)
+                result.add(best);
+        }
+        return result;
+    }
+
+    /**
+     * Tries the viable networks one by one, the best first.
+     * @return true if the attempt has started.
+     */
+    public boolean connectBest() {
+        candidates.reset(getCandidates(policies.get()));
+        return connectNextCandidate();
+    }
+
+    /**
+     * Connects to the next viable candidate, if any.
+     * @return true if the attempt has started.
+     */
+    public boolean connectNextCandidate() {
+        WiFiPolicy policy = policies.get();
+        long now = clock.currentTimeMillis();
+        CandidateQueue.Candidate candidate;
+        while ((candidate = candidates.poll()) != null) {
+            WiFiItem network = candidate.getAccessPoint();
+            // The failed attempts may have blocked the network since the queue was built
+            if (policy.isWrong(candidate.getPriority())
+                    || isBlocked(policy, network.getSSID(), network.getBSSID(), now))
+                continue;
+            if (connectCandidate(policy, candidate))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts the connection, saving the network from the configuration if needed.
+     * @return false if the network can't be saved.
+     */
+    private boolean connectCandidate(WiFiPolicy policy, CandidateQueue.Candidate candidate) {
+        WiFiItem network = candidate.getAccessPoint();
+        WifiConfiguration config = networks.getBySsid(network.getSSID());
+        int id;
+        if (config != null) {
+            id = config.networkId;
+        } else {
+            // Only the networks from the configuration can be saved
+            if (candidate.getPriority() < 0)
+                return false;
+            AllowedItem item = policy.getAllowed(candidate.getPriority());
+            config = new WifiConfiguration();
+            config.SSID = "\"" + network.getSSID() + "\"";
+            if (!isEmpty(network.getBSSID())) {
+                config.BSSID = network.getBSSID();
+            }
+            config.hiddenSSID = network.isHidden();
+            SecurityProfile.compile(network.getCapabilities()).applyTo(config, item.password);
+            id = networks.add(config);
+        }
+        if (id == -1)
+            return false;
+
+        listener.onCandidateChosen(candidate);
+        startConnection(id, network.getSSID(), network.getBSSID(), network.isHidden());
+        return true;
+    }
+
+    /**
+     * Connects to the network chosen by the user, saving it if needed. The user's choice replaces the candidates.
+     * @param password password for the new network, ignored if the network is saved.
+     * @return false if the network can't be saved.
+     */
+    public boolean connect(WiFiItem network, String password) {
+        candidates.clear();
+
+        WifiConfiguration config = networks.getBySsid(network.getSSID());
+        int id;
+        if (config == null) {
+            config = new WifiConfiguration();
+            config.SSID = "\"" + network.getSSID() + "\"";
+            config.hiddenSSID = network.isHidden();
+            SecurityProfile.compile(network.getCapabilities()).applyTo(config, password);
+            id = networks.add(config);
+        } else {
+            id = config.networkId;
+        }
+        if (id == -1)
+            return false;
+
+        startConnection(id, network.getSSID(), network.getBSSID(), network.isHidden());
+        return true;
+    }
+
+    private void startConnection(int id, String ssid, String bssid, boolean hidden) {
+        if (id != pinnedNetworkId)
+            unpinBssid();
+        connection.start(id, ssid, bssid, clock.elapsedRealtime());
+        if (!disconnected) {
+            platform.disconnect();
+        }
+        long start = clock.elapsedRealtime();
+        platform.enableNetwork(id, true);
+        listener.onConnectionStarted(ssid, clock.elapsedRealtime() - start);
+        if (!hidden) {
+            platform.reconnect();
+        } else {
+            // For hidden networks, reconnect should be delayed to let the system save the network first
+            platform.reassociate();
+        }
+    }
+
+    /**
+     * After WiFi is turned on or the connection is lost, connects to the access point
+     * where the last connection succeeded, without waiting for the scan (it runs in parallel).
+     * The network is pinned to the BSSID of the access point until the attempt ends.
+     * Call it only when there's no connection.
+     * @return known good access point of the attempt, null if the attempt hasn't started.
+     */
+    public KnownGoodCache.Entry connectKnownGood() {
+        WiFiPolicy policy = policies.get();
+        if (!policy.isConfigured() || connection.isActive()
+                || (policy.getMode() != WiFiPolicy.Mode.LISTED_ONLY && policy.getMode() != WiFiPolicy.Mode.PROTECTED_OR_LISTED)
+                || !platform.isWifiEnabled())
+            return null;
+
+        long now = clock.currentTimeMillis();
+        for (KnownGoodCache.Entry entry : getKnownGood().getEntries()) {
+            int priority = policy.getPriority(entry.getSsid(), entry.getBssid());
+            // Skip the networks removed from the configuration or having other credentials now
+            if (priority < 0 || !policy.getFingerprint(priority).equals(entry.getFingerprint())
+                    || policy.isWrong(priority) || isBlocked(policy, entry.getSsid(), entry.getBssid(), now))
+                continue;
+            if (connectPinned(policy, priority, entry))
+                return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Starts the connection to the known good access point, saving the network from the configuration if needed.
+     * @return false if the network can't be saved or pinned.
+     */
+    private boolean connectPinned(WiFiPolicy policy, int priority, KnownGoodCache.Entry entry) {
+        AllowedItem item = policy.getAllowed(priority);
+        WifiConfiguration config = networks.getBySsid(entry.getSsid());
+        String previousBssid = null;
+        int id;
+        if (config != null) {
+            previousBssid = config.BSSID;
+            config.BSSID = entry.getBssid();
+            id = networks.update(config);
+        } else {
+            // The security profile is needed to save the network
+            if (entry.getCapabilities() == null)
+                return false;
+            config = new WifiConfiguration();
+            config.SSID = "\"" + entry.getSsid() + "\"";
+            config.BSSID = entry.getBssid();
+            config.hiddenSSID = item.hidden;
+            SecurityProfile.compile(entry.getCapabilities()).applyTo(config, item.password);
+            id = networks.add(config);
+        }
+        if (id == -1)
+            return false;
+
+        // Pinned again: keep the BSSID from before the first pinning
+        if (id != pinnedNetworkId) {
+            unpinBssid();
+            pinnedNetworkId = id;
+            pinnedBssid = previousBssid;
+        }
+        startConnection(id, entry.getSsid(), entry.getBssid(), item.hidden);
+        return true;
+    }
+
+    /**
+     * Restores the BSSID of the network pinned by connectPinned().
+     */
+    private void unpinBssid() {
+        if (pinnedNetworkId == -1)
+            return;
+        WifiConfiguration config = networks.getById(pinnedNetworkId);
+        if (config != null) {
+            // "any" clears the BSSID, null keeps the current value
+            config.BSSID = pinnedBssid != null ? pinnedBssid : "any";
+            networks.update(config);
+        }
+        pinnedNetworkId = -1;
+        pinnedBssid = null;
+    }
+
+    /**
+     * @return network pinned to the known good access point, -1 if none.
+     */
+    public int getPinnedNetworkId() {
+        return pinnedNetworkId;
+    }
+
+    /**
+     * Called when the connection is established, by the app or not: the remaining candidates are dropped
+     * and the pinned network may roam again.
+     */
+    public void onConnected() {
+        candidates.clear();
+        unpinBssid();
+    }
+
+    /**
+     * Stops tracking the connection attempt, for example when WiFi is turned off.
+     */
+    public void cancel() {
+        connection.reset();
+        candidates.clear();
+        unpinBssid();
+    }
+
+    /**
+     * Saves the access point of the current connection to an allowed network as known good.
+     * @param frequency channel frequency, MHz, 0 if unknown.
+     * @param capabilities capabilities of the access point from the scan, null if unknown.
+     */
+    public void rememberKnownGood(String ssid, String bssid, int frequency, String capabilities) {
+        WiFiPolicy policy = policies.get();
+        int priority = policy.getPriority(ssid, bssid);
+        if (priority < 0 || isEmpty(bssid))
+            return;
+        if (getKnownGood().recordSuccess(policy.getFingerprint(priority), ssid, bssid, frequency, capabilities, clock.currentTimeMillis()))
+            storage.save(KEY_KNOWN_GOOD, knownGood.toJson());
+    }
+
+    KnownGoodCache getKnownGood() {
+        if (knownGood == null)
+            knownGood = KnownGoodCache.fromJson(storage.load(KEY_KNOWN_GOOD), clock.currentTimeMillis());
+        return knownGood;
+    }
+
+    /**
+     * Delays the next attempts to the network of the failed attempt (see FailureLedger) and fails over
+     * to the next candidate. The network is forgotten only if the authentication failed; timeouts
+     * and lost associations keep it, since the access point may be just out of range.
+     * The failed attempt to the known good access point is followed by the candidates found by the scan.
+     * @param error supplicant error, -1 if unknown.
+     */
+    public void onConnectionFailed(int error) {
+        int id = connection.getNetworkId();
+        // Failed key handshake usually means the wrong password
+        boolean authentication = connection.getFailure() == ConnectionStateMachine.Failure.AUTHENTICATION
+                || connection.getFailedState() == ConnectionStateMachine.State.AUTHENTICATING;
+        if (id == pinnedNetworkId) {
+            unpinBssid();
+            if (getKnownGood().remove(connection.getSsid()))
+                storage.save(KEY_KNOWN_GOOD, knownGood.toJson());
+            // The access point may be out of range: keep the network and try the ones found by the scan
+            if (!authentication) {
+                connectBest();
+                return;
+            }
+        }
+
+        WifiConfiguration config = networks.getById(id);
+        listener.onConnectionError(error, config == null ? "" : config.SSID);
+
+        if (authentication) {
+            // Forget the network
+            platform.disableNetwork(id);
+            networks.remove(id);
+        }
+
+        String ssid = connection.getSsid();
+        String bssid = connection.getBssid();
+        if (!isEmpty(ssid)) {
+            recordFailure(ssid, bssid, authentication ? FailureLedger.Failure.AUTHENTICATION : FailureLedger.Failure.ASSOCIATION);
+            if (authentication)
+                policies.markWrongPassword(ssid, bssid);
+        }
+
+        // Fail over to the next network without waiting for the next scan
+        if (!candidates.isEmpty())
+            connectNextCandidate();
+    }
+
+    /**
+     * @return connection failures, saved in the storage.
+     */
+    public FailureLedger getFailureLedger() {
+        if (failureLedger == null)
+            failureLedger = FailureLedger.fromJson(storage.load(KEY_FAILURE_LEDGER), clock.currentTimeMillis());
+        return failureLedger;
+    }
+
+    private boolean isBlocked(WiFiPolicy policy, String ssid, String bssid, long now) {
+        return getFailureLedger().isBlocked(policy.getFingerprint(policy.getPriority(ssid, bssid)), ssid, bssid, now);
+    }
+
+    private void recordFailure(String ssid, String bssid, FailureLedger.Failure failure) {
+        WiFiPolicy policy = policies.get();
+        getFailureLedger().recordFailure(policy.getFingerprint(policy.getPriority(ssid, bssid)),
+                ssid, bssid, failure, clock.currentTimeMillis());
+        storage.save(KEY_FAILURE_LEDGER, failureLedger.toJson());
+        history.recordFailure(ssid);
+    }
+
+    /**
+     * Records the successful attempt.
+     * @param timeToIp time from the connection start to getting the IP address, ms.
+     */
+    public void recordSuccess(String ssid, String bssid, long timeToIp) {
+        WiFiPolicy policy = policies.get();
+        history.recordSuccess(ssid, timeToIp);
+        int size = getFailureLedger().size();
+        failureLedger.recordSuccess(policy.getFingerprint(policy.getPriority(ssid, bssid)), ssid);
+        if (failureLedger.size() != size)
+            storage.save(KEY_FAILURE_LEDGER, failureLedger.toJson());
+    }
+
+    @Override
+    public String toString() {
+        return connection + "; " + candidates + "; pinned: " + pinnedNetworkId;
+    }
+}
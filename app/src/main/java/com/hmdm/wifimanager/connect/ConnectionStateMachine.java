@@ -0,0 +1,255 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.connect;
+
+import java.util.Locale;
+
+/**
+ * State of the connection attempt made by the app:
+ * IDLE -> ASSOCIATING -> AUTHENTICATING -> OBTAINING_IP -> CONNECTED or FAILED.
+ * Each phase has a deadline, so a stuck attempt is aborted instead of blocking the next one.
+ * Driven by the supplicant and network events, the time is passed by the caller (ms since boot).
+ */
+public class ConnectionStateMachine {
+    public enum State {
+        IDLE,
+        ASSOCIATING,
+        AUTHENTICATING,
+        OBTAINING_IP,
+        CONNECTED,
+        FAILED
+    }
+
+    public enum Failure {
+        /**
+         * The supplicant reported the authentication error.
+         */
+        AUTHENTICATION,
+        /**
+         * The connection was lost after the association.
+         */
+        DISCONNECTED,
+        /**
+         * The phase took too long.
+         */
+        TIMEOUT
+    }
+
+    public static final long ASSOCIATING_TIMEOUT = 10 * 1000;
+    public static final long AUTHENTICATING_TIMEOUT = 10 * 1000;
+    public static final long OBTAINING_IP_TIMEOUT = 15 * 1000;
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private static final State[] STATES = State.values();
+
+    private State state = State.IDLE;
+    private int networkId = -1;
+    private String ssid = "";
+    private String bssid = "";
+    private long startTime;
+    private long stateTime;
+    private long endTime;
+    private Failure failure;
+    private State failedState;
+    /**
+     * Time spent in each state of the last attempt, ms.
+     */
+    private final long[] durations = new long[STATES.length];
+
+    /**
+     * @return deadline of the phase, 0 for no limit.
+     */
+    private static long getTimeout(State state) {
+        switch (state) {
+            case ASSOCIATING:
+                return ASSOCIATING_TIMEOUT;
+            case AUTHENTICATING:
+                return AUTHENTICATING_TIMEOUT;
+            case OBTAINING_IP:
+                return OBTAINING_IP_TIMEOUT;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Starts the attempt, the previous one is dropped.
+     */
+    public void start(int networkId, String ssid, String bssid, long now) {
+        this.networkId = networkId;
+        this.ssid = ssid != null ? ssid : "";
+        this.bssid = bssid != null ? bssid : "";
+        for (int i = 0; i < durations.length; i++)
+            durations[i] = 0;
+        failure = null;
+        failedState = null;
+        startTime = now;
+        endTime = 0;
+        state = State.ASSOCIATING;
+        stateTime = now;
+    }
+
+    /**
+     * Stops tracking the attempt without the result.
+     */
+    public void reset() {
+        state = State.IDLE;
+        networkId = -1;
+        ssid = "";
+        bssid = "";
+    }
+
+    /**
+     * @return true if the attempt is in progress.
+     */
+    public boolean isActive() {
+        return state == State.ASSOCIATING || state == State.AUTHENTICATING || state == State.OBTAINING_IP;
+    }
+
+    private void enter(State next, long now) {
+        durations[state.ordinal()] += now - stateTime;
+        state = next;
+        stateTime = now;
+    }
+
+    /**
+     * Moves the attempt forward. The supplicant may repeat the states or report them out of order
+     * (for example, after roaming), so only the moves to a later phase are applied.
+     * @return true if the state has changed.
+     */
+    public boolean advance(State next, long now) {
+        if (!isActive() || next.ordinal() <= state.ordinal() || next.ordinal() > State.OBTAINING_IP.ordinal())
+            return false;
+        enter(next, now);
+        return true;
+    }
+
+    public void onConnected(long now) {
+        if (!isActive())
+            return;
+        enter(State.CONNECTED, now);
+        endTime = now;
+    }
+
+    /**
+     * Handles the disconnection reported by the supplicant.
+     * Before the association it is a late event of the previous connection and is ignored:
+     * if the association doesn't start, the deadline aborts the attempt.
+     * @param authenticationError true if the supplicant reported the authentication error.
+     * @return true if the attempt has failed.
+     */
+    public boolean onDisconnected(boolean authenticationError, long now) {
+        if (!isActive())
+            return false;
+        if (authenticationError)
+            fail(Failure.AUTHENTICATION, now);
+        else if (state != State.ASSOCIATING)
+            fail(Failure.DISCONNECTED, now);
+        return state == State.FAILED;
+    }
+
+    /**
+     * Aborts the attempt if the current phase has expired.
+     * @return true if the attempt has failed.
+     */
+    public boolean checkDeadline(long now) {
+        if (!isActive() || now < getDeadline())
+            return false;
+        fail(Failure.TIMEOUT, now);
+        return true;
+    }
+
+    private void fail(Failure failure, long now) {
+        this.failure = failure;
+        failedState = state;
+        enter(State.FAILED, now);
+        endTime = now;
+    }
+
+    /**
+     * @return time when the current phase expires, NO_DEADLINE if the attempt isn't active.
+     */
+    public long getDeadline() {
+        return isActive() ? stateTime + getTimeout(state) : NO_DEADLINE;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public int getNetworkId() {
+        return networkId;
+    }
+
+    public String getSsid() {
+        return ssid;
+    }
+
+    public String getBssid() {
+        return bssid;
+    }
+
+    /**
+     * @return reason of the failure, null if the attempt hasn't failed.
+     */
+    public Failure getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return phase where the attempt has failed, null if it hasn't failed.
+     */
+    public State getFailedState() {
+        return failedState;
+    }
+
+    /**
+     * @return time spent in the phase by the last attempt, ms.
+     */
+    public long getDuration(State state) {
+        return durations[state.ordinal()];
+    }
+
+    /**
+     * @return duration of the finished attempt, ms; 0 if the attempt isn't finished.
+     */
+    public long getTotalDuration() {
+        return endTime != 0 ? endTime - startTime : 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(state.toString());
+        if (state != State.IDLE)
+            result.append(String.format(Locale.US, "; network: %d (%s %s)", networkId, ssid, bssid));
+        if (failure != null)
+            result.append("; failure: ").append(failure).append(" in ").append(failedState);
+        if (endTime != 0) {
+            result.append("; total: ").append(endTime - startTime).append(" ms");
+            for (State phase : STATES) {
+                if (durations[phase.ordinal()] != 0)
+                    result.append("; ").append(phase).append(": ").append(durations[phase.ordinal()]).append(" ms");
+            }
+        }
+        return result.toString();
+    }
+}
@@ -33,6 +33,15 @@ public class AllowedItem {
      * Network BSSID.
      */
     public String bssid;
+    /**
+     * SSID pattern: '*' matches any sequence of characters, '?' matches any character.
+     * For example, "Store-*" matches all networks of the stores.
+     */
+    public String ssidPattern;
+    /**
+     * Range of BSSIDs: "aa:bb:cc:*" (leading bytes, e.g. OUI) or "aa:bb:cc:dd:ee:00/40" (leading bits).
+     */
+    public String bssidRange;
     /**
      * Password.
      */
@@ -48,8 +57,11 @@ public class AllowedItem {
     /**
      * This flag shows the coincidence of the password from 'password' field
      * and the password of network with this SSID/BSSID.
-     * This flag is set when we receive an authentication error,
-     * and we do not attempt to connect with this network any more.
+     * The flag is set in the compiled policy (see WiFiPolicy.withWrongPassword) when we receive
+     * an authentication error, and we do not attempt to connect with this network any more
+     * until the credentials change or the failure expires. The authentication failures are saved (see FailureLedger),
+     * so the flag is restored when the configuration is compiled again.
+     * The value here is only read when the configuration is compiled.
      */
     public boolean wrongPassword = false;
 
@@ -0,0 +1,76 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.model;
+
+/**
+ * Conversion of the BSSID (MAC address of the access point) to a 48-bit long key.
+ */
+public final class Bssid {
+    /**
+     * Key of an empty or malformed BSSID.
+     */
+    public static final long NONE = -1;
+
+    private Bssid() {}
+
+    /**
+     * Parses the BSSID in the format xx:xx:xx:xx:xx:xx (or xx-xx-xx-xx-xx-xx), case insensitive.
+     * @return 48-bit key, or NONE if the BSSID is empty or malformed.
+     */
+    public static long parse(String bssid) {
+        if (bssid == null || bssid.length() != 17)
+            return NONE;
+
+        long result = 0;
+        for (int i = 0; i < 17; i++) {
+            char c = bssid.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':' && c != '-')
+                    return NONE;
+                continue;
+            }
+            int digit = Character.digit(c, 16);
+            if (digit < 0)
+                return NONE;
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
+    /**
+     * @return BSSID in the format xx:xx:xx:xx:xx:xx, or an empty string for NONE.
+     */
+    public static String format(long key) {
+        if (key < 0)
+            return "";
+
+        char[] result = new char[17];
+        for (int i = 5; i >= 0; i--) {
+            int b = (int) (key >>> (8 * (5 - i))) & 0xff;
+            result[i * 3] = Character.forDigit(b >>> 4, 16);
+            result[i * 3 + 1] = Character.forDigit(b & 0xf, 16);
+            if (i < 5)
+                result[i * 3 + 2] = ':';
+        }
+        return new String(result);
+    }
+}
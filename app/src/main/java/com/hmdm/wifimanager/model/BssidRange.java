@@ -0,0 +1,97 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.model;
+
+/**
+ * Range of BSSIDs sharing the first bits, for example the OUI of a vendor.
+ * Formats: "aa:bb:cc:*" (leading bytes) or "aa:bb:cc:dd:ee:ff/24" (number of leading bits).
+ */
+public final class BssidRange {
+    /**
+     * BSSID key with the bits outside the prefix cleared.
+     */
+    private final long value;
+    /**
+     * Number of leading bits, 1 to 48.
+     */
+    private final int bits;
+
+    public BssidRange(long value, int bits) {
+        this.bits = bits;
+        this.value = value & mask(bits);
+    }
+
+    /**
+     * @return mask of the leading bits of a 48-bit key.
+     */
+    public static long mask(int bits) {
+        return bits == 0 ? 0 : (0xffffffffffffL << (48 - bits)) & 0xffffffffffffL;
+    }
+
+    /**
+     * @return parsed range, or null if the string is empty or malformed.
+     */
+    public static BssidRange parse(String range) {
+        if (range == null || range.isEmpty())
+            return null;
+
+        int slash = range.indexOf('/');
+        if (slash >= 0) {
+            long value = Bssid.parse(range.substring(0, slash));
+            int bits;
+            try {
+                bits = Integer.parseInt(range.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            return value != Bssid.NONE && bits > 0 && bits <= 48 ? new BssidRange(value, bits) : null;
+        }
+
+        if (range.endsWith("*")) {
+            // Leading bytes followed by a wildcard: "aa:bb:cc:*"
+            String prefix = range.substring(0, range.length() - 1);
+            if (prefix.isEmpty() || prefix.length() % 3 != 0 || prefix.length() > 15)
+                return null;
+            int bytes = prefix.length() / 3;
+            StringBuilder full = new StringBuilder(prefix);
+            for (int i = bytes; i < 6; i++)
+                full.append(i < 5 ? "00:" : "00");
+            long value = Bssid.parse(full.toString());
+            return value != Bssid.NONE ? new BssidRange(value, bytes * 8) : null;
+        }
+
+        long value = Bssid.parse(range);
+        return value != Bssid.NONE ? new BssidRange(value, 48) : null;
+    }
+
+    public long getValue() {
+        return value;
+    }
+
+    public int getBits() {
+        return bits;
+    }
+
+    public boolean matches(long bssid) {
+        return bssid != Bssid.NONE && (bssid & mask(bits)) == value;
+    }
+}
@@ -21,185 +21,383 @@
 
 package com.hmdm.wifimanager.model;
 
-import android.text.TextUtils;
-
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Describes the parameters of network encryption.
+ * The descriptor is packed into a single int and interned, so instances
+ * with the same parameters are the same object and may be compared with ==.
+ * Use {@link #parse(String)} to obtain them.
  */
-public class Capabilities {
-    enum AuthMethod {WPA3, WPA2, WPA, OTHER, CCKM, OPEN}
-    enum KeyManagementAlgorithm {IEEE8021X, EAP, PSK, WEP, SAE, OWE, NONE}
-    enum ChiperMethod {WEP, TKIP, CCMP, NONE}
-    enum TopologyMode {IBSS, BSS, ESS}
-
-    public static class Capability {
-        public AuthMethod authMethod;
-        public KeyManagementAlgorithm keyManagementAlgorithm;
-        public ChiperMethod chiperMethod;
-
-        public Capability(AuthMethod authMethod, KeyManagementAlgorithm keyManagementAlgorithm, ChiperMethod chiperMethod) {
-            this.authMethod = authMethod;
-            this.keyManagementAlgorithm = keyManagementAlgorithm;
-            this.chiperMethod = chiperMethod;
+public final class Capabilities {
+    public enum AuthMethod {WPA3, WPA2, WPA, OTHER, CCKM, OPEN}
+    public enum KeyManagementAlgorithm {IEEE8021X, EAP, PSK, WEP, SAE, OWE, NONE}
+    public enum ChiperMethod {WEP, TKIP, CCMP, NONE}
+    public enum TopologyMode {IBSS, BSS, ESS}
+
+    /**
+     * Security levels, see {@link #getSecurityLevel()}.
+     */
+    public static final int SECURITY_NONE = 0;
+    public static final int SECURITY_WEP = 1;
+    public static final int SECURITY_WPA = 2;
+    public static final int SECURITY_WPA2 = 3;
+    public static final int SECURITY_WPA3 = 4;
+
+    // Masks of all methods found in the string, one bit per enum ordinal
+    private static final int AUTH_SHIFT = 0;
+    private static final int KEY_SHIFT = 6;
+    private static final int CHIPER_SHIFT = 13;
+    // The first (primary) capability, which is displayed to the user, coded as ordinal + 1.
+    // Code 0 means there's no capability, UNSPECIFIED (all bits of the field set) means
+    // the method was not present in the token; the fields are wide enough for all ordinals to stay below it
+    private static final int PRIMARY_AUTH_SHIFT = 17;
+    private static final int PRIMARY_KEY_SHIFT = 20;
+    private static final int PRIMARY_CHIPER_SHIFT = 24;
+    private static final int PRIMARY_MASK = 0x7;
+    private static final int PRIMARY_KEY_MASK = 0xF;
+    private static final int UNSPECIFIED = PRIMARY_MASK;
+    private static final int KEY_UNSPECIFIED = PRIMARY_KEY_MASK;
+    private static final int TOPOLOGY_SHIFT = 27;
+    private static final int WPS = 1 << 29;
+    private static final int OPEN = 1 << 30;
+
+    /**
+     * Max number of distinct capabilities strings kept in the cache.
+     * A site usually has only a few dozen of them, so the cache is warm after the first scans.
+     */
+    private static final int CACHE_SIZE = 128;
+
+    /**
+     * Parsed capabilities keyed by the raw ScanResult.capabilities string, least recently used are evicted.
+     */
+    private static final Map<String, Capabilities> cache = new LinkedHashMap<String, Capabilities>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Capabilities> eldest) {
+            return size() > CACHE_SIZE;
         }
-    }
+    };
+
+    /**
+     * Interned descriptors keyed by their bits.
+     */
+    private static final Map<Integer, Capabilities> interned = new HashMap<>();
 
-    public List<Capability> capabilities = new ArrayList<>();
-    public TopologyMode topologyMode;
-    public boolean isWps;
+    private static final Capabilities EMPTY = intern(0);
 
+    private final int bits;
+    private final String formatted;
+
+    private Capabilities(int bits) {
+        this.bits = bits;
+        this.formatted = buildFormat(bits);
+    }
+
+    /**
+     * Returns the parsed capabilities string, for example "[WPA2-PSK-CCMP][ESS][WPS]".
+     * Results are cached, so repeated calls with the same string do not allocate.
+     * @param capabilitiesString ScanResult.capabilities.
+     * @return shared immutable instance.
+     */
     public static Capabilities parse(String capabilitiesString) {
-        Capabilities result = new Capabilities();
+        if (capabilitiesString == null || capabilitiesString.isEmpty())
+            return EMPTY;
+
+        Capabilities result;
+        synchronized (cache) {
+            result = cache.get(capabilitiesString);
+        }
+
+        if (result == null) {
+            result = intern(scan(capabilitiesString));
+            synchronized (cache) {
+                cache.put(capabilitiesString, result);
+            }
+        }
+
+        return result;
+    }
 
-        if (!TextUtils.isEmpty(capabilitiesString)) {
-            Matcher matcher = Pattern.compile("\\[(.*?)\\]").matcher(capabilitiesString);
-            ArrayList<String> tokens = new ArrayList<>();
-            while (matcher.find()) {
-                tokens.add(matcher.group().replace("[", "").replace("]", ""));
+    private static Capabilities intern(int bits) {
+        synchronized (interned) {
+            Capabilities result = interned.get(bits);
+            if (result == null) {
+                result = new Capabilities(bits);
+                interned.put(bits, result);
             }
+            return result;
+        }
+    }
 
-            /*String delimiter="\\s+|]\\s*|\\[\\s*";
-            String [] array = capabilitiesString.split(delimiter);*/
-
-            if (tokens.size() > 0) {
-                for (String item : tokens) {
-                    if (item.equals("WPS"))
-                        result.isWps = true;
-                    else if (item.equals("IBSS"))
-                        result.topologyMode = TopologyMode.IBSS;
-                    else if (item.equals("BSS"))
-                        result.topologyMode = TopologyMode.BSS;
-                    else if (item.equals("ESS "))
-                        result.topologyMode = TopologyMode.ESS;
-                    else {
-                        if (item.contains("WEP")) {
-                            result.capabilities.add(new Capability(AuthMethod.OTHER, KeyManagementAlgorithm.WEP, ChiperMethod.WEP));
-                        }
-                        else {
-                            AuthMethod authMethod = null;
-                            if (item.contains("WPA3") || item.contains("RSN"))
-                                authMethod = AuthMethod.WPA3;
-                            else if (item.contains("WPA2"))
-                                authMethod = AuthMethod.WPA2;
-                            else if (item.contains("WPA"))
-                                authMethod = AuthMethod.WPA;
-
-                            KeyManagementAlgorithm keyManagementAlgorithm = null;
-                            if (item.contains("IEEE802.1X"))
-                                keyManagementAlgorithm = KeyManagementAlgorithm.IEEE8021X;
-                            else if (item.contains("EAP"))
-                                keyManagementAlgorithm = KeyManagementAlgorithm.EAP;
-                            else if (item.contains("PSK"))
-                                keyManagementAlgorithm = KeyManagementAlgorithm.PSK;
-                            else if (item.contains("SAE"))
-                                keyManagementAlgorithm = KeyManagementAlgorithm.SAE;
-                            else if (item.contains("OWE"))
-                                keyManagementAlgorithm = KeyManagementAlgorithm.OWE;
-
-                            if (item.contains("TKIP") || item.contains("CCMP")) {
-                                if (item.contains("TKIP"))
-                                    result.capabilities.add(new Capability(authMethod == null ? AuthMethod.OPEN : authMethod,
-                                            keyManagementAlgorithm == null ? KeyManagementAlgorithm.NONE : keyManagementAlgorithm,
-                                        ChiperMethod.TKIP));
-
-                                if (item.contains("CCMP"))
-                                    result.capabilities.add(new Capability(authMethod == null ? AuthMethod.OPEN : authMethod,
-                                            keyManagementAlgorithm == null ? KeyManagementAlgorithm.NONE : keyManagementAlgorithm,
-                                            ChiperMethod.CCMP));
-                            }
-                            else if (authMethod != null || keyManagementAlgorithm != null) {
-                                result.capabilities.add(new Capability(authMethod, keyManagementAlgorithm, ChiperMethod.NONE));
-                            }
-                        }
+    /**
+     * Single pass over the [...] tokens of the string; the tokens are matched in place without substrings.
+     * @return packed descriptor bits.
+     */
+    private static int scan(String str) {
+        int bits = 0;
+
+        int start = -1;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == '[') {
+                start = i + 1;
+            } else if (c == ']' && start >= 0) {
+                int end = i;
+
+                if (equalsToken(str, start, end, "WPS"))
+                    bits |= WPS;
+                else if (equalsToken(str, start, end, "IBSS"))
+                    bits = withTopology(bits, TopologyMode.IBSS);
+                else if (equalsToken(str, start, end, "BSS"))
+                    bits = withTopology(bits, TopologyMode.BSS);
+                else if (equalsToken(str, start, end, "ESS"))
+                    bits = withTopology(bits, TopologyMode.ESS);
+                else if (containsToken(str, start, end, "WEP"))
+                    bits = withCapability(bits, AuthMethod.OTHER, KeyManagementAlgorithm.WEP, ChiperMethod.WEP);
+                else {
+                    AuthMethod authMethod = null;
+                    if (containsToken(str, start, end, "WPA3") || containsToken(str, start, end, "RSN"))
+                        authMethod = AuthMethod.WPA3;
+                    else if (containsToken(str, start, end, "WPA2"))
+                        authMethod = AuthMethod.WPA2;
+                    else if (containsToken(str, start, end, "WPA"))
+                        authMethod = AuthMethod.WPA;
+
+                    KeyManagementAlgorithm keyManagementAlgorithm = null;
+                    if (containsToken(str, start, end, "IEEE802.1X"))
+                        keyManagementAlgorithm = KeyManagementAlgorithm.IEEE8021X;
+                    else if (containsToken(str, start, end, "EAP"))
+                        keyManagementAlgorithm = KeyManagementAlgorithm.EAP;
+                    else if (containsToken(str, start, end, "PSK"))
+                        keyManagementAlgorithm = KeyManagementAlgorithm.PSK;
+                    else if (containsToken(str, start, end, "SAE"))
+                        keyManagementAlgorithm = KeyManagementAlgorithm.SAE;
+                    else if (containsToken(str, start, end, "OWE"))
+                        keyManagementAlgorithm = KeyManagementAlgorithm.OWE;
+
+                    boolean tkip = containsToken(str, start, end, "TKIP");
+                    boolean ccmp = containsToken(str, start, end, "CCMP");
+                    if (tkip || ccmp) {
+                        if (tkip)
+                            bits = withCapability(bits, authMethod == null ? AuthMethod.OPEN : authMethod,
+                                    keyManagementAlgorithm == null ? KeyManagementAlgorithm.NONE : keyManagementAlgorithm,
+                                    ChiperMethod.TKIP);
+
+                        if (ccmp)
+                            bits = withCapability(bits, authMethod == null ? AuthMethod.OPEN : authMethod,
+                                    keyManagementAlgorithm == null ? KeyManagementAlgorithm.NONE : keyManagementAlgorithm,
+                                    ChiperMethod.CCMP);
+                    }
+                    else if (authMethod != null || keyManagementAlgorithm != null) {
+                        bits = withCapability(bits, authMethod, keyManagementAlgorithm, ChiperMethod.NONE);
                     }
                 }
+                start = -1;
             }
-
-            if (result.capabilities.size() <= 0)
-                result.capabilities.add(new Capability(AuthMethod.OPEN, KeyManagementAlgorithm.NONE, ChiperMethod.NONE));
         }
 
-        return result;
+        if (primaryCode(bits, PRIMARY_AUTH_SHIFT) == 0)
+            bits = withCapability(bits, AuthMethod.OPEN, KeyManagementAlgorithm.NONE, ChiperMethod.NONE);
+
+        return bits;
     }
 
-    public boolean isOpen() {
-        return capabilities.size() > 0 && capabilities.get(0).authMethod == AuthMethod.OPEN;
+    private static boolean equalsToken(String str, int start, int end, String token) {
+        return end - start == token.length() && str.regionMatches(start, token, 0, token.length());
     }
 
-    public String testFormat() {
-        String result = "";
-
-        if (capabilities.size() > 0) {
-            for (Capability item : capabilities) {
-                if (!TextUtils.isEmpty(result))
-                    result += "\n";
-
-                if (item.authMethod != null)
-                    result += "authMethod: " + item.authMethod.name();
-                else
-                    result += "authMethod: null";
-
-                if (item.keyManagementAlgorithm != null)
-                    result += "; keyManagementAlgorithm: " + item.keyManagementAlgorithm.name();
-                else
-                    result += "; keyManagementAlgorithm: null";
-
-                if (item.chiperMethod != null)
-                    result += "; chiperMethod: " + item.chiperMethod.name();
-                else
-                    result += "; chiperMethod: null";
-            }
+    private static boolean containsToken(String str, int start, int end, String token) {
+        for (int i = start; i <= end - token.length(); i++) {
+            if (str.regionMatches(i, token, 0, token.length()))
+                return true;
         }
-        else {
-            result += "no capabilities";
+        return false;
+    }
+
+    private static int withTopology(int bits, TopologyMode topologyMode) {
+        return (bits & ~(0x3 << TOPOLOGY_SHIFT)) | ((topologyMode.ordinal() + 1) << TOPOLOGY_SHIFT);
+    }
+
+    private static int withCapability(int bits, AuthMethod authMethod, KeyManagementAlgorithm keyManagementAlgorithm,
+                                      ChiperMethod chiperMethod) {
+        if (authMethod != null)
+            bits |= 1 << (AUTH_SHIFT + authMethod.ordinal());
+        if (keyManagementAlgorithm != null)
+            bits |= 1 << (KEY_SHIFT + keyManagementAlgorithm.ordinal());
+        bits |= 1 << (CHIPER_SHIFT + chiperMethod.ordinal());
+
+        // The first capability in the string is the primary one
+        if (primaryCode(bits, PRIMARY_AUTH_SHIFT) == 0) {
+            bits |= (authMethod == null ? UNSPECIFIED : authMethod.ordinal() + 1) << PRIMARY_AUTH_SHIFT;
+            bits |= (keyManagementAlgorithm == null ? KEY_UNSPECIFIED : keyManagementAlgorithm.ordinal() + 1) << PRIMARY_KEY_SHIFT;
+            bits |= (chiperMethod.ordinal() + 1) << PRIMARY_CHIPER_SHIFT;
+            if (authMethod == AuthMethod.OPEN)
+                bits |= OPEN;
         }
+        return bits;
+    }
 
-        if (topologyMode != null)
-            result += "\ntopologyMode: " + topologyMode.name();
+    private static int primaryCode(int bits, int shift) {
+        return (bits >>> shift) & (shift == PRIMARY_KEY_SHIFT ? PRIMARY_KEY_MASK : PRIMARY_MASK);
+    }
 
-        if (isWps)
-            result += "\nWPS";
-        else
-            result += "\nno WPS";
+    /**
+     * Stable identifier of the descriptor; equal for equal parameters across app launches.
+     */
+    public int getId() {
+        return bits;
+    }
 
-        return result;
+    public boolean isOpen() {
+        return (bits & OPEN) != 0;
     }
 
-    public String format() {
-        String result = "";
-
-        if (capabilities.size() > 0) {
-            for (Capability item : capabilities) {
-                if (!TextUtils.isEmpty(result))
-                    break;
-                if (isOpen())
-                    return "OPEN";
-                else {
-                    result += item.authMethod.name();
+    public boolean isWps() {
+        return (bits & WPS) != 0;
+    }
 
-                    if (item.keyManagementAlgorithm != KeyManagementAlgorithm.NONE || item.chiperMethod != ChiperMethod.NONE) {
-                        result += "(";
+    /**
+     * @return true if no capabilities were provided (empty string).
+     */
+    public boolean isEmpty() {
+        return primaryCode(bits, PRIMARY_AUTH_SHIFT) == 0;
+    }
 
-                        if (item.keyManagementAlgorithm != KeyManagementAlgorithm.NONE)
-                            result += item.keyManagementAlgorithm.name();
+    /**
+     * @return strength of the best security offered by the access point, one of the SECURITY_* constants.
+     */
+    public int getSecurityLevel() {
+        if (hasKeyManagement(KeyManagementAlgorithm.SAE))
+            return SECURITY_WPA3;
+        // RSN is parsed as WPA3, but it's also reported by the WPA2 access points
+        if (hasAuthMethod(AuthMethod.WPA2) || hasAuthMethod(AuthMethod.WPA3))
+            return SECURITY_WPA2;
+        // OWE encrypts the open networks, but doesn't authenticate them
+        if (hasAuthMethod(AuthMethod.WPA) || hasKeyManagement(KeyManagementAlgorithm.OWE))
+            return SECURITY_WPA;
+        if (hasKeyManagement(KeyManagementAlgorithm.WEP) || hasChiper(ChiperMethod.WEP))
+            return SECURITY_WEP;
+        return SECURITY_NONE;
+    }
 
-                        if (item.keyManagementAlgorithm != KeyManagementAlgorithm.NONE && item.chiperMethod != ChiperMethod.NONE)
-                            result += "+";
+    public boolean hasAuthMethod(AuthMethod authMethod) {
+        return (bits & (1 << (AUTH_SHIFT + authMethod.ordinal()))) != 0;
+    }
 
-                        if (item.chiperMethod != ChiperMethod.NONE)
-                            result += item.chiperMethod.name();
+    public boolean hasKeyManagement(KeyManagementAlgorithm keyManagementAlgorithm) {
+        return (bits & (1 << (KEY_SHIFT + keyManagementAlgorithm.ordinal()))) != 0;
+    }
 
-                        result += ")";
-                    }
-                }
+    public boolean hasChiper(ChiperMethod chiperMethod) {
+        return (bits & (1 << (CHIPER_SHIFT + chiperMethod.ordinal()))) != 0;
+    }
+
+    /**
+     * @return auth method of the primary capability, or null if not specified.
+     */
+    AuthMethod getAuthMethod() {
+        int code = primaryCode(bits, PRIMARY_AUTH_SHIFT);
+        return code == 0 || code == UNSPECIFIED ? null : AuthMethod.values()[code - 1];
+    }
+
+    /**
+     * @return key management algorithm of the primary capability, or null if not specified.
+     */
+    KeyManagementAlgorithm getKeyManagementAlgorithm() {
+        int code = primaryCode(bits, PRIMARY_KEY_SHIFT);
+        return code == 0 || code == KEY_UNSPECIFIED ? null : KeyManagementAlgorithm.values()[code - 1];
+    }
+
+    /**
+     * @return chiper method of the primary capability, or null if there's no capability.
+     */
+    ChiperMethod getChiperMethod() {
+        int code = primaryCode(bits, PRIMARY_CHIPER_SHIFT);
+        return code == 0 ? null : ChiperMethod.values()[code - 1];
+    }
+
+    TopologyMode getTopologyMode() {
+        int code = (bits >>> TOPOLOGY_SHIFT) & 0x3;
+        return code == 0 ? null : TopologyMode.values()[code - 1];
+    }
+
+    public String testFormat() {
+        StringBuilder result = new StringBuilder();
+
+        if (!isEmpty()) {
+            result.append("authMethod: ");
+            appendMask(result, AuthMethod.values(), AUTH_SHIFT);
+            result.append("; keyManagementAlgorithm: ");
+            appendMask(result, KeyManagementAlgorithm.values(), KEY_SHIFT);
+            result.append("; chiperMethod: ");
+            appendMask(result, ChiperMethod.values(), CHIPER_SHIFT);
+        }
+        else {
+            result.append("no capabilities");
+        }
+
+        if (getTopologyMode() != null)
+            result.append("\ntopologyMode: ").append(getTopologyMode().name());
+
+        result.append(isWps() ? "\nWPS" : "\nno WPS");
+
+        return result.toString();
+    }
+
+    private void appendMask(StringBuilder result, Enum<?>[] values, int shift) {
+        int length = result.length();
+        for (Enum<?> value : values) {
+            if ((bits & (1 << (shift + value.ordinal()))) != 0) {
+                if (result.length() > length)
+                    result.append('|');
+                result.append(value.name());
             }
         }
+        if (result.length() == length)
+            result.append("null");
+    }
 
-        return result;
+    /**
+     * @return short description of the primary capability, for example "WPA2(PSK+CCMP)" or "OPEN".
+     */
+    public String format() {
+        return formatted;
+    }
+
+    private static String buildFormat(int bits) {
+        if (primaryCode(bits, PRIMARY_AUTH_SHIFT) == 0)
+            return "";
+        if ((bits & OPEN) != 0)
+            return "OPEN";
+
+        int authCode = primaryCode(bits, PRIMARY_AUTH_SHIFT);
+        int keyCode = primaryCode(bits, PRIMARY_KEY_SHIFT);
+        int chiperCode = primaryCode(bits, PRIMARY_CHIPER_SHIFT);
+        boolean hasKey = keyCode != KEY_UNSPECIFIED && keyCode - 1 != KeyManagementAlgorithm.NONE.ordinal();
+        boolean hasChiper = chiperCode - 1 != ChiperMethod.NONE.ordinal();
+
+        StringBuilder result = new StringBuilder();
+        if (authCode != UNSPECIFIED)
+            result.append(AuthMethod.values()[authCode - 1].name());
+
+        if (hasKey || hasChiper) {
+            result.append('(');
+            if (hasKey)
+                result.append(KeyManagementAlgorithm.values()[keyCode - 1].name());
+            if (hasKey && hasChiper)
+                result.append('+');
+            if (hasChiper)
+                result.append(ChiperMethod.values()[chiperCode - 1].name());
+            result.append(')');
+        }
+
+        return result.toString();
+    }
+
+    @Override
+    public String toString() {
+        return formatted;
     }
 }
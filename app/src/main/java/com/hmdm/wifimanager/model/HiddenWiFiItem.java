@@ -21,16 +21,10 @@
 
 package com.hmdm.wifimanager.model;
 
-import android.text.TextUtils;
-
 /**
  * Representation for hidden networks
  */
 public class HiddenWiFiItem extends WiFiItem {
-    /**
-     * Network SSID
-     */
-    private String ssid;
     /**
      * Security type (should be explicitly provided for hidden networks)
      */
@@ -39,10 +33,7 @@ public class HiddenWiFiItem extends WiFiItem {
     @Override
     public WiFiItem clone() {
         HiddenWiFiItem item = new HiddenWiFiItem();
-        item.allowed = allowed;
-        item.userAction = userAction;
-        item.wrong = wrong;
-        item.ssid = ssid;
+        copyTo(item);
         item.security = security;
         return item;
     }
@@ -52,32 +43,22 @@ public class HiddenWiFiItem extends WiFiItem {
     public HiddenWiFiItem(String ssid, String security) {
         this.ssid = ssid;
         this.security = security;
-    }
-
-    @Override
-    public String getSSID() {
-        return ssid;
+        //ScanResult.capabilities are conventionally wrapped by [ ], so a raw string may not work as expected
+        if (security != null && !security.isEmpty() && !security.startsWith("[")) {
+            this.capabilities = "[" + security + "]";
+        } else {
+            this.capabilities = security;
+        }
+        this.securityDescriptor = Capabilities.parse(capabilities);
     }
 
     @Override
     public boolean hasEncryption() {
-        return !TextUtils.isEmpty(security);
+        return security != null && !security.isEmpty();
     }
 
     @Override
     public boolean isHidden() {
         return true;
     }
-
-    @Override
-    public String getCapabilities() {
-        if (scanResult == null) {
-            //ScanResult.capabilities are conventionally wrapped by [ ], so a raw string may not work as expected
-            if (security != null && !security.isEmpty() && !security.startsWith("[")) {
-                return "[" + security + "]";
-            }
-            return security;
-        }
-        return scanResult.capabilities;
-    }
 }
@@ -40,6 +40,15 @@ public class MDMConfig {
      * List of allowed networks.
      */
     public ArrayList<AllowedItem> allowed;
+    /**
+     * Maximal age of the scanning results delivered by the system or other apps, seconds.
+     * A new scan is started only if the latest results are older; 0 - the interval of the scans is used.
+     */
+    public int scanMaxAge;
+    /**
+     * Weights of the criteria used to choose the best network, null for the defaults.
+     */
+    public ScoringWeights scoring;
 
     public MDMConfig() {
         allAllowed = true;
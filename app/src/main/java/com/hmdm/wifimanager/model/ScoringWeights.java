@@ -0,0 +1,57 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.model;
+
+/**
+ * Weights of the access point ranking criteria, configured in Headwind MDM.
+ * Each criterion is rated from 0 to 1; the score of an access point is the weighted sum.
+ */
+public class ScoringWeights {
+    /**
+     * Signal level.
+     */
+    public double rssi;
+    /**
+     * 5 or 6 GHz band.
+     */
+    public double band;
+    /**
+     * Security strength.
+     */
+    public double security;
+    /**
+     * Share of the successful connections to the network.
+     */
+    public double success;
+    /**
+     * Time from the connection start to getting the IP address.
+     */
+    public double timeToIp;
+
+    public ScoringWeights() {
+        rssi = 0.5;
+        band = 0.15;
+        security = 0.1;
+        success = 0.15;
+        timeToIp = 0.1;
+    }
+}
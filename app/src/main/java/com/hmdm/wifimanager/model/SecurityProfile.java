@@ -0,0 +1,194 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.model;
+
+import android.net.wifi.WifiConfiguration;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Security settings of a WifiConfiguration compiled from the capabilities string.
+ * A profile is compiled once per distinct capabilities string and then applied
+ * to new configurations without parsing the string again.
+ */
+public final class SecurityProfile {
+    /**
+     * Max number of distinct capabilities strings kept in the cache.
+     */
+    private static final int CACHE_SIZE = 128;
+
+    private static final Map<String, SecurityProfile> cache = new LinkedHashMap<String, SecurityProfile>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SecurityProfile> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private static final SecurityProfile EMPTY = new SecurityProfile(null);
+
+    private final boolean empty;
+    private final BitSet allowedProtocols = new BitSet();
+    private final BitSet allowedAuthAlgorithms = new BitSet();
+    private final BitSet allowedKeyManagement = new BitSet();
+    private final BitSet allowedPairwiseCiphers = new BitSet();
+    /**
+     * The password is a WEP key rather than a WPA passphrase.
+     */
+    private final boolean wep;
+
+    /**
+     * Returns the profile for the capabilities string, compiling it on the first call.
+     * @param capabilities ScanResult.capabilities or the security type of a hidden network.
+     * @return shared immutable profile.
+     */
+    public static SecurityProfile compile(String capabilities) {
+        if (capabilities == null || capabilities.isEmpty())
+            return EMPTY;
+
+        SecurityProfile result;
+        synchronized (cache) {
+            result = cache.get(capabilities);
+        }
+
+        if (result == null) {
+            result = new SecurityProfile(capabilities);
+            synchronized (cache) {
+                cache.put(capabilities, result);
+            }
+        }
+
+        return result;
+    }
+
+    private SecurityProfile(String capabilities) {
+        empty = capabilities == null || capabilities.isEmpty();
+        if (empty) {
+            wep = false;
+            return;
+        }
+
+        boolean isWPA = capabilities.contains("WPA");
+        boolean isEAP = capabilities.contains("EAP");
+        wep = capabilities.contains("WEP");
+
+        if (isWPA) {
+            allowedProtocols.set(WifiConfiguration.Protocol.WPA);
+            allowedProtocols.set(WifiConfiguration.Protocol.RSN);
+        }
+
+        if (isEAP)
+            allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.LEAP);
+        else if (isWPA)
+            allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.OPEN);
+        else if (wep)
+            allowedAuthAlgorithms.set(WifiConfiguration.AuthAlgorithm.SHARED);
+
+        // "WPA2" and "WPA3" contain "WPA", so a single check covers all the versions
+        if (capabilities.contains("IEEE802.1X"))
+            allowedKeyManagement.set(WifiConfiguration.KeyMgmt.IEEE8021X);
+        else if (isWPA && isEAP)
+            allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_EAP);
+        else if (isWPA && capabilities.contains("PSK"))
+            allowedKeyManagement.set(WifiConfiguration.KeyMgmt.WPA_PSK);
+        else
+            allowedKeyManagement.set(WifiConfiguration.KeyMgmt.NONE);
+
+        if (capabilities.contains("CCMP") || capabilities.contains("TKIP")) {
+            allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.CCMP);
+            allowedPairwiseCiphers.set(WifiConfiguration.PairwiseCipher.TKIP);
+        }
+    }
+
+    /**
+     * Applies the security settings and the password to the configuration.
+     * @param config network configuration.
+     * @param preSharedKey password, may be empty.
+     */
+    public void applyTo(WifiConfiguration config, String preSharedKey) {
+        if (empty || config == null)
+            return;
+
+        config.allowedProtocols.or(allowedProtocols);
+        config.allowedAuthAlgorithms.or(allowedAuthAlgorithms);
+        config.allowedKeyManagement.or(allowedKeyManagement);
+        config.allowedPairwiseCiphers.or(allowedPairwiseCiphers);
+
+        if (preSharedKey != null && !preSharedKey.isEmpty()) {
+            if (wep) {
+                config.wepKeys[0] = encodePassword(preSharedKey);
+                config.allowedGroupCiphers.set(WifiConfiguration.GroupCipher.WEP40);
+                config.wepTxKeyIndex = 0;
+            } else {
+                config.preSharedKey = encodePassword(preSharedKey);
+            }
+        }
+    }
+
+    /**
+     * Encodes the password as it should be stored in the configuration:
+     * hexadecimal WEP keys are stored as is, other passwords are quoted.
+     * @param preSharedKey password.
+     * @return encoded password.
+     */
+    public String encodePassword(String preSharedKey) {
+        if (wep && isHex(preSharedKey))
+            return preSharedKey;
+        return "\"" + preSharedKey + "\"";
+    }
+
+    private static boolean isHex(String str) {
+        if (str.isEmpty())
+            return false;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f') && !(c >= 'A' && c <= 'F'))
+                return false;
+        }
+        return true;
+    }
+
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    public boolean isWep() {
+        return wep;
+    }
+
+    public BitSet getAllowedProtocols() {
+        return (BitSet) allowedProtocols.clone();
+    }
+
+    public BitSet getAllowedAuthAlgorithms() {
+        return (BitSet) allowedAuthAlgorithms.clone();
+    }
+
+    public BitSet getAllowedKeyManagement() {
+        return (BitSet) allowedKeyManagement.clone();
+    }
+
+    public BitSet getAllowedPairwiseCiphers() {
+        return (BitSet) allowedPairwiseCiphers.clone();
+    }
+}
@@ -27,12 +27,42 @@ import android.os.Parcelable;
 
 /**
  * Describes the network parameters used to display the info in the app interface.
+ * The access point parameters are copied from ScanResult, so items can be created
+ * and processed without the Android framework (in unit tests and benchmarks).
  */
 public class WiFiItem implements Parcelable {
     /**
-     * Access point parameters.
+     * Network SSID.
      */
-    protected ScanResult scanResult;
+    protected String ssid;
+    /**
+     * Access point BSSID.
+     */
+    protected String bssid;
+    /**
+     * BSSID parsed to a 48-bit key, Bssid.NONE if empty.
+     */
+    protected long bssidKey = Bssid.NONE;
+    /**
+     * Raw capabilities string, null if there's no access point data.
+     */
+    protected String capabilities;
+    /**
+     * Signal level, dBm.
+     */
+    protected int level;
+    /**
+     * Channel frequency, MHz, 0 if unknown.
+     */
+    protected int frequency;
+    /**
+     * Time when the access point was last seen, ms since boot (SystemClock.elapsedRealtime()), 0 if unknown.
+     */
+    protected long timestamp;
+    /**
+     * Parsed capabilities of the access point.
+     */
+    protected Capabilities securityDescriptor = Capabilities.parse(null);
     /**
      * Is it allowed or forbidden to connect to this network.
      */
@@ -46,10 +76,6 @@ public class WiFiItem implements Parcelable {
      */
     protected boolean wrong;
 
-    public void setScanResult(ScanResult scanResult) {
-        this.scanResult = scanResult;
-    }
-
     public boolean isAllowed() {
         return allowed;
     }
@@ -79,67 +105,110 @@ public class WiFiItem implements Parcelable {
     }
 
     public String getSSID() {
-        if (scanResult == null) {
-            return "";
-        }
-        return scanResult.SSID;
+        return ssid == null ? "" : ssid;
     }
 
     public String getBSSID() {
-        if (scanResult == null) {
-            return "";
-        }
-        return scanResult.BSSID;
+        return bssid == null ? "" : bssid;
+    }
+
+    public long getBssidKey() {
+        return bssidKey;
     }
 
     public String getCapabilities() {
-        if (scanResult == null) {
-            return "";
-        }
-        return scanResult.capabilities;
+        return capabilities == null ? "" : capabilities;
     }
 
     public boolean hasEncryption() {
-        if (scanResult == null) {
+        if (capabilities == null) {
             return false;
         }
-        return !Capabilities.parse(scanResult.capabilities).isOpen();
+        return !securityDescriptor.isOpen();
+    }
+
+    public Capabilities getSecurityDescriptor() {
+        return securityDescriptor;
     }
 
     public int getLevel() {
-        if (scanResult == null) {
-            return 0;
-        }
-        return scanResult.level;
+        return level;
+    }
+
+    public int getFrequency() {
+        return frequency;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
     }
 
     public WiFiItem() {}
 
     public WiFiItem clone() {
         WiFiItem item = new WiFiItem();
-        item.scanResult = scanResult;
+        copyTo(item);
+        return item;
+    }
+
+    /**
+     * @return copy of the item with another signal level, or this item if the level is the same.
+     */
+    public WiFiItem withLevel(int level) {
+        if (level == this.level)
+            return this;
+        WiFiItem item = clone();
+        item.level = level;
+        return item;
+    }
+
+    protected void copyTo(WiFiItem item) {
+        item.ssid = ssid;
+        item.bssid = bssid;
+        item.bssidKey = bssidKey;
+        item.capabilities = capabilities;
+        item.level = level;
+        item.frequency = frequency;
+        item.timestamp = timestamp;
+        item.securityDescriptor = securityDescriptor;
         item.allowed = allowed;
         item.userAction = userAction;
         item.wrong = wrong;
-        return item;
     }
 
-    public WiFiItem(ScanResult scanResult, boolean allowed, boolean forgettable, boolean wrong) {
-        this.scanResult = scanResult;
-        this.allowed = allowed;
-        this.userAction = forgettable;
-        this.wrong = wrong;
+    public WiFiItem(String ssid, String bssid, String capabilities, int level) {
+        this.ssid = ssid;
+        this.bssid = bssid;
+        this.bssidKey = Bssid.parse(bssid);
+        this.capabilities = capabilities;
+        this.level = level;
+        this.securityDescriptor = Capabilities.parse(capabilities);
     }
 
     public WiFiItem(ScanResult scanResult) {
-        this.scanResult = scanResult;
+        // ScanResult.timestamp is in microseconds since boot
+        this(scanResult.SSID, scanResult.BSSID, scanResult.capabilities, scanResult.level,
+                scanResult.frequency, scanResult.timestamp / 1000);
+    }
+
+    public WiFiItem(String ssid, String bssid, String capabilities, int level, int frequency, long timestamp) {
+        this(ssid, bssid, capabilities, level);
+        this.frequency = frequency;
+        this.timestamp = timestamp;
     }
 
     protected WiFiItem(Parcel in) {
-        scanResult = in.readParcelable(ScanResult.class.getClassLoader());
+        ssid = in.readString();
+        bssid = in.readString();
+        bssidKey = Bssid.parse(bssid);
+        capabilities = in.readString();
+        level = in.readInt();
+        securityDescriptor = Capabilities.parse(capabilities);
         allowed = in.readByte() != 0;
         userAction = in.readByte() != 0;
         wrong = in.readByte() != 0;
+        timestamp = in.readLong();
+        frequency = in.readInt();
     }
 
     public static final Creator<WiFiItem> CREATOR = new Creator<WiFiItem>() {
@@ -161,9 +230,14 @@ public class WiFiItem implements Parcelable {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
-        dest.writeParcelable(scanResult, flags);
+        dest.writeString(getSSID());
+        dest.writeString(getBSSID());
+        dest.writeString(capabilities);
+        dest.writeInt(level);
         dest.writeByte((byte) (allowed ? 1 : 0));
         dest.writeByte((byte) (userAction ? 1 : 0));
         dest.writeByte((byte) (wrong ? 1 : 0));
+        dest.writeLong(timestamp);
+        dest.writeInt(frequency);
     }
 }
@@ -0,0 +1,212 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.platform;
+
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.net.wifi.WifiNetworkSuggestion;
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.List;
+
+/**
+ * Platform calls through WifiManager, metered by IpcMeter.
+ */
+@SuppressWarnings({"MissingPermission", "deprecation"})
+public class AndroidWifiPlatform implements WifiPlatform {
+    private final WifiManager wifiManager;
+    private final IpcMeter meter = new IpcMeter();
+
+    public AndroidWifiPlatform(WifiManager wifiManager) {
+        this.wifiManager = wifiManager;
+    }
+
+    public IpcMeter getMeter() {
+        return meter;
+    }
+
+    @Override
+    public boolean isWifiEnabled() {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.isWifiEnabled();
+        } finally {
+            meter.record(IpcMeter.Call.IS_WIFI_ENABLED, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean setWifiEnabled(boolean enabled) {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.setWifiEnabled(enabled);
+        } finally {
+            meter.record(IpcMeter.Call.SET_WIFI_ENABLED, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean startScan() {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.startScan();
+        } finally {
+            meter.record(IpcMeter.Call.START_SCAN, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<ScanResult> getScanResults() {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.getScanResults();
+        } finally {
+            meter.record(IpcMeter.Call.GET_SCAN_RESULTS, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public List<WifiConfiguration> getConfiguredNetworks() {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.getConfiguredNetworks();
+        } finally {
+            meter.record(IpcMeter.Call.GET_CONFIGURED_NETWORKS, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public WifiInfo getConnectionInfo() {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.getConnectionInfo();
+        } finally {
+            meter.record(IpcMeter.Call.GET_CONNECTION_INFO, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int addNetwork(WifiConfiguration config) {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.addNetwork(config);
+        } finally {
+            meter.record(IpcMeter.Call.ADD_NETWORK, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public int updateNetwork(WifiConfiguration config) {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.updateNetwork(config);
+        } finally {
+            meter.record(IpcMeter.Call.UPDATE_NETWORK, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean removeNetwork(int networkId) {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.removeNetwork(networkId);
+        } finally {
+            meter.record(IpcMeter.Call.REMOVE_NETWORK, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean enableNetwork(int networkId, boolean disableOthers) {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.enableNetwork(networkId, disableOthers);
+        } finally {
+            meter.record(IpcMeter.Call.ENABLE_NETWORK, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean disableNetwork(int networkId) {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.disableNetwork(networkId);
+        } finally {
+            meter.record(IpcMeter.Call.DISABLE_NETWORK, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean disconnect() {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.disconnect();
+        } finally {
+            meter.record(IpcMeter.Call.DISCONNECT, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean reconnect() {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.reconnect();
+        } finally {
+            meter.record(IpcMeter.Call.RECONNECT, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean reassociate() {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.reassociate();
+        } finally {
+            meter.record(IpcMeter.Call.REASSOCIATE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    @RequiresApi(Build.VERSION_CODES.Q)
+    public int addNetworkSuggestions(List<WifiNetworkSuggestion> suggestions) {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.addNetworkSuggestions(suggestions);
+        } finally {
+            meter.record(IpcMeter.Call.ADD_NETWORK_SUGGESTIONS, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    @RequiresApi(Build.VERSION_CODES.Q)
+    public int removeNetworkSuggestions(List<WifiNetworkSuggestion> suggestions) {
+        long start = System.nanoTime();
+        try {
+            return wifiManager.removeNetworkSuggestions(suggestions);
+        } finally {
+            meter.record(IpcMeter.Call.REMOVE_NETWORK_SUGGESTIONS, System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.platform;
+
+import android.net.wifi.WifiConfiguration;
+
+import com.hmdm.wifimanager.util.LongObjectMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Saved networks indexed by SSID and networkId. The list is requested from the platform
+ * once and kept until it changes: call invalidate() on CONFIGURED_NETWORKS_CHANGED_ACTION,
+ * the changes made through this class invalidate it automatically. Not thread safe.
+ */
+public class ConfiguredNetworks {
+    /**
+     * Broadcast sent by the system when the saved networks change. The constant
+     * WifiManager.CONFIGURED_NETWORKS_CHANGED_ACTION is hidden from the apps.
+     */
+    public static final String CONFIGURED_NETWORKS_CHANGED_ACTION = "android.net.wifi.CONFIGURED_NETWORKS_CHANGE";
+
+    private final WifiPlatform platform;
+    /**
+     * Saved networks, null if not loaded.
+     */
+    private List<WifiConfiguration> list;
+    /**
+     * Keyed by quoted lower case SSID, the first network if there are several.
+     */
+    private final Map<String, WifiConfiguration> bySsid = new HashMap<>();
+    private final LongObjectMap<WifiConfiguration> byId = new LongObjectMap<>();
+    private int loads;
+    private int savedCalls;
+
+    public ConfiguredNetworks(WifiPlatform platform) {
+        this.platform = platform;
+    }
+
+    private static String key(String quotedSsid) {
+        return quotedSsid.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return saved networks, empty if not available.
+     */
+    public List<WifiConfiguration> getAll() {
+        if (list != null) {
+            savedCalls++;
+            return list;
+        }
+
+        List<WifiConfiguration> result = platform.getConfiguredNetworks();
+        loads++;
+        // Not available when WiFi is disabled, request again next time
+        if (result == null)
+            return Collections.emptyList();
+
+        list = Collections.unmodifiableList(result);
+        for (WifiConfiguration config : result) {
+            if (config.SSID != null && !bySsid.containsKey(key(config.SSID)))
+                bySsid.put(key(config.SSID), config);
+            if (!byId.containsKey(config.networkId))
+                byId.put(config.networkId, config);
+        }
+        return list;
+    }
+
+    /**
+     * @param ssid SSID without quotes, case insensitive.
+     * @return saved network, null if not found.
+     */
+    public WifiConfiguration getBySsid(String ssid) {
+        if (ssid == null)
+            return null;
+        getAll();
+        return bySsid.get(key("\"" + ssid + "\""));
+    }
+
+    /**
+     * @return saved network, null if not found.
+     */
+    public WifiConfiguration getById(int networkId) {
+        getAll();
+        return byId.get(networkId);
+    }
+
+    /**
+     * Saves the network.
+     * @return networkId of the added network, -1 on failure.
+     */
+    public int add(WifiConfiguration config) {
+        int result = platform.addNetwork(config);
+        invalidate();
+        return result;
+    }
+
+    public int update(WifiConfiguration config) {
+        int result = platform.updateNetwork(config);
+        invalidate();
+        return result;
+    }
+
+    /**
+     * Forgets the network.
+     */
+    public boolean remove(int networkId) {
+        boolean result = platform.removeNetwork(networkId);
+        invalidate();
+        return result;
+    }
+
+    public void invalidate() {
+        list = null;
+        bySsid.clear();
+        byId.clear();
+    }
+
+    /**
+     * @return number of the platform calls to get the list.
+     */
+    public int getLoads() {
+        return loads;
+    }
+
+    /**
+     * @return number of the platform calls avoided by using the cached list.
+     */
+    public int getSavedCalls() {
+        return savedCalls;
+    }
+
+    @Override
+    public String toString() {
+        return "configured: " + (list != null ? list.size() : "not loaded") + "; loads: " + loads + "; saved calls: " + savedCalls;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.platform;
+
+import java.util.Locale;
+
+/**
+ * Number and duration of the platform calls, by method. Recording doesn't allocate.
+ */
+public class IpcMeter {
+    public enum Call {
+        IS_WIFI_ENABLED("isWifiEnabled"),
+        SET_WIFI_ENABLED("setWifiEnabled"),
+        START_SCAN("startScan"),
+        GET_SCAN_RESULTS("getScanResults"),
+        GET_CONFIGURED_NETWORKS("getConfiguredNetworks"),
+        GET_CONNECTION_INFO("getConnectionInfo"),
+        ADD_NETWORK("addNetwork"),
+        UPDATE_NETWORK("updateNetwork"),
+        REMOVE_NETWORK("removeNetwork"),
+        ENABLE_NETWORK("enableNetwork"),
+        DISABLE_NETWORK("disableNetwork"),
+        DISCONNECT("disconnect"),
+        RECONNECT("reconnect"),
+        REASSOCIATE("reassociate"),
+        ADD_NETWORK_SUGGESTIONS("addNetworkSuggestions"),
+        REMOVE_NETWORK_SUGGESTIONS("removeNetworkSuggestions");
+
+        private final String method;
+
+        Call(String method) {
+            this.method = method;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+    }
+
+    private static final Call[] CALLS = Call.values();
+
+    private final long[] counts = new long[CALLS.length];
+    private final long[] totalNanos = new long[CALLS.length];
+    private final long[] maxNanos = new long[CALLS.length];
+
+    public synchronized void record(Call call, long nanos) {
+        int i = call.ordinal();
+        counts[i]++;
+        totalNanos[i] += nanos;
+        if (nanos > maxNanos[i])
+            maxNanos[i] = nanos;
+    }
+
+    public synchronized long getCount(Call call) {
+        return counts[call.ordinal()];
+    }
+
+    public synchronized long getTotalNanos(Call call) {
+        return totalNanos[call.ordinal()];
+    }
+
+    public synchronized long getMaxNanos(Call call) {
+        return maxNanos[call.ordinal()];
+    }
+
+    /**
+     * @return number of calls of all methods.
+     */
+    public synchronized long getCount() {
+        long result = 0;
+        for (long count : counts)
+            result += count;
+        return result;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < CALLS.length; i++) {
+            counts[i] = 0;
+            totalNanos[i] = 0;
+            maxNanos[i] = 0;
+        }
+    }
+
+    /**
+     * @return statistics of the called methods, for the logs.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder result = new StringBuilder("calls: ").append(getCount());
+        for (Call call : CALLS) {
+            int i = call.ordinal();
+            if (counts[i] == 0)
+                continue;
+            result.append(String.format(Locale.US, "; %s: %d, avg %.2f ms, max %.2f ms", call.getMethod(), counts[i],
+                    totalNanos[i] / 1e6 / counts[i], maxNanos[i] / 1e6));
+        }
+        return result.toString();
+    }
+}
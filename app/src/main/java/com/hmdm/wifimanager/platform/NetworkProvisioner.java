@@ -0,0 +1,296 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.platform;
+
+import android.net.wifi.WifiConfiguration;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.policy.FailureLedger;
+import com.hmdm.wifimanager.policy.WiFiPolicy;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Saves the allowed networks from the configuration in advance, so connecting to them
+ * requires only enabling the network. The desired networks are compared with the saved ones,
+ * and only the differences are applied: new networks are added, networks with changed
+ * credentials (see WiFiPolicy.getFingerprint) are updated, networks removed from the configuration
+ * are forgotten. Networks saved earlier by the user are adopted: they are updated when the credentials
+ * change, but never removed.
+ * The records of the saved networks are kept as JSON, so repeated runs make no changes. Not thread safe.
+ */
+public class NetworkProvisioner {
+    /**
+     * Fills the security settings of the network.
+     */
+    public interface Configurator {
+        /**
+         * @param config new network, or a saved one with the outdated settings.
+         * @return false if the security type of the network is unknown, so it can't be saved yet.
+         */
+        boolean configure(WifiConfiguration config, AllowedItem item);
+    }
+
+    /**
+     * Network saved by the provisioner.
+     */
+    static class Record {
+        String ssid;
+        String fingerprint;
+        int networkId;
+        /**
+         * The network was saved before provisioning.
+         */
+        boolean adopted;
+
+        Record(String ssid, String fingerprint, int networkId, boolean adopted) {
+            this.ssid = ssid;
+            this.fingerprint = fingerprint;
+            this.networkId = networkId;
+            this.adopted = adopted;
+        }
+    }
+
+    /**
+     * Outcome of a provisioning run.
+     */
+    public static class Result {
+        private int added;
+        private int updated;
+        private int removed;
+        private int unchanged;
+        private int skipped;
+        private int wrong;
+        private int failed;
+        private long duration;
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        /**
+         * @return number of the networks with unknown security type.
+         */
+        public int getSkipped() {
+            return skipped;
+        }
+
+        /**
+         * @return number of the networks forgotten after the authentication failure, not saved again.
+         */
+        public int getWrong() {
+            return wrong;
+        }
+
+        /**
+         * @return number of the changes refused by the platform.
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * @return duration of the run, ms.
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * @return true if the saved networks have changed.
+         */
+        public boolean hasChanges() {
+            return added + updated + removed > 0;
+        }
+
+        @Override
+        public String toString() {
+            return "added: " + added + "; updated: " + updated + "; removed: " + removed + "; unchanged: " + unchanged
+                    + "; skipped: " + skipped + "; wrong: " + wrong + "; failed: " + failed + "; " + duration + " ms";
+        }
+    }
+
+    private final ConfiguredNetworks networks;
+    private final Configurator configurator;
+    /**
+     * Saved networks by lower case SSID.
+     */
+    private final LinkedHashMap<String, Record> records = new LinkedHashMap<>();
+
+    public NetworkProvisioner(ConfiguredNetworks networks, Configurator configurator) {
+        this.networks = networks;
+        this.configurator = configurator;
+    }
+
+    /**
+     * Restores the records saved by toJson().
+     */
+    public void loadJson(String json) {
+        records.clear();
+        if (json == null || json.isEmpty())
+            return;
+
+        try {
+            Map<String, Record> saved = new Gson().fromJson(json, new TypeToken<LinkedHashMap<String, Record>>(){}.getType());
+            if (saved != null) {
+                for (Map.Entry<String, Record> entry : saved.entrySet()) {
+                    Record value = entry.getValue();
+                    if (value != null && value.ssid != null && value.fingerprint != null)
+                        records.put(entry.getKey(), value);
+                }
+            }
+        } catch (Exception e) {
+            // Start from scratch: the saved networks are compared by SSID anyway
+        }
+    }
+
+    public String toJson() {
+        return new Gson().toJson(records);
+    }
+
+    private static String key(String ssid) {
+        return ssid.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Brings the saved networks in line with the allowed networks of the policy.
+     * Patterns and ranges can't be saved, networks with the wrong password are left as is.
+     */
+    public Result provision(WiFiPolicy policy) {
+        return provision(policy, null);
+    }
+
+    /**
+     * Brings the saved networks in line with the allowed networks of the policy.
+     * A network forgotten after the authentication failure (see FailureLedger) is not saved again
+     * until its credentials change.
+     * @param ledger connection failures, may be null.
+     */
+    public Result provision(WiFiPolicy policy, FailureLedger ledger) {
+        Result result = new Result();
+        long start = System.nanoTime();
+
+        // Single request for the saved networks, the changes below don't need the fresh list
+        Map<String, WifiConfiguration> saved = new HashMap<>();
+        for (WifiConfiguration config : networks.getAll()) {
+            if (config.SSID != null && !saved.containsKey(key(config.SSID)))
+                saved.put(key(config.SSID), config);
+        }
+
+        Set<String> desired = new HashSet<>();
+        List<AllowedItem> allowed = policy.getAllowedList();
+        for (int priority = 0; priority < allowed.size(); priority++) {
+            AllowedItem item = allowed.get(priority);
+            if (item.ssid == null || item.ssid.isEmpty())
+                continue;
+            String key = key(item.ssid);
+            // The first rule of the network wins
+            if (!desired.add(key) || policy.isWrong(priority))
+                continue;
+
+            String fingerprint = policy.getFingerprint(priority);
+            Record record = records.get(key);
+            WifiConfiguration config = saved.get(key("\"" + item.ssid + "\""));
+            if (config != null && (record == null || record.fingerprint.equals(fingerprint))) {
+                // Unchanged, or saved by the user: keep the settings
+                records.put(key, new Record(item.ssid, fingerprint, config.networkId, record == null || record.adopted));
+                result.unchanged++;
+                continue;
+            }
+
+            // Not the user or the system: we've forgotten the network, the password is wrong
+            if (config == null && record != null && record.fingerprint.equals(fingerprint)
+                    && ledger != null && ledger.hasAuthenticationFailure(fingerprint, item.ssid)) {
+                result.wrong++;
+                continue;
+            }
+
+            boolean update = config != null;
+            if (!update) {
+                config = new WifiConfiguration();
+                config.SSID = "\"" + item.ssid + "\"";
+            }
+            if (!configurator.configure(config, item)) {
+                result.skipped++;
+                continue;
+            }
+            int id = update ? networks.update(config) : networks.add(config);
+            if (id == -1) {
+                result.failed++;
+                continue;
+            }
+            records.put(key, new Record(item.ssid, fingerprint, id, update && record.adopted));
+            if (update)
+                result.updated++;
+            else
+                result.added++;
+        }
+
+        Iterator<Map.Entry<String, Record>> iterator = records.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Record> entry = iterator.next();
+            if (desired.contains(entry.getKey()))
+                continue;
+            Record record = entry.getValue();
+            WifiConfiguration config = saved.get(key("\"" + record.ssid + "\""));
+            // Removed from the configuration; the network may be already forgotten
+            if (!record.adopted && config != null && config.networkId == record.networkId) {
+                if (networks.remove(record.networkId))
+                    result.removed++;
+                else
+                    result.failed++;
+            }
+            iterator.remove();
+        }
+
+        result.duration = (System.nanoTime() - start) / 1000000;
+        return result;
+    }
+
+    /**
+     * @return number of the networks saved by the provisioner.
+     */
+    public int size() {
+        return records.size();
+    }
+}
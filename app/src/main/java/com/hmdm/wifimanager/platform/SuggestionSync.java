@@ -0,0 +1,293 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.platform;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.hmdm.wifimanager.model.AllowedItem;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps the network suggestions of the app in line with the allowed networks. The fingerprint
+ * of each submitted suggestion is saved, so only new or changed suggestions are added,
+ * and only outdated ones are removed. The records contain no passwords: the fingerprint is
+ * a SHA-256 hash salted with a random per-install value, which is never saved with the records.
+ * Not thread safe.
+ */
+public class SuggestionSync {
+    /**
+     * Submitted (or planned) suggestion. A suggestion is identified by SSID and BSSID.
+     */
+    public static class Suggestion {
+        private String ssid;
+        private String bssid;
+        private boolean hidden;
+        private boolean secured;
+        private String fingerprint;
+        /**
+         * Not saved: known only for the suggestions planned for addition.
+         */
+        private transient String password;
+
+        public String getSsid() {
+            return ssid;
+        }
+
+        public String getBssid() {
+            return bssid;
+        }
+
+        public boolean isHidden() {
+            return hidden;
+        }
+
+        /**
+         * @return true if the suggestion has a WPA2 passphrase.
+         */
+        public boolean isSecured() {
+            return secured;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * @return WPA2 passphrase, null for the submitted suggestions restored from the records.
+         */
+        public String getPassword() {
+            return password;
+        }
+
+        @Override
+        public String toString() {
+            return (ssid != null ? ssid : "") + (bssid != null ? " (" + bssid + ")" : "");
+        }
+    }
+
+    /**
+     * Changes required to bring the suggestions in line with the configuration.
+     */
+    public static class Plan {
+        private final List<Suggestion> added = new ArrayList<>();
+        private final List<Suggestion> removed = new ArrayList<>();
+        private int unchanged;
+
+        /**
+         * @return new or changed suggestions to be added.
+         */
+        public List<Suggestion> getAdded() {
+            return added;
+        }
+
+        /**
+         * @return outdated suggestions to be removed (previous versions of the changed ones included).
+         */
+        public List<Suggestion> getRemoved() {
+            return removed;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && removed.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "added: " + added.size() + "; removed: " + removed.size() + "; unchanged: " + unchanged;
+        }
+    }
+
+    /**
+     * Submitted suggestions by key.
+     */
+    private final LinkedHashMap<String, Suggestion> records = new LinkedHashMap<>();
+    private final String salt;
+
+    /**
+     * @param salt per-install salt of the fingerprints, see newSalt().
+     */
+    public SuggestionSync(String salt) {
+        this.salt = salt;
+    }
+
+    /**
+     * @return new random salt (hex string) to be saved once per install.
+     */
+    public static String newSalt() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        return toHex(bytes);
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Restores the records saved by toJson().
+     */
+    public void loadJson(String json) {
+        records.clear();
+        if (json == null || json.isEmpty())
+            return;
+
+        try {
+            Map<String, Suggestion> saved = new Gson().fromJson(json, new TypeToken<LinkedHashMap<String, Suggestion>>(){}.getType());
+            if (saved != null) {
+                for (Map.Entry<String, Suggestion> entry : saved.entrySet()) {
+                    Suggestion value = entry.getValue();
+                    if (value != null && value.fingerprint != null && (value.ssid != null || value.bssid != null))
+                        records.put(entry.getKey(), value);
+                }
+            }
+        } catch (Exception e) {
+            // Start from scratch: the suggestions will be submitted again
+        }
+    }
+
+    public String toJson() {
+        return new Gson().toJson(records);
+    }
+
+    private static String key(String ssid, String bssid) {
+        return (ssid != null ? ssid : "") + "|" + (bssid != null ? bssid.toLowerCase(Locale.ROOT) : "");
+    }
+
+    /**
+     * Salted SHA-256 hash of the fields defining the suggestion.
+     */
+    String fingerprint(AllowedItem item) {
+        String bssid = item.bssid != null ? item.bssid.toLowerCase(Locale.ROOT) : null;
+        String[] fields = {salt, item.ssid, bssid, item.password, item.hidden ? "hidden" : null};
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Required on every Java and Android platform
+            throw new IllegalStateException(e);
+        }
+        Charset utf8 = Charset.forName("UTF-8");
+        for (String field : fields) {
+            // Length prefix separates the fields and tells null from empty
+            int length = field != null ? field.length() : -1;
+            digest.update(new byte[] {(byte) (length >> 24), (byte) (length >> 16), (byte) (length >> 8), (byte) length});
+            if (field != null)
+                digest.update(field.getBytes(utf8));
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Compares the allowed networks with the submitted suggestions.
+     * Patterns and ranges can't be suggested; the first rule of a network wins.
+     * @param allowed allowed networks from the configuration, may be null.
+     */
+    public Plan plan(List<AllowedItem> allowed) {
+        Plan plan = new Plan();
+        Map<String, Suggestion> desired = new LinkedHashMap<>();
+        if (allowed != null) {
+            for (AllowedItem item : allowed) {
+                if (item.ssid == null && item.bssid == null)
+                    continue;
+                String key = key(item.ssid, item.bssid);
+                if (desired.containsKey(key))
+                    continue;
+                Suggestion suggestion = new Suggestion();
+                suggestion.ssid = item.ssid;
+                suggestion.bssid = item.bssid;
+                suggestion.hidden = item.hidden;
+                suggestion.secured = item.password != null;
+                suggestion.fingerprint = fingerprint(item);
+                suggestion.password = item.password;
+                desired.put(key, suggestion);
+            }
+        }
+
+        for (Map.Entry<String, Suggestion> entry : desired.entrySet()) {
+            Suggestion submitted = records.get(entry.getKey());
+            if (submitted != null && submitted.fingerprint.equals(entry.getValue().fingerprint)) {
+                plan.unchanged++;
+                continue;
+            }
+            // The changed suggestion replaces the previous one
+            if (submitted != null)
+                plan.removed.add(submitted);
+            plan.added.add(entry.getValue());
+        }
+        for (Map.Entry<String, Suggestion> entry : records.entrySet()) {
+            if (!desired.containsKey(entry.getKey()))
+                plan.removed.add(entry.getValue());
+        }
+        return plan;
+    }
+
+    /**
+     * Records the removal of the planned suggestions.
+     */
+    public void onRemoved(Plan plan) {
+        for (Suggestion suggestion : plan.removed) {
+            String key = key(suggestion.ssid, suggestion.bssid);
+            if (records.get(key) == suggestion)
+                records.remove(key);
+        }
+    }
+
+    /**
+     * Records the addition of the planned suggestions.
+     */
+    public void onAdded(Plan plan) {
+        for (Suggestion suggestion : plan.added)
+            onAdded(suggestion);
+    }
+
+    /**
+     * Records the addition of a single planned suggestion.
+     */
+    public void onAdded(Suggestion suggestion) {
+        records.put(key(suggestion.ssid, suggestion.bssid), suggestion);
+    }
+
+    /**
+     * @return number of the submitted suggestions.
+     */
+    public int size() {
+        return records.size();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.platform;
+
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiNetworkSuggestion;
+
+import java.util.List;
+
+/**
+ * WiFi functions of the platform used by the app (see WifiManager).
+ * Most of them are binder calls to the system server, so they are much slower than they look.
+ */
+public interface WifiPlatform {
+    boolean isWifiEnabled();
+
+    boolean setWifiEnabled(boolean enabled);
+
+    boolean startScan();
+
+    /**
+     * @return latest scanning results, may be null.
+     */
+    List<ScanResult> getScanResults();
+
+    /**
+     * @return saved networks, null if WiFi is disabled or the list is not available.
+     */
+    List<WifiConfiguration> getConfiguredNetworks();
+
+    WifiInfo getConnectionInfo();
+
+    /**
+     * @return networkId of the added network, -1 on failure.
+     */
+    int addNetwork(WifiConfiguration config);
+
+    int updateNetwork(WifiConfiguration config);
+
+    boolean removeNetwork(int networkId);
+
+    boolean enableNetwork(int networkId, boolean disableOthers);
+
+    boolean disableNetwork(int networkId);
+
+    boolean disconnect();
+
+    boolean reconnect();
+
+    boolean reassociate();
+
+    /**
+     * @return one of WifiManager.STATUS_NETWORK_SUGGESTIONS_* codes.
+     */
+    int addNetworkSuggestions(List<WifiNetworkSuggestion> suggestions);
+
+    int removeNetworkSuggestions(List<WifiNetworkSuggestion> suggestions);
+}
@@ -0,0 +1,227 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.policy;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.model.Bssid;
+import com.hmdm.wifimanager.model.BssidRange;
+import com.hmdm.wifimanager.util.LongObjectMap;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Hash index of the allowed networks by case-folded SSID and BSSID key (see Bssid).
+ * SSID patterns and BSSID ranges are matched by a trie and a masked prefix table.
+ * Lookups return the same item as a linear scan of the list would:
+ * the first one in the configuration order.
+ */
+public class AllowListIndex {
+    private final List<AllowedItem> items;
+    /**
+     * Positions of the first item with the given key.
+     */
+    private final Map<String, Integer> bySsid = new HashMap<>();
+    private final LongObjectMap<Integer> byBssid = new LongObjectMap<>();
+    /**
+     * Positions of the first item with the given key having a password.
+     */
+    private final Map<String, Integer> passwordBySsid = new HashMap<>();
+    private final LongObjectMap<Integer> passwordByBssid = new LongObjectMap<>();
+    private final SsidPatternTrie ssidPatterns = new SsidPatternTrie();
+    private final BssidRangeTable bssidRanges = new BssidRangeTable();
+
+    public AllowListIndex(List<AllowedItem> items) {
+        this.items = items;
+
+        for (int i = 0; i < items.size(); i++) {
+            AllowedItem item = items.get(i);
+            boolean hasPassword = item.password != null && !item.password.isEmpty();
+
+            String ssid = ssidKey(item.ssid);
+            if (ssid != null) {
+                putFirst(bySsid, ssid, i);
+                if (hasPassword)
+                    putFirst(passwordBySsid, ssid, i);
+            }
+
+            long bssid = Bssid.parse(item.bssid);
+            if (bssid != Bssid.NONE) {
+                putFirst(byBssid, bssid, i);
+                if (hasPassword)
+                    putFirst(passwordByBssid, bssid, i);
+            }
+
+            if (item.ssidPattern != null && !item.ssidPattern.isEmpty())
+                ssidPatterns.add(item.ssidPattern, i, hasPassword);
+
+            BssidRange range = BssidRange.parse(item.bssidRange);
+            if (range != null)
+                bssidRanges.add(range, i, hasPassword);
+        }
+    }
+
+    private static void putFirst(Map<String, Integer> map, String key, int position) {
+        if (!map.containsKey(key))
+            map.put(key, position);
+    }
+
+    private static void putFirst(LongObjectMap<Integer> map, long key, int position) {
+        if (!map.containsKey(key))
+            map.put(key, position);
+    }
+
+    /**
+     * @return case-folded SSID, or null if empty.
+     */
+    public static String ssidKey(String ssid) {
+        if (ssid == null || ssid.isEmpty())
+            return null;
+        return ssid.toLowerCase(Locale.ROOT);
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * @return true if there's an allowed network with this SSID or BSSID.
+     */
+    public boolean contains(String ssid, String bssid) {
+        return contains(ssid, Bssid.parse(bssid));
+    }
+
+    public boolean contains(String ssid, long bssid) {
+        return indexOf(ssid, bssid) >= 0;
+    }
+
+    /**
+     * Returns the position of the first allowed network having this SSID or BSSID.
+     * @return position in the configuration list, or -1 if not found.
+     */
+    public int indexOf(String ssid, String bssid) {
+        return indexOf(ssid, Bssid.parse(bssid));
+    }
+
+    public int indexOf(String ssid, long bssid) {
+        int position = first(position(bySsid, ssidKey(ssid)), position(byBssid, bssid));
+        return hasPatterns() ? first(position, patternIndexOf(ssid, bssid)) : position;
+    }
+
+    /**
+     * @return true if there are SSID patterns or BSSID ranges.
+     */
+    public boolean hasPatterns() {
+        return !ssidPatterns.isEmpty() || !bssidRanges.isEmpty();
+    }
+
+    /**
+     * Returns the position of the first SSID pattern or BSSID range matching the network.
+     * @return position in the configuration list, or -1 if not found.
+     */
+    public int patternIndexOf(String ssid, long bssid) {
+        return first(ssidPatterns.indexOf(ssid), bssidRanges.indexOf(bssid));
+    }
+
+    /**
+     * @return positions of all the SSID patterns and BSSID ranges matching the network.
+     */
+    public BitSet patternMatches(String ssid, long bssid) {
+        BitSet result = new BitSet(items.size());
+        ssidPatterns.collect(ssid, result);
+        bssidRanges.collect(bssid, result);
+        return result;
+    }
+
+    /**
+     * Returns the position of the first SSID pattern or BSSID range having a password and matching the network.
+     * @return position in the configuration list, or -1 if not found.
+     */
+    public int patternPasswordIndexOf(String ssid, long bssid) {
+        return first(ssidPatterns.passwordIndexOf(ssid), bssidRanges.passwordIndexOf(bssid));
+    }
+
+    /**
+     * @return the first allowed network having this SSID or BSSID, or null if not found.
+     */
+    public AllowedItem find(String ssid, String bssid) {
+        int position = indexOf(ssid, bssid);
+        return position >= 0 ? items.get(position) : null;
+    }
+
+    /**
+     * @return allowed network by its position in the configuration list.
+     */
+    public AllowedItem get(int position) {
+        return items.get(position);
+    }
+
+    /**
+     * @return password of the first allowed network having this SSID or BSSID and a password, or null.
+     */
+    public String getPassword(String ssid, String bssid) {
+        int position = passwordIndexOf(ssid, bssid);
+        return position >= 0 ? items.get(position).password : null;
+    }
+
+    /**
+     * Returns the position of the first allowed network having this SSID or BSSID and a password.
+     * @return position in the configuration list, or -1 if not found.
+     */
+    public int passwordIndexOf(String ssid, String bssid) {
+        return passwordIndexOf(ssid, Bssid.parse(bssid));
+    }
+
+    public int passwordIndexOf(String ssid, long bssid) {
+        int position = first(position(passwordBySsid, ssidKey(ssid)), position(passwordByBssid, bssid));
+        return hasPatterns() ? first(position, patternPasswordIndexOf(ssid, bssid)) : position;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    private static int position(Map<String, Integer> map, String key) {
+        if (key == null)
+            return -1;
+        Integer position = map.get(key);
+        return position == null ? -1 : position;
+    }
+
+    private static int position(LongObjectMap<Integer> map, long key) {
+        if (key == Bssid.NONE)
+            return -1;
+        Integer position = map.get(key);
+        return position == null ? -1 : position;
+    }
+
+    static int first(int position1, int position2) {
+        if (position1 < 0)
+            return position2;
+        if (position2 < 0)
+            return position1;
+        return Math.min(position1, position2);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.policy;
+
+import com.hmdm.wifimanager.model.Bssid;
+import com.hmdm.wifimanager.model.BssidRange;
+import com.hmdm.wifimanager.util.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Table of BSSID ranges grouped by the prefix length.
+ * A lookup costs one hash probe per distinct prefix length (at most 48), whatever the number of ranges.
+ * Immutable after building, so it can be shared between threads.
+ */
+public class BssidRangeTable {
+    /**
+     * Positions by masked BSSID, one map per prefix length (index = bits - 1), null if there are no ranges.
+     * The minimal position is kept at [0], the minimal password position at [1], then all the positions follow.
+     */
+    private final List<LongObjectMap<int[]>> byBits = new ArrayList<>(Collections.nCopies(48, (LongObjectMap<int[]>) null));
+    private int size;
+
+    /**
+     * Adds a range.
+     * @param position position of the rule in the configuration.
+     * @param hasPassword true if the rule has a password.
+     */
+    public void add(BssidRange range, int position, boolean hasPassword) {
+        int index = range.getBits() - 1;
+        LongObjectMap<int[]> map = byBits.get(index);
+        if (map == null) {
+            map = new LongObjectMap<>();
+            byBits.set(index, map);
+        }
+
+        int[] positions = map.get(range.getValue());
+        positions = positions == null ? new int[] {-1, -1, position} : Arrays.copyOf(positions, positions.length + 1);
+        positions[positions.length - 1] = position;
+        map.put(range.getValue(), positions);
+        positions[0] = AllowListIndex.first(positions[0], position);
+        if (hasPassword)
+            positions[1] = AllowListIndex.first(positions[1], position);
+        size++;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return minimal position of the ranges containing the BSSID, or -1.
+     */
+    public int indexOf(long bssid) {
+        return match(bssid, 0);
+    }
+
+    /**
+     * @return minimal position of the ranges having a password and containing the BSSID, or -1.
+     */
+    public int passwordIndexOf(long bssid) {
+        return match(bssid, 1);
+    }
+
+    /**
+     * Sets the positions of all the ranges containing the BSSID.
+     */
+    public void collect(long bssid, BitSet result) {
+        if (size == 0 || bssid == Bssid.NONE)
+            return;
+
+        for (int i = 0; i < byBits.size(); i++) {
+            LongObjectMap<int[]> map = byBits.get(i);
+            int[] positions = map != null ? map.get(bssid & BssidRange.mask(i + 1)) : null;
+            if (positions != null) {
+                for (int j = 2; j < positions.length; j++)
+                    result.set(positions[j]);
+            }
+        }
+    }
+
+    private int match(long bssid, int field) {
+        if (size == 0 || bssid == Bssid.NONE)
+            return -1;
+
+        int result = -1;
+        for (int i = 0; i < byBits.size(); i++) {
+            LongObjectMap<int[]> map = byBits.get(i);
+            if (map != null) {
+                int[] positions = map.get(bssid & BssidRange.mask(i + 1));
+                if (positions != null)
+                    result = AllowListIndex.first(result, positions[field]);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.policy;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.hmdm.wifimanager.model.Bssid;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Ledger of the connection failures with exponential backoff.
+ * Entries are keyed by the fingerprint of the allowed network rule (see WiFiPolicy.getFingerprint),
+ * so changing the credentials on the server clears the backoff.
+ * Authentication failures block the whole SSID (all access points share the credentials),
+ * association failures block the access point only.
+ * The ledger is saved as JSON, so it survives the configuration reloads and the app restarts.
+ */
+public class FailureLedger {
+    public enum Failure {
+        AUTHENTICATION,
+        ASSOCIATION
+    }
+
+    private static final long AUTHENTICATION_BACKOFF = 5 * 60 * 1000L;
+    private static final long AUTHENTICATION_MAX_BACKOFF = 24 * 60 * 60 * 1000L;
+    private static final long ASSOCIATION_BACKOFF = 30 * 1000L;
+    private static final long ASSOCIATION_MAX_BACKOFF = 60 * 60 * 1000L;
+    /**
+     * Entries with no failures during this period are dropped.
+     */
+    private static final long EXPIRATION = 7 * 24 * 60 * 60 * 1000L;
+    private static final int MAX_ENTRIES = 256;
+
+    static class Entry {
+        Failure failure;
+        int failures;
+        long lastFailure;
+        long retryAt;
+    }
+
+    /**
+     * Entries in the order of the last failure.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public FailureLedger() {}
+
+    /**
+     * Restores the ledger saved by toJson(); expired entries are dropped.
+     * @return restored ledger, or an empty one if the JSON is missing or malformed.
+     */
+    public static FailureLedger fromJson(String json, long now) {
+        FailureLedger ledger = new FailureLedger();
+        if (json == null || json.isEmpty())
+            return ledger;
+
+        try {
+            Map<String, Entry> saved = new Gson().fromJson(json, new TypeToken<LinkedHashMap<String, Entry>>(){}.getType());
+            if (saved != null) {
+                for (Map.Entry<String, Entry> entry : saved.entrySet()) {
+                    Entry value = entry.getValue();
+                    if (value != null && value.failure != null && now - value.lastFailure < EXPIRATION)
+                        ledger.entries.put(entry.getKey(), value);
+                }
+            }
+        } catch (Exception e) {
+            // Start from scratch: the ledger is an optimization only
+        }
+        return ledger;
+    }
+
+    public synchronized String toJson() {
+        return new Gson().toJson(entries);
+    }
+
+    private static String key(String fingerprint, String ssid, long bssid) {
+        return (fingerprint != null ? fingerprint : "") + "|"
+                + (ssid != null ? ssid.toLowerCase(Locale.ROOT) : "") + "|"
+                + (bssid != Bssid.NONE ? Bssid.format(bssid) : "");
+    }
+
+    /**
+     * Records the connection failure.
+     * @return time when the next attempt is allowed.
+     */
+    public synchronized long recordFailure(String fingerprint, String ssid, String bssid, Failure failure, long now) {
+        String key = key(fingerprint, ssid, failure == Failure.AUTHENTICATION ? Bssid.NONE : Bssid.parse(bssid));
+        Entry entry = entries.remove(key);
+        if (entry == null) {
+            entry = new Entry();
+            entry.failure = failure;
+        }
+        entry.failures++;
+        entry.lastFailure = now;
+        entry.retryAt = now + backoff(failure, entry.failures);
+        entries.put(key, entry);
+
+        if (entries.size() > MAX_ENTRIES) {
+            Iterator<String> oldest = entries.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+        return entry.retryAt;
+    }
+
+    /**
+     * Clears the failures of the network after the successful connection.
+     */
+    public synchronized void recordSuccess(String fingerprint, String ssid) {
+        String prefix = key(fingerprint, ssid, Bssid.NONE);
+        Iterator<String> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().startsWith(prefix))
+                keys.remove();
+        }
+    }
+
+    /**
+     * @return true if the network is known to fail and the next attempt is not allowed yet.
+     */
+    public synchronized boolean isBlocked(String fingerprint, String ssid, String bssid, long now) {
+        return getRetryAt(fingerprint, ssid, bssid) > now;
+    }
+
+    /**
+     * @return time when the next attempt is allowed, 0 if there are no failures.
+     */
+    public synchronized long getRetryAt(String fingerprint, String ssid, String bssid) {
+        long result = 0;
+        Entry bySsid = entries.get(key(fingerprint, ssid, Bssid.NONE));
+        if (bySsid != null)
+            result = bySsid.retryAt;
+
+        long bssidKey = Bssid.parse(bssid);
+        if (bssidKey != Bssid.NONE) {
+            Entry byBssid = entries.get(key(fingerprint, ssid, bssidKey));
+            if (byBssid != null)
+                result = Math.max(result, byBssid.retryAt);
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the network with these credentials has failed the authentication.
+     */
+    public synchronized boolean hasAuthenticationFailure(String fingerprint, String ssid) {
+        Entry entry = entries.get(key(fingerprint, ssid, Bssid.NONE));
+        return entry != null && entry.failure == Failure.AUTHENTICATION;
+    }
+
+    /**
+     * Marks the passwords which failed the authentication as wrong in the compiled policy
+     * (see WiFiPolicy.withWrongCredentials), so the state survives the configuration reloads.
+     * The rules with changed credentials are not marked.
+     * @return policy with the wrong passwords, or the same policy if there are none.
+     */
+    public synchronized WiFiPolicy applyWrongPasswords(WiFiPolicy policy) {
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().failure != Failure.AUTHENTICATION)
+                continue;
+            // Key of the authentication failure: fingerprint|ssid|
+            String key = entry.getKey();
+            int separator = key.indexOf('|');
+            if (separator <= 0 || !key.endsWith("|") || key.length() < separator + 2)
+                continue;
+            policy = policy.withWrongCredentials(key.substring(0, separator), key.substring(separator + 1, key.length() - 1));
+        }
+        return policy;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    static long backoff(Failure failure, int failures) {
+        long base = failure == Failure.AUTHENTICATION ? AUTHENTICATION_BACKOFF : ASSOCIATION_BACKOFF;
+        long max = failure == Failure.AUTHENTICATION ? AUTHENTICATION_MAX_BACKOFF : ASSOCIATION_MAX_BACKOFF;
+        int shift = Math.min(failures - 1, 20);
+        return Math.min(base << shift, max);
+    }
+}
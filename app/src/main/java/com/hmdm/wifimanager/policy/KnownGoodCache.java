@@ -0,0 +1,214 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.policy;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Last access point of each allowed network (SSID, case insensitive) where the connection succeeded.
+ * After WiFi is turned on or the connection is lost, the app connects to it right away
+ * instead of waiting for the scan. Entries keep the fingerprint of the allowed network rule
+ * (see WiFiPolicy.getFingerprint), so they are ignored when the credentials change on the server.
+ * The cache is saved as JSON, so it survives the app restarts.
+ */
+public class KnownGoodCache {
+    /**
+     * Entries not used during this period are dropped.
+     */
+    private static final long EXPIRATION = 30 * 24 * 60 * 60 * 1000L;
+    private static final int MAX_ENTRIES = 64;
+    /**
+     * Min interval between the saves caused only by the time of the last success.
+     */
+    private static final long SAVE_INTERVAL = 60 * 60 * 1000L;
+
+    public static class Entry {
+        private String fingerprint;
+        private String ssid;
+        private String bssid;
+        private int frequency;
+        private String capabilities;
+        private long lastSuccess;
+        /**
+         * Time of the last success as it was reported for saving; not saved itself.
+         */
+        private transient long savedSuccess;
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public String getSsid() {
+            return ssid;
+        }
+
+        public String getBssid() {
+            return bssid;
+        }
+
+        /**
+         * @return channel frequency, MHz; 0 if unknown.
+         */
+        public int getFrequency() {
+            return frequency;
+        }
+
+        /**
+         * @return capabilities of the access point (security profile), null if unknown.
+         */
+        public String getCapabilities() {
+            return capabilities;
+        }
+
+        /**
+         * @return time of the last successful connection, ms.
+         */
+        public long getLastSuccess() {
+            return lastSuccess;
+        }
+
+        @Override
+        public String toString() {
+            return ssid + " (" + bssid + ", " + frequency + " MHz, " + capabilities + ")";
+        }
+    }
+
+    private static final Comparator<Entry> RECENT_FIRST = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry o1, Entry o2) {
+            return Long.compare(o2.lastSuccess, o1.lastSuccess);
+        }
+    };
+
+    /**
+     * Entries in the order of the last success.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public KnownGoodCache() {}
+
+    /**
+     * Restores the cache saved by toJson(); expired entries are dropped.
+     * @return restored cache, or an empty one if the JSON is missing or malformed.
+     */
+    public static KnownGoodCache fromJson(String json, long now) {
+        KnownGoodCache cache = new KnownGoodCache();
+        if (json == null || json.isEmpty())
+            return cache;
+
+        try {
+            Map<String, Entry> saved = new Gson().fromJson(json, new TypeToken<LinkedHashMap<String, Entry>>(){}.getType());
+            if (saved != null) {
+                for (Map.Entry<String, Entry> entry : saved.entrySet()) {
+                    Entry value = entry.getValue();
+                    if (value != null && value.ssid != null && value.bssid != null && now - value.lastSuccess < EXPIRATION) {
+                        value.savedSuccess = value.lastSuccess;
+                        cache.entries.put(entry.getKey(), value);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            // Start from scratch: the cache is an optimization only
+        }
+        return cache;
+    }
+
+    public synchronized String toJson() {
+        return new Gson().toJson(entries);
+    }
+
+    private static String key(String ssid) {
+        return ssid.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Records the successful connection.
+     * @param capabilities capabilities of the access point, null if unknown (the previous value is kept).
+     * @return true if the access point has changed, or the saved time of the last success is outdated
+     * (so the entry doesn't expire and the order is kept after restart): the cache should be saved.
+     */
+    public synchronized boolean recordSuccess(String fingerprint, String ssid, String bssid, int frequency,
+                                              String capabilities, long now) {
+        Entry entry = entries.remove(key(ssid));
+        boolean changed = entry == null || !bssid.equalsIgnoreCase(entry.bssid) || frequency != entry.frequency
+                || !fingerprint.equals(entry.fingerprint) || (capabilities != null && !capabilities.equals(entry.capabilities));
+        if (entry == null)
+            entry = new Entry();
+        entry.fingerprint = fingerprint;
+        entry.ssid = ssid;
+        entry.bssid = bssid;
+        entry.frequency = frequency;
+        if (capabilities != null)
+            entry.capabilities = capabilities;
+        entry.lastSuccess = now;
+        if (now - entry.savedSuccess >= SAVE_INTERVAL)
+            changed = true;
+        if (changed)
+            entry.savedSuccess = now;
+        entries.put(key(ssid), entry);
+
+        if (entries.size() > MAX_ENTRIES) {
+            Iterator<String> oldest = entries.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+        return changed;
+    }
+
+    /**
+     * Drops the access point which failed to connect.
+     * @return true if there was an entry.
+     */
+    public synchronized boolean remove(String ssid) {
+        return ssid != null && entries.remove(key(ssid)) != null;
+    }
+
+    /**
+     * @return entry of the network, null if not found.
+     */
+    public synchronized Entry get(String ssid) {
+        return ssid != null ? entries.get(key(ssid)) : null;
+    }
+
+    /**
+     * @return entries, the most recent success first.
+     */
+    public synchronized List<Entry> getEntries() {
+        List<Entry> result = new ArrayList<>(entries.values());
+        Collections.sort(result, RECENT_FIRST);
+        return result;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.policy;
+
+import com.hmdm.wifimanager.model.MDMConfig;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Publishes the current policy. Readers always get a completely compiled policy;
+ * a configuration may be compiled on any thread and is published only if no newer one was.
+ */
+public class PolicyHolder {
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicReference<WiFiPolicy> current = new AtomicReference<>(new WiFiPolicy(null, 0));
+
+    /**
+     * @return current policy.
+     */
+    public WiFiPolicy get() {
+        return current.get();
+    }
+
+    /**
+     * Compiles the configuration and publishes the result.
+     * @return the published policy, or a newer one if it has been published concurrently.
+     */
+    public WiFiPolicy compile(MDMConfig config) {
+        return compile(config, null);
+    }
+
+    /**
+     * Compiles the configuration, restores the wrong passwords from the ledger and publishes the result.
+     * @param ledger persisted connection failures, may be null.
+     * @return the published policy, or a newer one if it has been published concurrently.
+     */
+    public WiFiPolicy compile(MDMConfig config, FailureLedger ledger) {
+        WiFiPolicy policy = new WiFiPolicy(config, versions.incrementAndGet());
+        if (ledger != null)
+            policy = ledger.applyWrongPasswords(policy);
+        while (true) {
+            WiFiPolicy old = current.get();
+            if (old.getVersion() > policy.getVersion())
+                return old;
+            if (current.compareAndSet(old, policy))
+                return policy;
+        }
+    }
+
+    /**
+     * Marks the passwords of the allowed networks with this SSID or BSSID as wrong in the current policy.
+     * @return current policy.
+     */
+    public WiFiPolicy markWrongPassword(String ssid, String bssid) {
+        while (true) {
+            WiFiPolicy old = current.get();
+            WiFiPolicy policy = old.withWrongPassword(ssid, bssid);
+            if (policy == old || current.compareAndSet(old, policy))
+                return policy;
+        }
+    }
+}
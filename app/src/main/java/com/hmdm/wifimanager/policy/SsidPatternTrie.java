@@ -0,0 +1,186 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.policy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trie of case insensitive SSID glob patterns ('*' matches any sequence, '?' matches any character).
+ * Patterns sharing a prefix share the nodes, so the matching cost depends on the SSID length
+ * and the number of wildcards on the path, not on the number of patterns.
+ * Immutable after building, so it can be shared between threads.
+ */
+public class SsidPatternTrie {
+    private static class Node {
+        final Map<Character, Node> children = new HashMap<>();
+        /**
+         * Child for '?'.
+         */
+        Node any;
+        /**
+         * Child for '*'; a star node loops on any character.
+         */
+        Node star;
+        boolean isStar;
+        /**
+         * Minimal position of the patterns ending here, and of the ones having a password.
+         */
+        int position = -1;
+        int passwordPosition = -1;
+        /**
+         * Positions of all the patterns ending here.
+         */
+        int[] positions = new int[0];
+    }
+
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * Adds a pattern.
+     * @param position position of the rule in the configuration.
+     * @param hasPassword true if the rule has a password.
+     */
+    public void add(String pattern, int position, boolean hasPassword) {
+        Node node = root;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*') {
+                if (node.isStar)
+                    continue;
+                if (node.star == null) {
+                    node.star = new Node();
+                    node.star.isStar = true;
+                }
+                node = node.star;
+            } else if (c == '?') {
+                if (node.any == null)
+                    node.any = new Node();
+                node = node.any;
+            } else {
+                Character key = Character.toLowerCase(c);
+                Node child = node.children.get(key);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(key, child);
+                }
+                node = child;
+            }
+        }
+
+        node.position = AllowListIndex.first(node.position, position);
+        node.positions = Arrays.copyOf(node.positions, node.positions.length + 1);
+        node.positions[node.positions.length - 1] = position;
+        if (hasPassword)
+            node.passwordPosition = AllowListIndex.first(node.passwordPosition, position);
+        size++;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return minimal position of the patterns matching the SSID, or -1.
+     */
+    public int indexOf(String ssid) {
+        return match(ssid, false);
+    }
+
+    /**
+     * @return minimal position of the patterns having a password and matching the SSID, or -1.
+     */
+    public int passwordIndexOf(String ssid) {
+        return match(ssid, true);
+    }
+
+    /**
+     * Sets the positions of all the patterns matching the SSID.
+     */
+    public void collect(String ssid, BitSet result) {
+        if (size == 0 || ssid == null || ssid.isEmpty())
+            return;
+
+        List<Node> active = run(ssid);
+        for (int i = 0; i < active.size(); i++) {
+            for (int position : active.get(i).positions)
+                result.set(position);
+        }
+    }
+
+    private int match(String ssid, boolean password) {
+        if (size == 0 || ssid == null || ssid.isEmpty())
+            return -1;
+
+        List<Node> active = run(ssid);
+        int result = -1;
+        for (int i = 0; i < active.size(); i++) {
+            Node node = active.get(i);
+            result = AllowListIndex.first(result, password ? node.passwordPosition : node.position);
+        }
+        return result;
+    }
+
+    /**
+     * @return nodes active after the whole SSID.
+     */
+    private List<Node> run(String ssid) {
+        // Simulation of the automaton: the set of the active nodes after each character
+        List<Node> active = new ArrayList<>();
+        List<Node> next = new ArrayList<>();
+        addState(active, root);
+
+        for (int i = 0; i < ssid.length() && !active.isEmpty(); i++) {
+            Character c = Character.toLowerCase(ssid.charAt(i));
+            next.clear();
+            for (int j = 0; j < active.size(); j++) {
+                Node node = active.get(j);
+                if (node.isStar)
+                    addState(next, node);
+                if (node.any != null)
+                    addState(next, node.any);
+                Node child = node.children.get(c);
+                if (child != null)
+                    addState(next, child);
+            }
+            List<Node> swap = active;
+            active = next;
+            next = swap;
+        }
+        return active;
+    }
+
+    /**
+     * Adds the node and the star node following it (a star matches an empty sequence too).
+     */
+    private static void addState(List<Node> states, Node node) {
+        while (node != null && !states.contains(node)) {
+            states.add(node);
+            node = node.star;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.policy;
+
+/**
+ * Result of the evaluation of a network against the compiled policy.
+ * Instances are immutable and shared between the lookups.
+ */
+public final class Verdict {
+    private final boolean allowed;
+    private final boolean userAction;
+    private final boolean wrong;
+    private final String password;
+    /**
+     * Position of the matching allowed network in the configuration, -1 if not listed.
+     */
+    final int priority;
+    /**
+     * Position of the allowed network the password is taken from, -1 if none.
+     */
+    final int passwordPriority;
+
+    Verdict(boolean allowed, boolean userAction, boolean wrong, String password, int priority, int passwordPriority) {
+        this.allowed = allowed;
+        this.userAction = userAction;
+        this.wrong = wrong;
+        this.password = password != null ? password : "";
+        this.priority = priority;
+        this.passwordPriority = passwordPriority;
+    }
+
+    /**
+     * @return true if the connection to the network is allowed.
+     */
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    /**
+     * @return true if the user may connect or disconnect the network manually.
+     */
+    public boolean hasUserAction() {
+        return userAction;
+    }
+
+    /**
+     * @return true if the configured password is known to be wrong.
+     */
+    public boolean isWrong() {
+        return wrong;
+    }
+
+    /**
+     * @return configured password, or an empty string.
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * @return true if the network is in the list of allowed networks.
+     */
+    public boolean isListed() {
+        return priority >= 0;
+    }
+
+    /**
+     * @return position of the allowed network in the configuration, or -1 if not listed.
+     */
+    public int getPriority() {
+        return priority;
+    }
+}
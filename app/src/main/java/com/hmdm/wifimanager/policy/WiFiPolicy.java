@@ -0,0 +1,447 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.policy;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.model.Bssid;
+import com.hmdm.wifimanager.model.MDMConfig;
+import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.util.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuration of Headwind MDM compiled for the network evaluation.
+ * The policy is immutable: the known wrong passwords are applied by creating a new instance,
+ * so it can be compiled on any thread and shared without locking (see {@link PolicyHolder}).
+ */
+public final class WiFiPolicy {
+    public enum Mode {
+        /**
+         * All networks are allowed (also used when there's no configuration).
+         */
+        UNRESTRICTED,
+        /**
+         * Password protected networks and networks from the list are allowed.
+         */
+        PROTECTED_OR_LISTED,
+        /**
+         * Only networks from the list are allowed.
+         */
+        LISTED_ONLY
+    }
+
+    /**
+     * Configuration, null if not received yet (all networks are allowed).
+     */
+    private final MDMConfig config;
+    private final long version;
+    private final Mode mode;
+    /**
+     * Allowed networks having SSID or BSSID, in the configuration order.
+     */
+    private final List<AllowedItem> allowed;
+    /**
+     * Index of the allowed networks, built once per configuration.
+     */
+    private final AllowListIndex allowList;
+    /**
+     * Wrong password flags by position in the allowed list.
+     */
+    private final boolean[] wrong;
+    /**
+     * Fingerprints of the allowed networks by position.
+     */
+    private final String[] fingerprints;
+    /**
+     * Precomputed verdicts for open [0] and protected [1] networks by SSID and BSSID key.
+     */
+    private final Map<String, Verdict[]> verdictsBySsid = new HashMap<>();
+    private final LongObjectMap<Verdict[]> verdictsByBssid = new LongObjectMap<>();
+    private final Verdict[] unlisted;
+
+    public WiFiPolicy(MDMConfig config) {
+        this(config, 0);
+    }
+
+    public WiFiPolicy(MDMConfig config, long version) {
+        this.config = config;
+        this.version = version;
+
+        if (config == null || (config.allAllowed && config.freeAllowed))
+            mode = Mode.UNRESTRICTED;
+        else if (!config.allAllowed)
+            mode = Mode.LISTED_ONLY;
+        else
+            mode = Mode.PROTECTED_OR_LISTED;
+
+        List<AllowedItem> list = new ArrayList<>();
+        if (config != null && config.allowed != null) {
+            for (AllowedItem item : config.allowed) {
+                if (!isEmpty(item.ssid) || !isEmpty(item.bssid)
+                        || !isEmpty(item.ssidPattern) || !isEmpty(item.bssidRange))
+                    list.add(item);
+            }
+        }
+        allowed = Collections.unmodifiableList(list);
+        allowList = new AllowListIndex(allowed);
+
+        wrong = new boolean[allowed.size()];
+        fingerprints = new String[allowed.size()];
+        for (int i = 0; i < wrong.length; i++) {
+            wrong[i] = allowed.get(i).wrongPassword;
+            fingerprints[i] = fingerprint(allowed.get(i));
+        }
+
+        unlisted = verdicts(-1, -1);
+        buildVerdicts();
+    }
+
+    private WiFiPolicy(WiFiPolicy source, boolean[] wrong) {
+        this.config = source.config;
+        this.version = source.version;
+        this.mode = source.mode;
+        this.allowed = source.allowed;
+        this.allowList = source.allowList;
+        this.wrong = wrong;
+        this.fingerprints = source.fingerprints;
+
+        unlisted = source.unlisted;
+        buildVerdicts();
+    }
+
+    private void buildVerdicts() {
+        for (AllowedItem item : allowed) {
+            String ssid = AllowListIndex.ssidKey(item.ssid);
+            if (ssid != null && !verdictsBySsid.containsKey(ssid))
+                verdictsBySsid.put(ssid, verdicts(allowList.indexOf(item.ssid, null), allowList.passwordIndexOf(item.ssid, null)));
+
+            long bssid = Bssid.parse(item.bssid);
+            if (bssid != Bssid.NONE && !verdictsByBssid.containsKey(bssid))
+                verdictsByBssid.put(bssid, verdicts(allowList.indexOf(null, bssid), allowList.passwordIndexOf(null, bssid)));
+        }
+    }
+
+    private Verdict[] verdicts(int priority, int passwordPriority) {
+        return new Verdict[] {
+                verdict(priority, passwordPriority, false),
+                verdict(priority, passwordPriority, true)
+        };
+    }
+
+    private Verdict verdict(int priority, int passwordPriority, boolean encrypted) {
+        boolean listed = priority >= 0;
+        String password = passwordPriority >= 0 ? allowed.get(passwordPriority).password : "";
+
+        switch (mode) {
+            case LISTED_ONLY:
+                return new Verdict(listed, !(listed && encrypted), listed && wrong[priority],
+                        password, priority, passwordPriority);
+            case PROTECTED_OR_LISTED:
+                return new Verdict(listed || encrypted, !(listed && encrypted), listed && wrong[priority],
+                        password, priority, passwordPriority);
+            default:
+                return new Verdict(true, true, false, password, priority, passwordPriority);
+        }
+    }
+
+    /**
+     * @return stable hash (64-bit FNV-1a) of the fields defining the network and its credentials.
+     */
+    static String fingerprint(AllowedItem item) {
+        String[] fields = {item.ssid, item.bssid, item.ssidPattern, item.bssidRange, item.password, item.security};
+        long hash = 0xcbf29ce484222325L;
+        for (String field : fields) {
+            if (field != null) {
+                for (int i = 0; i < field.length(); i++) {
+                    hash ^= field.charAt(i);
+                    hash *= 0x100000001b3L;
+                }
+            }
+            // Field separator
+            hash ^= 0xffff;
+            hash *= 0x100000001b3L;
+        }
+        return Long.toHexString(hash);
+    }
+
+    private static boolean isEmpty(String s) {
+        return s == null || s.isEmpty();
+    }
+
+    public MDMConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return true if the configuration has been received.
+     */
+    public boolean isConfigured() {
+        return config != null;
+    }
+
+    /**
+     * @return version of the configuration this policy was compiled from.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * @return allowed networks having SSID or BSSID, in the configuration order.
+     */
+    public List<AllowedItem> getAllowedList() {
+        return allowed;
+    }
+
+    /**
+     * Evaluates the network against the policy.
+     * @param ssid network SSID, may be null.
+     * @param bssid network BSSID, may be null.
+     * @param encrypted true if the network is password protected.
+     */
+    public Verdict evaluate(String ssid, String bssid, boolean encrypted) {
+        return evaluate(ssid, Bssid.parse(bssid), encrypted);
+    }
+
+    /**
+     * Evaluates the network against the policy.
+     * @param ssid network SSID, may be null.
+     * @param bssid BSSID key (see Bssid), may be Bssid.NONE.
+     * @param encrypted true if the network is password protected.
+     */
+    public Verdict evaluate(String ssid, long bssid, boolean encrypted) {
+        Verdict verdict = evaluateExact(ssid, bssid, encrypted);
+        if (!allowList.hasPatterns())
+            return verdict;
+
+        int priority = AllowListIndex.first(verdict.priority, allowList.patternIndexOf(ssid, bssid));
+        int passwordPriority = AllowListIndex.first(verdict.passwordPriority, allowList.patternPasswordIndexOf(ssid, bssid));
+        if (priority == verdict.priority && passwordPriority == verdict.passwordPriority)
+            return verdict;
+        return verdict(priority, passwordPriority, encrypted);
+    }
+
+    /**
+     * Evaluates the network by the exact SSID and BSSID rules.
+     */
+    private Verdict evaluateExact(String ssid, long bssid, boolean encrypted) {
+        int index = encrypted ? 1 : 0;
+        String ssidKey = AllowListIndex.ssidKey(ssid);
+        Verdict[] bySsid = ssidKey != null ? verdictsBySsid.get(ssidKey) : null;
+        Verdict[] byBssid = bssid != Bssid.NONE ? verdictsByBssid.get(bssid) : null;
+
+        if (bySsid == null && byBssid == null)
+            return unlisted[index];
+        if (byBssid == null)
+            return bySsid[index];
+        if (bySsid == null)
+            return byBssid[index];
+
+        // Both keys match: the first allowed network in the configuration wins
+        Verdict s = bySsid[index];
+        Verdict b = byBssid[index];
+        if (s.priority == b.priority && s.passwordPriority == b.passwordPriority)
+            return s;
+        return verdict(AllowListIndex.first(s.priority, b.priority),
+                AllowListIndex.first(s.passwordPriority, b.passwordPriority), encrypted);
+    }
+
+    public Verdict evaluate(WiFiItem item) {
+        return evaluate(item.getSSID(), item.getBssidKey(), item.hasEncryption());
+    }
+
+    /**
+     * Returns the policy where the allowed networks matching this SSID or BSSID have a wrong password.
+     * A pattern or range rule is marked as a whole, since it has a single password.
+     * The configuration is not modified.
+     * @return new policy, or this policy if nothing has changed.
+     */
+    public WiFiPolicy withWrongPassword(String ssid, String bssid) {
+        long bssidKey = Bssid.parse(bssid);
+        BitSet patternMatches = allowList.hasPatterns() ? allowList.patternMatches(ssid, bssidKey) : null;
+        boolean[] newWrong = null;
+        for (int i = 0; i < allowed.size(); i++) {
+            if (!wrong[i] && matches(i, ssid, bssidKey, patternMatches)) {
+                if (newWrong == null)
+                    newWrong = wrong.clone();
+                newWrong[i] = true;
+            }
+        }
+        return newWrong != null ? new WiFiPolicy(this, newWrong) : this;
+    }
+
+    /**
+     * Returns the policy where the rule with this fingerprint and the other rules matching the SSID
+     * have a wrong password, like withWrongPassword(ssid, null). Used to restore the wrong passwords
+     * from FailureLedger after the configuration is compiled again.
+     * @return new policy, or this policy if nothing has changed (also if no rule has this fingerprint,
+     * so the changed credentials are tried again).
+     */
+    public WiFiPolicy withWrongCredentials(String fingerprint, String ssid) {
+        if (!Arrays.asList(fingerprints).contains(fingerprint))
+            return this;
+        BitSet patternMatches = allowList.hasPatterns() ? allowList.patternMatches(ssid, Bssid.NONE) : null;
+        boolean[] newWrong = null;
+        for (int i = 0; i < allowed.size(); i++) {
+            if (!wrong[i] && (fingerprints[i].equals(fingerprint) || matches(i, ssid, Bssid.NONE, patternMatches))) {
+                if (newWrong == null)
+                    newWrong = wrong.clone();
+                newWrong[i] = true;
+            }
+        }
+        return newWrong != null ? new WiFiPolicy(this, newWrong) : this;
+    }
+
+    /**
+     * Checks if the allowed network at this position matches the SSID or BSSID, including the patterns.
+     * @param patternMatches positions of the matching patterns and ranges (see AllowListIndex.patternMatches),
+     *                       null if there are none.
+     */
+    private boolean matches(int priority, String ssid, long bssid, BitSet patternMatches) {
+        AllowedItem item = allowed.get(priority);
+        if (ssid != null && ssid.equalsIgnoreCase(item.ssid))
+            return true;
+        if (bssid != Bssid.NONE && bssid == Bssid.parse(item.bssid))
+            return true;
+        return patternMatches != null && patternMatches.get(priority);
+    }
+
+    /**
+     * Creates the list of networks to display.
+     * @param scanSSIDMap latest scanning results by SSID.
+     * @return list of networks, or a list with a single null item if there are no networks.
+     */
+    public ArrayList<WiFiItem> createList(Map<String, WiFiItem> scanSSIDMap) {
+        return createList(scanSSIDMap, null);
+    }
+
+    /**
+     * Creates the list of networks to display, reusing the items created for the same scanning results.
+     * @param scanSSIDMap latest scanning results by SSID.
+     * @param cache displayed items by scanning result (compared by identity), created by this policy.
+     *              Updated by this call; may be null.
+     * @return list of networks, or a list with a single null item if there are no networks.
+     */
+    public ArrayList<WiFiItem> createList(Map<String, WiFiItem> scanSSIDMap, Map<WiFiItem, WiFiItem> cache) {
+        ArrayList<WiFiItem> result = new ArrayList<>();
+        Map<WiFiItem, WiFiItem> newCache = cache != null ? new IdentityHashMap<WiFiItem, WiFiItem>() : null;
+
+        if (scanSSIDMap == null || scanSSIDMap.size() == 0)
+            result.add(null);
+        else {
+            for (WiFiItem item : scanSSIDMap.values()) {
+                WiFiItem newItem = cache != null ? cache.get(item) : null;
+                if (newItem == null) {
+                    Verdict verdict = evaluate(item);
+                    newItem = item.clone();
+                    newItem.setAllowed(verdict.isAllowed());
+                    newItem.setUserAction(verdict.hasUserAction());
+                    newItem.setWrong(verdict.isWrong());
+                }
+                if (newCache != null)
+                    newCache.put(item, newItem);
+                result.add(newItem);
+            }
+        }
+
+        if (cache != null) {
+            cache.clear();
+            cache.putAll(newCache);
+        }
+        return result;
+    }
+
+    /**
+     * Checks if the network is in the list of allowed networks.
+     */
+    public boolean isAllowed(String ssid, String bssid) {
+        return allowList.contains(ssid, bssid);
+    }
+
+    /**
+     * Checks if the password of the allowed network is known to be wrong.
+     */
+    public boolean isWrong(String ssid, String bssid) {
+        return isWrong(allowList.indexOf(ssid, bssid));
+    }
+
+    /**
+     * Checks if the password of the allowed network at this position is known to be wrong.
+     */
+    public boolean isWrong(int priority) {
+        return priority >= 0 && wrong[priority];
+    }
+
+    /**
+     * Returns the first allowed network matching the SSID or BSSID, or null if not found.
+     */
+    public AllowedItem findAllowed(String ssid, String bssid) {
+        return allowList.find(ssid, bssid);
+    }
+
+    /**
+     * Returns the position of the allowed network in the configuration, or -1 if not found.
+     * Networks listed first have priority.
+     */
+    public int getPriority(String ssid, String bssid) {
+        return allowList.indexOf(ssid, bssid);
+    }
+
+    public int getPriority(String ssid, long bssid) {
+        return allowList.indexOf(ssid, bssid);
+    }
+
+    /**
+     * Returns the fingerprint of the allowed network at this position (see FailureLedger),
+     * or an empty string for networks which aren't listed.
+     */
+    public String getFingerprint(int priority) {
+        return priority >= 0 ? fingerprints[priority] : "";
+    }
+
+    /**
+     * Returns the allowed network by its position in the configuration.
+     */
+    public AllowedItem getAllowed(int priority) {
+        return allowList.get(priority);
+    }
+
+    /**
+     * Returns the password of the allowed network, or an empty string if not set.
+     */
+    public String getPasswordFromAllowed(String ssid, String bssid) {
+        String password = allowList.getPassword(ssid, bssid);
+        return password != null ? password : "";
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.scan;
+
+import com.hmdm.wifimanager.model.Bssid;
+import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.util.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Smooths the signal levels of the access points and keeps the access points missing from a few scans.
+ * <p>
+ * The access points are stored by BSSID in a {@link LongObjectMap}; the index of an entry in the map
+ * is the slot of the access point in the primitive arrays, so the update doesn't allocate
+ * unless a new access point appears or the displayed signal level changes.
+ * Not thread safe.
+ */
+public class AccessPointCache {
+    /**
+     * Number of scans an access point may miss before it's removed.
+     */
+    public static final int DEFAULT_MAX_MISSED = 2;
+    /**
+     * Weight of the new signal level in the exponentially weighted moving average.
+     */
+    public static final float DEFAULT_ALPHA = 0.5f;
+
+    private final int maxMissed;
+    private final float alpha;
+    /**
+     * Latest scanning result by BSSID, the entry index is the slot.
+     */
+    private final LongObjectMap<WiFiItem> accessPoints = new LongObjectMap<>();
+    private float[] smoothed = new float[16];
+    private int[] missed = new int[16];
+    private int[] seen = new int[16];
+    /**
+     * Items with the smoothed signal level, reused while the rounded level doesn't change.
+     */
+    private WiFiItem[] output = new WiFiItem[16];
+    private int generation;
+    private final ArrayList<WiFiItem> result = new ArrayList<>();
+
+    public AccessPointCache() {
+        this(DEFAULT_MAX_MISSED, DEFAULT_ALPHA);
+    }
+
+    /**
+     * @param maxMissed number of scans an access point may miss before it's removed.
+     * @param alpha weight of the new signal level, 0 to 1 (1 - no smoothing).
+     */
+    public AccessPointCache(int maxMissed, float alpha) {
+        this.maxMissed = maxMissed;
+        this.alpha = alpha;
+    }
+
+    /**
+     * Applies the scanning results.
+     * @param scan scanning results.
+     * @return access points with the smoothed signal levels, including the recently missed ones.
+     *         The list is reused by the next update.
+     */
+    public List<WiFiItem> update(List<WiFiItem> scan) {
+        generation++;
+        result.clear();
+
+        for (WiFiItem item : scan) {
+            long key = item.getBssidKey();
+            if (key == Bssid.NONE) {
+                // Can't be tracked
+                result.add(item);
+                continue;
+            }
+
+            int slot = accessPoints.indexOfKey(key);
+            if (slot < 0) {
+                accessPoints.put(key, item);
+                slot = accessPoints.size() - 1;
+                ensureCapacity(slot + 1);
+                smoothed[slot] = item.getLevel();
+                output[slot] = item;
+            } else {
+                if (seen[slot] == generation)
+                    continue;
+                accessPoints.put(key, item);
+                smoothed[slot] += alpha * (item.getLevel() - smoothed[slot]);
+                int level = Math.round(smoothed[slot]);
+                WiFiItem current = output[slot];
+                if (current.getLevel() != level || !isSameNetwork(current, item))
+                    output[slot] = item.withLevel(level);
+            }
+            missed[slot] = 0;
+            seen[slot] = generation;
+        }
+
+        // Removal moves the last entry into the slot, so go backwards
+        for (int slot = accessPoints.size() - 1; slot >= 0; slot--) {
+            if (seen[slot] != generation && ++missed[slot] > maxMissed)
+                remove(slot);
+        }
+
+        for (int slot = 0; slot < accessPoints.size(); slot++)
+            result.add(output[slot]);
+        return result;
+    }
+
+    /**
+     * @return smoothed signal level of the access point, or Integer.MIN_VALUE if it's not known.
+     */
+    public int getLevel(long bssidKey) {
+        int slot = accessPoints.indexOfKey(bssidKey);
+        return slot >= 0 ? output[slot].getLevel() : Integer.MIN_VALUE;
+    }
+
+    /**
+     * @return number of the scans the access point has missed, or -1 if it's not known.
+     */
+    public int getMissed(long bssidKey) {
+        int slot = accessPoints.indexOfKey(bssidKey);
+        return slot >= 0 ? missed[slot] : -1;
+    }
+
+    public int size() {
+        return accessPoints.size();
+    }
+
+    public void clear() {
+        accessPoints.clear();
+        Arrays.fill(output, null);
+        result.clear();
+    }
+
+    private static boolean isSameNetwork(WiFiItem a, WiFiItem b) {
+        return a.getSSID().equals(b.getSSID()) && a.getCapabilities().equals(b.getCapabilities());
+    }
+
+    private void remove(int slot) {
+        int last = accessPoints.size() - 1;
+        accessPoints.remove(accessPoints.keyAt(slot));
+        if (slot != last) {
+            smoothed[slot] = smoothed[last];
+            missed[slot] = missed[last];
+            seen[slot] = seen[last];
+            output[slot] = output[last];
+        }
+        output[last] = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= smoothed.length)
+            return;
+        int size = Math.max(capacity, smoothed.length * 2);
+        smoothed = Arrays.copyOf(smoothed, size);
+        missed = Arrays.copyOf(missed, size);
+        seen = Arrays.copyOf(seen, size);
+        output = Arrays.copyOf(output, size);
+    }
+}
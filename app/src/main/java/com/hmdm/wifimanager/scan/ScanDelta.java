@@ -0,0 +1,94 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.scan;
+
+import com.hmdm.wifimanager.model.WiFiItem;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Difference between two consecutive scans, by access point (BSSID).
+ */
+public class ScanDelta {
+    private final List<WiFiItem> added;
+    private final List<WiFiItem> removed;
+    private final List<WiFiItem> changed;
+
+    public ScanDelta(List<WiFiItem> added, List<WiFiItem> removed, List<WiFiItem> changed) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.changed = Collections.unmodifiableList(changed);
+    }
+
+    /**
+     * @return access points which weren't visible in the previous scan.
+     */
+    public List<WiFiItem> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return access points which aren't visible any more (the items of the previous scan).
+     */
+    public List<WiFiItem> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return access points having a different signal level, SSID or capabilities (the items of the new scan).
+     */
+    public List<WiFiItem> getChanged() {
+        return changed;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    /**
+     * @return number of the added, removed and changed access points.
+     */
+    public int size() {
+        return added.size() + removed.size() + changed.size();
+    }
+
+    /**
+     * @return true if an access point of the network has been added, removed or changed.
+     */
+    public boolean affects(String ssid) {
+        return contains(added, ssid) || contains(removed, ssid) || contains(changed, ssid);
+    }
+
+    private static boolean contains(List<WiFiItem> items, String ssid) {
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getSSID().equals(ssid))
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "added: " + added.size() + "; removed: " + removed.size() + "; changed: " + changed.size();
+    }
+}
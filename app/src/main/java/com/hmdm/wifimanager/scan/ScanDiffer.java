@@ -0,0 +1,101 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.scan;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.model.Bssid;
+import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.util.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares each scan with the previous one, building the scan indexes in the same pass.
+ * Access points which haven't changed keep their previous WiFiItem objects,
+ * so the downstream processing can skip them by identity.
+ */
+public class ScanDiffer {
+    private ScanIndex index = ScanIndex.build(null, null);
+
+    /**
+     * Applies the new scanning results.
+     * @param scan scanning results.
+     * @param allowed allowed networks from the configuration, to add the hidden networks; may be null.
+     * @return difference from the previous scan.
+     */
+    public ScanDelta update(List<WiFiItem> scan, List<AllowedItem> allowed) {
+        LongObjectMap<WiFiItem> accessPoints = index.getByBssid();
+        ScanIndex newIndex = new ScanIndex(scan.size());
+        List<WiFiItem> added = new ArrayList<>();
+        List<WiFiItem> changed = new ArrayList<>();
+
+        for (WiFiItem item : scan) {
+            long key = item.getBssidKey();
+            if (key == Bssid.NONE) {
+                // Can't be compared
+                newIndex.add(item);
+                added.add(item);
+                continue;
+            }
+            if (newIndex.getByBssid().containsKey(key))
+                continue;
+
+            WiFiItem old = accessPoints.get(key);
+            if (old == null)
+                added.add(item);
+            else if (isSame(old, item))
+                item = old;
+            else
+                changed.add(item);
+
+            newIndex.add(item);
+        }
+        newIndex.addHidden(allowed);
+
+        List<WiFiItem> removed = new ArrayList<>();
+        for (int i = 0; i < accessPoints.size(); i++) {
+            if (!newIndex.getByBssid().containsKey(accessPoints.keyAt(i)))
+                removed.add(accessPoints.valueAt(i));
+        }
+
+        index = newIndex;
+        return new ScanDelta(added, removed, changed);
+    }
+
+    private static boolean isSame(WiFiItem a, WiFiItem b) {
+        return a.getLevel() == b.getLevel()
+                && a.getSSID().equals(b.getSSID())
+                && a.getCapabilities().equals(b.getCapabilities());
+    }
+
+    /**
+     * @return indexes of the latest scan.
+     */
+    public ScanIndex getIndex() {
+        return index;
+    }
+
+    public void clear() {
+        index = ScanIndex.build(null, null);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.scan;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.model.Bssid;
+import com.hmdm.wifimanager.model.HiddenWiFiItem;
+import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.util.LongObjectMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookup indexes of the scanning results, built in a single pass:
+ * access points by BSSID, and networks by SSID with their access points sorted by signal level.
+ * The strongest access point represents the network.
+ */
+public class ScanIndex {
+    private final List<WiFiItem> items;
+    private final LongObjectMap<WiFiItem> byBssid;
+    /**
+     * Strongest access point (or hidden network placeholder) by SSID.
+     */
+    private final Map<String, WiFiItem> bySsid;
+    /**
+     * Access points by SSID, the strongest first.
+     */
+    private final Map<String, List<WiFiItem>> groups;
+
+    public ScanIndex(int expectedSize) {
+        items = new ArrayList<>(expectedSize);
+        byBssid = new LongObjectMap<>(expectedSize);
+        bySsid = new HashMap<>();
+        groups = new HashMap<>();
+    }
+
+    /**
+     * Builds the indexes of the scanning results.
+     * @param scan scanning results.
+     * @param allowed allowed networks from the configuration, may be null.
+     */
+    public static ScanIndex build(List<WiFiItem> scan, List<AllowedItem> allowed) {
+        ScanIndex index = new ScanIndex(scan != null ? scan.size() : 0);
+        if (scan != null) {
+            for (WiFiItem item : scan)
+                index.add(item);
+        }
+        index.addHidden(allowed);
+        return index;
+    }
+
+    /**
+     * Adds the access point.
+     * @return false if there's already an access point with this BSSID (the item is ignored).
+     */
+    public boolean add(WiFiItem item) {
+        long key = item.getBssidKey();
+        if (key != Bssid.NONE) {
+            if (byBssid.containsKey(key))
+                return false;
+            byBssid.put(key, item);
+        }
+        items.add(item);
+
+        String ssid = item.getSSID();
+        if (!ssid.isEmpty()) {
+            List<WiFiItem> group = groups.get(ssid);
+            if (group == null) {
+                group = new ArrayList<>(4);
+                groups.put(ssid, group);
+            }
+            int position = group.size();
+            while (position > 0 && isStronger(item, group.get(position - 1)))
+                position--;
+            group.add(position, item);
+            if (position == 0)
+                bySsid.put(ssid, item);
+        }
+        return true;
+    }
+
+    /**
+     * Adds the placeholders of the hidden allowed networks which aren't visible in the scan.
+     */
+    public void addHidden(List<AllowedItem> allowed) {
+        if (allowed == null)
+            return;
+
+        for (AllowedItem item : allowed) {
+            // the "hidden" flag is used only if network is not visible in the scan results
+            if (item.hidden && item.ssid != null && !item.ssid.isEmpty() && !bySsid.containsKey(item.ssid)) {
+                WiFiItem placeholder = new HiddenWiFiItem(item.ssid, item.security);
+                bySsid.put(item.ssid, placeholder);
+                List<WiFiItem> group = new ArrayList<>(1);
+                group.add(placeholder);
+                groups.put(item.ssid, group);
+            }
+        }
+    }
+
+    /**
+     * @return time of the freshest access point in the scanning results, ms since boot, 0 if unknown.
+     */
+    public static long getNewestTimestamp(List<WiFiItem> scan) {
+        long result = 0;
+        if (scan != null) {
+            for (WiFiItem item : scan)
+                result = Math.max(result, item.getTimestamp());
+        }
+        return result;
+    }
+
+    /**
+     * Order of the access points in a group: by signal level, then by BSSID to keep the order stable.
+     */
+    private static boolean isStronger(WiFiItem a, WiFiItem b) {
+        if (a.getLevel() != b.getLevel())
+            return a.getLevel() > b.getLevel();
+        return a.getBssidKey() < b.getBssidKey();
+    }
+
+    /**
+     * @return visible access points in the scan order.
+     */
+    public List<WiFiItem> getItems() {
+        return items;
+    }
+
+    /**
+     * @return visible access points by BSSID key.
+     */
+    public LongObjectMap<WiFiItem> getByBssid() {
+        return byBssid;
+    }
+
+    /**
+     * @return networks by SSID, represented by the strongest access point.
+     */
+    public Map<String, WiFiItem> getBySsid() {
+        return bySsid;
+    }
+
+    /**
+     * @return access points of the network, the strongest first, or null if the network is not visible.
+     */
+    public List<WiFiItem> getGroup(String ssid) {
+        return groups.get(ssid);
+    }
+}
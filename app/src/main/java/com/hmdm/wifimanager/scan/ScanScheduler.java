@@ -0,0 +1,377 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.scan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Decides when to start the WiFi scans.
+ * <p>
+ * Since Android 9, a foreground app may start 4 scans in 2 minutes; the extra requests fail.
+ * The budget is tracked as a token bucket: each started scan takes a token, which returns
+ * to the bucket when the platform window has passed. Requests made while a scan is running
+ * are merged into it, and the interval between the periodic scans depends on the connection state.
+ * Fresh results of the scans started by the system or other apps replace the periodic scans.
+ * <p>
+ * The scheduler has no timers: the caller passes the monotonic time and schedules the returned delays.
+ */
+public class ScanScheduler {
+    public enum State {
+        /**
+         * Not connected, looking for an allowed network.
+         */
+        SEARCHING,
+        /**
+         * Connected with a weak signal, a better access point may appear.
+         */
+        CONNECTED_WEAK,
+        /**
+         * Connected with a good signal.
+         */
+        CONNECTED_GOOD
+    }
+
+    public enum Action {
+        /**
+         * Start the scan now.
+         */
+        START,
+        /**
+         * Merged into the scan which is running.
+         */
+        MERGED,
+        /**
+         * Wait for the platform scan budget.
+         */
+        THROTTLED,
+        /**
+         * Too early for the current state.
+         */
+        DEFERRED,
+        /**
+         * The results delivered without our scan are fresh enough.
+         */
+        FRESH
+    }
+
+    /**
+     * A scheduling decision.
+     */
+    public static final class Decision {
+        private final Action action;
+        private final long time;
+        private final long delay;
+        private final String trigger;
+        private final State state;
+        private final int tokens;
+
+        Decision(Action action, long time, long delay, String trigger, State state, int tokens) {
+            this.action = action;
+            this.time = time;
+            this.delay = delay;
+            this.trigger = trigger;
+            this.state = state;
+            this.tokens = tokens;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        /**
+         * @return time of the decision.
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return delay before the next request makes sense (0 to start now); for MERGED, until the scan times out.
+         */
+        public long getDelay() {
+            return delay;
+        }
+
+        public String getTrigger() {
+            return trigger;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * @return tokens left after the decision, -1 if the scans are not throttled.
+         */
+        public int getTokens() {
+            return tokens;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s (%s); state: %s; delay: %d ms; tokens: %d",
+                    action, trigger, state, delay, tokens);
+        }
+    }
+
+    /**
+     * Platform throttling of the foreground apps, Android 9+.
+     */
+    public static final int THROTTLE_SCANS = 4;
+    public static final long THROTTLE_WINDOW = 2 * 60 * 1000;
+    /**
+     * If no results arrive during this time, the scan is considered lost.
+     */
+    public static final long SCAN_TIMEOUT = 15 * 1000;
+    private static final int HISTORY_SIZE = 16;
+
+    private final int capacity;
+    private final long window;
+    private final long[] intervals;
+    /**
+     * Times when the tokens were spent, ring buffer; a token is available again after the window.
+     */
+    private final long[] spentAt;
+    private int nextToken;
+    private State state = State.SEARCHING;
+    private boolean inFlight;
+    private long startedAt;
+    private long lastScanAt = -1;
+    private long blockedUntil;
+    /**
+     * Time of the freshest scanning results, -1 if none.
+     */
+    private long newestResult = -1;
+    /**
+     * True if the freshest results were delivered while we didn't scan.
+     */
+    private boolean newestPassive;
+    /**
+     * Maximal age of the passive results to skip the periodic scan, 0 to use the interval.
+     */
+    private long maxResultAge;
+
+    private final Decision[] history = new Decision[HISTORY_SIZE];
+    private int historyCount;
+    private int started;
+    private int merged;
+    private int throttled;
+    private int deferred;
+    private int failed;
+    private int fresh;
+    private int passive;
+
+    /**
+     * @param capacity scans allowed in the window, 0 if the scans are not throttled.
+     * @param window throttling window, ms.
+     * @param searching interval between the scans while searching for a network, ms.
+     * @param connectedWeak interval while connected with a weak signal, ms.
+     * @param connectedGood interval while connected with a good signal, ms.
+     */
+    public ScanScheduler(int capacity, long window, long searching, long connectedWeak, long connectedGood) {
+        this.capacity = capacity;
+        this.window = window;
+        this.intervals = new long[] {searching, connectedWeak, connectedGood};
+        this.spentAt = new long[capacity];
+        for (int i = 0; i < capacity; i++)
+            spentAt[i] = Long.MIN_VALUE / 2;
+    }
+
+    /**
+     * Creates the scheduler for the platform.
+     * @param throttled true on Android 9+.
+     */
+    public static ScanScheduler create(boolean throttled) {
+        if (throttled) {
+            // The periodic scans while searching use the whole budget evenly
+            return new ScanScheduler(THROTTLE_SCANS, THROTTLE_WINDOW, THROTTLE_WINDOW / THROTTLE_SCANS,
+                    60 * 1000, 2 * 60 * 1000);
+        }
+        return new ScanScheduler(0, 0, 5 * 1000, 15 * 1000, 60 * 1000);
+    }
+
+    /**
+     * Sets the connection state, which defines the interval between the periodic scans.
+     */
+    public void setState(State state) {
+        this.state = state;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Sets the maximal age of the results delivered without our scan, which can replace a periodic scan.
+     * @param maxResultAge ms, 0 to use the interval of the current state.
+     */
+    public void setMaxResultAge(long maxResultAge) {
+        this.maxResultAge = maxResultAge;
+    }
+
+    public long getMaxResultAge() {
+        return maxResultAge > 0 ? maxResultAge : getInterval();
+    }
+
+    /**
+     * Requests a scan. If the decision is START, the caller must start the scan and report
+     * the result by {@link #onStartResult(boolean, long)}.
+     * @param now monotonic time, ms.
+     * @param trigger what caused the request, for the logs.
+     * @param periodic true if the request should respect the interval of the current state.
+     */
+    public Decision request(long now, String trigger, boolean periodic) {
+        Decision decision;
+        if (inFlight && now - startedAt < SCAN_TIMEOUT) {
+            merged++;
+            decision = new Decision(Action.MERGED, now, startedAt + SCAN_TIMEOUT - now, trigger, state, getTokens(now));
+        } else {
+            inFlight = false;
+            long wait = Math.max(blockedUntil - now, getTokenDelay(now));
+            if (wait > 0) {
+                throttled++;
+                decision = new Decision(Action.THROTTLED, now, wait, trigger, state, getTokens(now));
+            } else if (periodic && newestPassive && now - newestResult < getMaxResultAge()) {
+                fresh++;
+                decision = new Decision(Action.FRESH, now, newestResult + getMaxResultAge() - now, trigger, state, getTokens(now));
+            } else if (periodic && lastScanAt >= 0 && now - lastScanAt < getInterval()) {
+                deferred++;
+                decision = new Decision(Action.DEFERRED, now, lastScanAt + getInterval() - now, trigger, state, getTokens(now));
+            } else {
+                if (capacity > 0) {
+                    spentAt[nextToken] = now;
+                    nextToken = (nextToken + 1) % capacity;
+                }
+                inFlight = true;
+                startedAt = now;
+                lastScanAt = now;
+                started++;
+                decision = new Decision(Action.START, now, 0, trigger, state, getTokens(now));
+            }
+        }
+        remember(decision);
+        return decision;
+    }
+
+    /**
+     * Reports the result of WifiManager.startScan() after the START decision.
+     * A refused scan means the platform budget is used up (for example, by the scans started before
+     * the scheduler was created), so the next attempt waits for a token to return.
+     */
+    public void onStartResult(boolean success, long now) {
+        if (success)
+            return;
+        failed++;
+        inFlight = false;
+        blockedUntil = now + (capacity > 0 ? window / capacity : getInterval());
+    }
+
+    /**
+     * Reports the scanning results, either of our scan or of a scan started by the system or other apps.
+     * @param now monotonic time, ms.
+     * @param newest time of the freshest access point in the results, ms since boot (same clock as now); 0 if unknown.
+     */
+    public void onScanResults(long now, long newest) {
+        if (newest > newestResult) {
+            newestResult = newest;
+            newestPassive = !inFlight;
+            if (!inFlight)
+                passive++;
+        }
+        inFlight = false;
+    }
+
+    /**
+     * Forgets the running scan (e.g. when WiFi is turned off).
+     */
+    public void cancel() {
+        inFlight = false;
+    }
+
+    /**
+     * @return delay until the next periodic scan, ms.
+     */
+    public long getNextDelay(long now) {
+        long delay = lastScanAt >= 0 ? lastScanAt + getInterval() - now : 0;
+        if (newestPassive)
+            delay = Math.max(delay, newestResult + getMaxResultAge() - now);
+        delay = Math.max(delay, blockedUntil - now);
+        delay = Math.max(delay, getTokenDelay(now));
+        return Math.max(delay, 0);
+    }
+
+    /**
+     * @return interval between the periodic scans in the current state, ms.
+     */
+    public long getInterval() {
+        return intervals[state.ordinal()];
+    }
+
+    /**
+     * @return tokens available now, -1 if the scans are not throttled.
+     */
+    public int getTokens(long now) {
+        if (capacity == 0)
+            return -1;
+        int tokens = 0;
+        for (long time : spentAt) {
+            if (now - time >= window)
+                tokens++;
+        }
+        return tokens;
+    }
+
+    private long getTokenDelay(long now) {
+        if (capacity == 0)
+            return 0;
+        // The oldest token is the next one to use
+        return Math.max(spentAt[nextToken] + window - now, 0);
+    }
+
+    public boolean isInFlight() {
+        return inFlight;
+    }
+
+    private void remember(Decision decision) {
+        history[historyCount % HISTORY_SIZE] = decision;
+        historyCount++;
+    }
+
+    /**
+     * @return latest decisions, the oldest first.
+     */
+    public List<Decision> getHistory() {
+        int size = Math.min(historyCount, HISTORY_SIZE);
+        List<Decision> result = new ArrayList<>(size);
+        for (int i = historyCount - size; i < historyCount; i++)
+            result.add(history[i % HISTORY_SIZE]);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "started: %d; merged: %d; throttled: %d; deferred: %d; fresh: %d; failed: %d; passive results: %d",
+                started, merged, throttled, deferred, fresh, failed, passive);
+    }
+}
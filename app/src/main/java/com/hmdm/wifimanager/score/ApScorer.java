@@ -0,0 +1,36 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.score;
+
+import com.hmdm.wifimanager.model.WiFiItem;
+
+/**
+ * Rates an access point as a connection candidate.
+ */
+public interface ApScorer {
+    /**
+     * @param accessPoint access point (the signal level is smoothed).
+     * @param stats connection history of the network, null if there were no attempts.
+     * @return score, higher is better. Must depend on the arguments only.
+     */
+    double score(WiFiItem accessPoint, ConnectionHistory.Stats stats);
+}
@@ -0,0 +1,110 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.score;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Outcomes of the connection attempts by network (SSID, case insensitive).
+ * The least recently used networks are evicted. Not thread safe.
+ */
+public class ConnectionHistory {
+    public static final int MAX_SIZE = 256;
+    /**
+     * Weight of the new value in the moving average of the time to IP address.
+     */
+    private static final double TIME_TO_IP_ALPHA = 0.3;
+
+    public static final class Stats {
+        private int attempts;
+        private int successes;
+        private long timeToIp;
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public int getSuccesses() {
+            return successes;
+        }
+
+        /**
+         * @return moving average of the time to IP address, ms; 0 if there were no successful attempts.
+         */
+        public long getTimeToIp() {
+            return timeToIp;
+        }
+
+        @Override
+        public String toString() {
+            return successes + "/" + attempts + "; timeToIp: " + timeToIp + " ms";
+        }
+    }
+
+    private final Map<String, Stats> stats = new LinkedHashMap<String, Stats>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Stats> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private static String key(String ssid) {
+        return ssid.toLowerCase(Locale.ROOT);
+    }
+
+    private Stats getOrCreate(String ssid) {
+        Stats result = stats.get(key(ssid));
+        if (result == null) {
+            result = new Stats();
+            stats.put(key(ssid), result);
+        }
+        return result;
+    }
+
+    /**
+     * @param timeToIp time from the connection start to getting the IP address, ms.
+     */
+    public void recordSuccess(String ssid, long timeToIp) {
+        Stats entry = getOrCreate(ssid);
+        entry.attempts++;
+        entry.successes++;
+        if (timeToIp > 0)
+            entry.timeToIp = entry.timeToIp == 0 ? timeToIp : Math.round(entry.timeToIp + TIME_TO_IP_ALPHA * (timeToIp - entry.timeToIp));
+    }
+
+    public void recordFailure(String ssid) {
+        getOrCreate(ssid).attempts++;
+    }
+
+    /**
+     * @return statistics of the network, null if there were no attempts.
+     */
+    public Stats get(String ssid) {
+        return ssid != null ? stats.get(key(ssid)) : null;
+    }
+
+    public int size() {
+        return stats.size();
+    }
+}
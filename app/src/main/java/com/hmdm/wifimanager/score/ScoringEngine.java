@@ -0,0 +1,102 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.score;
+
+import com.hmdm.wifimanager.model.WiFiItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Ranks the access points to choose the best one for the connection.
+ * The order is deterministic: equal scores are ordered by SSID, then by BSSID.
+ */
+public class ScoringEngine {
+    /**
+     * Rated access point.
+     */
+    public static final class Score {
+        private final WiFiItem accessPoint;
+        private final double value;
+
+        Score(WiFiItem accessPoint, double value) {
+            this.accessPoint = accessPoint;
+            this.value = value;
+        }
+
+        public WiFiItem getAccessPoint() {
+            return accessPoint;
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s (%s): %.3f", accessPoint.getSSID(), accessPoint.getBSSID(), value);
+        }
+    }
+
+    private static final Comparator<Score> ORDER = new Comparator<Score>() {
+        @Override
+        public int compare(Score o1, Score o2) {
+            int result = Double.compare(o2.value, o1.value);
+            if (result == 0)
+                result = o1.accessPoint.getSSID().compareTo(o2.accessPoint.getSSID());
+            if (result == 0)
+                result = Long.compare(o1.accessPoint.getBssidKey(), o2.accessPoint.getBssidKey());
+            return result;
+        }
+    };
+
+    private final ApScorer scorer;
+    private final ConnectionHistory history;
+
+    public ScoringEngine(ApScorer scorer, ConnectionHistory history) {
+        this.scorer = scorer;
+        this.history = history;
+    }
+
+    public double score(WiFiItem accessPoint) {
+        return scorer.score(accessPoint, history.get(accessPoint.getSSID()));
+    }
+
+    /**
+     * @param accessPoints candidates; a network with several access points is represented by the best one.
+     * @return candidates, the best first.
+     */
+    public List<Score> rank(List<WiFiItem> accessPoints) {
+        List<Score> result = new ArrayList<>(accessPoints.size());
+        for (WiFiItem accessPoint : accessPoints)
+            result.add(new Score(accessPoint, score(accessPoint)));
+        Collections.sort(result, ORDER);
+        return result;
+    }
+
+    public ConnectionHistory getHistory() {
+        return history;
+    }
+}
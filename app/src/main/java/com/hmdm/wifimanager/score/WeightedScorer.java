@@ -0,0 +1,93 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.score;
+
+import com.hmdm.wifimanager.model.Capabilities;
+import com.hmdm.wifimanager.model.ScoringWeights;
+import com.hmdm.wifimanager.model.WiFiItem;
+
+/**
+ * Weighted sum of the signal level, band, security, connection success rate and time to IP address,
+ * each rated from 0 to 1. Unknown history is rated 0.5.
+ */
+public class WeightedScorer implements ApScorer {
+    /**
+     * Signal levels rated 0 and 1, dBm.
+     */
+    public static final int MIN_RSSI = -90;
+    public static final int MAX_RSSI = -40;
+    /**
+     * Time to IP address rated 0, ms.
+     */
+    public static final long MAX_TIME_TO_IP = 10 * 1000;
+    private static final double UNKNOWN = 0.5;
+
+    private final ScoringWeights weights;
+
+    /**
+     * @param weights weights of the criteria, null for the defaults.
+     */
+    public WeightedScorer(ScoringWeights weights) {
+        this.weights = weights != null ? weights : new ScoringWeights();
+    }
+
+    @Override
+    public double score(WiFiItem accessPoint, ConnectionHistory.Stats stats) {
+        return weights.rssi * rateRssi(accessPoint)
+                + weights.band * rateBand(accessPoint)
+                + weights.security * rateSecurity(accessPoint)
+                + weights.success * rateSuccess(stats)
+                + weights.timeToIp * rateTimeToIp(stats);
+    }
+
+    static double rateRssi(WiFiItem accessPoint) {
+        // Hidden networks not found in the scan have no signal level
+        if (accessPoint.isHidden())
+            return 0;
+        int level = Math.max(MIN_RSSI, Math.min(MAX_RSSI, accessPoint.getLevel()));
+        return (double) (level - MIN_RSSI) / (MAX_RSSI - MIN_RSSI);
+    }
+
+    /**
+     * 5 and 6 GHz bands are wider and less crowded than 2.4 GHz.
+     */
+    static double rateBand(WiFiItem accessPoint) {
+        return accessPoint.getFrequency() >= 4900 ? 1 : 0;
+    }
+
+    static double rateSecurity(WiFiItem accessPoint) {
+        return (double) accessPoint.getSecurityDescriptor().getSecurityLevel() / Capabilities.SECURITY_WPA3;
+    }
+
+    static double rateSuccess(ConnectionHistory.Stats stats) {
+        if (stats == null)
+            return UNKNOWN;
+        // Laplace smoothing: a single failure doesn't rule the network out
+        return (stats.getSuccesses() + 1.0) / (stats.getAttempts() + 2.0);
+    }
+
+    static double rateTimeToIp(ConnectionHistory.Stats stats) {
+        if (stats == null || stats.getTimeToIp() <= 0)
+            return UNKNOWN;
+        return 1 - (double) Math.min(stats.getTimeToIp(), MAX_TIME_TO_IP) / MAX_TIME_TO_IP;
+    }
+}
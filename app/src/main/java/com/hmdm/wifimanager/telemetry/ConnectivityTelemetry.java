@@ -0,0 +1,221 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.telemetry;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Latency of the connectivity pipeline, in total and by network (SSID, case insensitive).
+ * Recording doesn't allocate, except for the first record of a network. Thread safe.
+ */
+public class ConnectivityTelemetry {
+    public enum Stage {
+        /**
+         * From the scan request to the results.
+         */
+        SCAN,
+        /**
+         * From the scanning results to the decision to connect.
+         */
+        DECISION,
+        /**
+         * enableNetwork() call.
+         */
+        ENABLE,
+        /**
+         * From the start of the attempt to the completed key handshake (supplicant COMPLETED).
+         */
+        ASSOCIATION,
+        /**
+         * From the completed handshake to the connected network (getting the IP address).
+         */
+        OBTAINING_IP,
+        /**
+         * From the start of the attempt to the connected network.
+         */
+        CONNECT,
+        /**
+         * Time without connection: from the lost connection to the next one.
+         */
+        DISCONNECTED,
+        /**
+         * From the connection to the disallowed network to the disconnection by the app.
+         */
+        ENFORCEMENT
+    }
+
+    public static final int MAX_NETWORKS = 64;
+
+    private static final Stage[] STAGES = Stage.values();
+
+    private static LatencyHistogram[] createHistograms() {
+        LatencyHistogram[] result = new LatencyHistogram[STAGES.length];
+        for (int i = 0; i < result.length; i++)
+            result[i] = new LatencyHistogram();
+        return result;
+    }
+
+    /**
+     * SSID compared case insensitively without case folding the string.
+     */
+    private static final class Key {
+        private String ssid;
+        private int hash;
+
+        Key set(String ssid) {
+            this.ssid = ssid;
+            int h = 0;
+            for (int i = 0; i < ssid.length(); i++)
+                h = 31 * h + Character.toLowerCase(Character.toUpperCase(ssid.charAt(i)));
+            hash = h;
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ssid.equalsIgnoreCase(((Key) o).ssid);
+        }
+    }
+
+    private final LatencyHistogram[] total = createHistograms();
+    private final Map<Key, LatencyHistogram[]> networks = new LinkedHashMap<Key, LatencyHistogram[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, LatencyHistogram[]> eldest) {
+            return size() > MAX_NETWORKS;
+        }
+    };
+    /**
+     * Reused for the lookups, guarded by this.
+     */
+    private final Key probe = new Key();
+
+    /**
+     * @param ssid network, null if the stage isn't related to a network.
+     * @param duration ms.
+     */
+    public synchronized void record(Stage stage, String ssid, long duration) {
+        total[stage.ordinal()].record(duration);
+        if (ssid == null || ssid.isEmpty())
+            return;
+        LatencyHistogram[] histograms = networks.get(probe.set(ssid));
+        if (histograms == null) {
+            histograms = createHistograms();
+            networks.put(new Key().set(ssid), histograms);
+        }
+        histograms[stage.ordinal()].record(duration);
+    }
+
+    /**
+     * @return copy of the histograms.
+     */
+    public synchronized Snapshot getSnapshot() {
+        Map<String, LatencyHistogram[]> copies = new LinkedHashMap<>();
+        for (Map.Entry<Key, LatencyHistogram[]> entry : networks.entrySet())
+            copies.put(entry.getKey().ssid.toLowerCase(Locale.ROOT), copy(entry.getValue()));
+        return new Snapshot(copy(total), copies);
+    }
+
+    private static LatencyHistogram[] copy(LatencyHistogram[] histograms) {
+        LatencyHistogram[] result = createHistograms();
+        for (int i = 0; i < histograms.length; i++)
+            histograms[i].copyTo(result[i]);
+        return result;
+    }
+
+    public synchronized void clear() {
+        for (LatencyHistogram histogram : total)
+            histogram.clear();
+        networks.clear();
+    }
+
+    /**
+     * Histograms at the moment of the snapshot.
+     */
+    public static final class Snapshot {
+        private final LatencyHistogram[] total;
+        private final Map<String, LatencyHistogram[]> networks;
+
+        Snapshot(LatencyHistogram[] total, Map<String, LatencyHistogram[]> networks) {
+            this.total = total;
+            this.networks = networks;
+        }
+
+        public LatencyHistogram get(Stage stage) {
+            return total[stage.ordinal()];
+        }
+
+        /**
+         * @return histogram of the network, null if nothing was recorded for it.
+         */
+        public LatencyHistogram get(Stage stage, String ssid) {
+            LatencyHistogram[] histograms = ssid != null ? networks.get(ssid.toLowerCase(Locale.ROOT)) : null;
+            return histograms != null ? histograms[stage.ordinal()] : null;
+        }
+
+        /**
+         * @return networks having the records (lower case SSIDs), the most recently used last.
+         */
+        public Iterable<String> getNetworks() {
+            return Collections.unmodifiableSet(networks.keySet());
+        }
+
+        /**
+         * @return summary of the network for the logs, empty if nothing was recorded for it.
+         */
+        public String format(String ssid) {
+            LatencyHistogram[] histograms = ssid != null ? networks.get(ssid.toLowerCase(Locale.ROOT)) : null;
+            return histograms != null ? format(histograms) : "";
+        }
+
+        private static String format(LatencyHistogram[] histograms) {
+            StringBuilder result = new StringBuilder();
+            for (Stage stage : STAGES) {
+                LatencyHistogram histogram = histograms[stage.ordinal()];
+                if (histogram.getCount() == 0)
+                    continue;
+                if (result.length() > 0)
+                    result.append("; ");
+                result.append(stage).append(": ").append(histogram);
+            }
+            return result.toString();
+        }
+
+        /**
+         * @return summary for the logs: the totals, then the networks.
+         */
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder("total: {").append(format(total)).append('}');
+            for (Map.Entry<String, LatencyHistogram[]> entry : networks.entrySet())
+                result.append("; ").append(entry.getKey()).append(": {").append(format(entry.getValue())).append('}');
+            return result.toString();
+        }
+    }
+}
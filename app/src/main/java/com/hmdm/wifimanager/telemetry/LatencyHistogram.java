@@ -0,0 +1,129 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.telemetry;
+
+import java.util.Locale;
+
+/**
+ * Histogram of durations with fixed buckets. Recording doesn't allocate.
+ */
+public class LatencyHistogram {
+    /**
+     * Upper bounds of the buckets, ms. The last bucket holds the longer durations.
+     */
+    private static final long[] BOUNDS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 300000};
+
+    private final long[] buckets = new long[BOUNDS.length + 1];
+    private long count;
+    private long sum;
+    private long max;
+
+    /**
+     * @param duration duration, ms; negative values are ignored.
+     */
+    public void record(long duration) {
+        if (duration < 0)
+            return;
+        int bucket = 0;
+        while (bucket < BOUNDS.length && duration > BOUNDS[bucket])
+            bucket++;
+        buckets[bucket]++;
+        count++;
+        sum += duration;
+        if (duration > max)
+            max = duration;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getMean() {
+        return count > 0 ? sum / count : 0;
+    }
+
+    /**
+     * @return number of the buckets.
+     */
+    public static int getBucketCount() {
+        return BOUNDS.length + 1;
+    }
+
+    /**
+     * @return upper bound of the bucket, ms; Long.MAX_VALUE for the last bucket.
+     */
+    public static long getBucketBound(int bucket) {
+        return bucket < BOUNDS.length ? BOUNDS[bucket] : Long.MAX_VALUE;
+    }
+
+    public long getBucket(int bucket) {
+        return buckets[bucket];
+    }
+
+    /**
+     * @param percentile from 0 to 100.
+     * @return upper bound of the bucket holding the percentile (the maximum for the last bucket), 0 if empty.
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0)
+            return 0;
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0)
+                return Math.min(BOUNDS[i], max);
+        }
+        return max;
+    }
+
+    public void copyTo(LatencyHistogram other) {
+        System.arraycopy(buckets, 0, other.buckets, 0, buckets.length);
+        other.count = count;
+        other.sum = sum;
+        other.max = max;
+    }
+
+    public void clear() {
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] = 0;
+        count = 0;
+        sum = 0;
+        max = 0;
+    }
+
+    @Override
+    public String toString() {
+        if (count == 0)
+            return "n=0";
+        return String.format(Locale.US, "n=%d, mean %d ms, p50 %d ms, p90 %d ms, max %d ms",
+                count, getMean(), getPercentile(50), getPercentile(90), max);
+    }
+}
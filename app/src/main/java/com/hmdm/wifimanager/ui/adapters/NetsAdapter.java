@@ -21,6 +21,7 @@
 
 package com.hmdm.wifimanager.ui.adapters;
 
+import android.content.res.Resources;
 import android.net.NetworkInfo;
 import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
@@ -32,21 +33,37 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.hmdm.wifimanager.Presenter;
 import com.hmdm.wifimanager.R;
 import com.hmdm.wifimanager.Utils;
+import com.hmdm.wifimanager.WiFiSnapshot;
 import com.hmdm.wifimanager.model.WiFiItem;
 
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 
-public class NetsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
+/**
+ * List of the networks. The rows are keyed by SSID; the differences between the lists
+ * are calculated in background, so unchanged rows are not rebound.
+ */
+public class NetsAdapter extends ListAdapter<WiFiItem, RecyclerView.ViewHolder> {
     private final static int NO_ITEMS = 0;
     private final static int HAS_ITEMS = 1;
+    /**
+     * Stable id of the "no items" row, the networks get ids starting from 1.
+     */
+    private final static long NO_ITEMS_ID = 0;
 
     private final static int[] SIGNALS = {R.drawable.ic_signal_0, R.drawable.ic_signal_1, R.drawable.ic_signal_2,
             R.drawable.ic_signal_3, R.drawable.ic_signal_4};
@@ -58,6 +75,51 @@ public class NetsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         void onNetClick(WiFiItem item);
     }
 
+    /**
+     * Partial rebinding of a row, the payloads are combined as bit flags.
+     */
+    private final static int PAYLOAD_SIGNAL = 1;
+    private final static int PAYLOAD_ACTIVE = 2;
+    private final static int PAYLOAD_ALLOWED = 4;
+
+    /**
+     * A network is identified by its SSID. Unchanged networks keep their items between the scans,
+     * so in most cases the contents are compared by identity.
+     */
+    private final static DiffUtil.ItemCallback<WiFiItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<WiFiItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull WiFiItem oldItem, @NonNull WiFiItem newItem) {
+            return oldItem.getSSID().equals(newItem.getSSID());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull WiFiItem oldItem, @NonNull WiFiItem newItem) {
+            return oldItem == newItem
+                    || (getSignalLevel(oldItem) == getSignalLevel(newItem)
+                    && oldItem.isAllowed() == newItem.isAllowed()
+                    && oldItem.hasEncryption() == newItem.hasEncryption());
+        }
+
+        @Nullable
+        @Override
+        public Object getChangePayload(@NonNull WiFiItem oldItem, @NonNull WiFiItem newItem) {
+            // Other changes require the full binding
+            if (oldItem.hasEncryption() != newItem.hasEncryption())
+                return null;
+
+            int payload = 0;
+            if (getSignalLevel(oldItem) != getSignalLevel(newItem))
+                payload |= PAYLOAD_SIGNAL;
+            if (oldItem.isAllowed() != newItem.isAllowed())
+                payload |= PAYLOAD_ALLOWED;
+            return payload != 0 ? payload : null;
+        }
+    };
+
+    private static int getSignalLevel(WiFiItem item) {
+        return WifiManager.calculateSignalLevel(item.getLevel(), SIGNALS.length);
+    }
+
     class WiFiViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
         LinearLayout root;
         @BindView(R.id.name) TextView name;
@@ -66,59 +128,84 @@ public class NetsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         @BindView(R.id.lock) ImageView lock;
         @BindView(R.id.banned) ImageView banned;
 
+        private final int colorActive;
+        private final int colorName;
+        private final int colorState;
+        private final String textConnected;
+        private final String textProtected;
+        private final String textOpen;
+
+        private WiFiItem item;
+        private boolean active;
+
         public WiFiViewHolder(@NonNull View itemView) {
             super(itemView);
             ButterKnife.bind(this, itemView);
             root = (LinearLayout)itemView;
+            root.setOnClickListener(this);
+
+            Resources resources = itemView.getResources();
+            colorActive = resources.getColor(R.color.color1);
+            colorName = resources.getColor(android.R.color.black);
+            colorState = resources.getColor(R.color.color4);
+            textConnected = resources.getString(R.string.connected);
+            textProtected = resources.getString(R.string.have_protection);
+            textOpen = resources.getString(R.string.no_protection);
         }
 
         public void onBindViewHolder(int position) {
-            if (!items.get(position).isAllowed())
-                banned.setVisibility(View.VISIBLE);
-            else
-                banned.setVisibility(View.GONE);
-
-            boolean isActive = connectionInfo != null && Utils.unquote(connectionInfo.getSSID()) != null
-                    && Utils.unquote(connectionInfo.getSSID()).equals(items.get(position).getSSID())
-                    && connectedState != NetworkInfo.State.DISCONNECTED
-                    && connectedState != NetworkInfo.State.SUSPENDED && connectedState != NetworkInfo.State.UNKNOWN;
+            item = getItem(position);
+            active = item.getSSID().equals(activeSsid);
 
-            if (isActive) {
-                name.setTextColor(name.getContext().getResources().getColor(R.color.color1));
-                state.setTextColor(state.getContext().getResources().getColor(R.color.color1));
-
-                signal.setImageResource(SIGNALS_ACTIVE[WifiManager.calculateSignalLevel(items.get(position).getLevel(), SIGNALS_ACTIVE.length)]);
-            }
-            else {
-                name.setTextColor(name.getContext().getResources().getColor(android.R.color.black));
-                state.setTextColor(state.getContext().getResources().getColor(R.color.color4));
+            name.setText(item.getSSID());
+            lock.setVisibility(item.hasEncryption() ? View.VISIBLE : View.GONE);
+            bindAllowed();
+            bindActive();
+        }
 
-                signal.setImageResource(SIGNALS[WifiManager.calculateSignalLevel(items.get(position).getLevel(), SIGNALS.length)]);
+        /**
+         * Rebinds the changed parts of the row.
+         * @param payload combination of the PAYLOAD_* flags.
+         */
+        public void onBindViewHolder(int position, int payload) {
+            item = getItem(position);
+            if ((payload & PAYLOAD_ALLOWED) != 0)
+                bindAllowed();
+            if ((payload & PAYLOAD_ACTIVE) != 0) {
+                boolean newActive = item.getSSID().equals(activeSsid);
+                if (newActive != active) {
+                    active = newActive;
+                    // The signal icon depends on the active state
+                    bindActive();
+                    return;
+                }
             }
+            if ((payload & PAYLOAD_SIGNAL) != 0)
+                bindSignal();
+        }
 
-            name.setText(items.get(position).getSSID());
-
-            boolean hasEncryption = items.get(position).hasEncryption();
-            if (isActive)
-                state.setText(state.getResources().getString(R.string.connected));
-            else {
-                state.setText(hasEncryption ? state.getResources().getString(R.string.have_protection)
-                        : state.getResources().getString(R.string.no_protection));
-            }
+        private void bindAllowed() {
+            banned.setVisibility(item.isAllowed() ? View.GONE : View.VISIBLE);
+        }
 
-            lock.setVisibility(hasEncryption ? View.VISIBLE : View.GONE);
+        private void bindActive() {
+            name.setTextColor(active ? colorActive : colorName);
+            state.setTextColor(active ? colorActive : colorState);
+            if (active)
+                state.setText(textConnected);
+            else
+                state.setText(item.hasEncryption() ? textProtected : textOpen);
+            bindSignal();
+        }
 
-            root.setOnClickListener(new View.OnClickListener() {
-                @Override
-                public void onClick(View v) {
-                    if (iNetsAdapter != null ) iNetsAdapter.onNetClick(items.get(getAdapterPosition()));
-                }
-            });
+        private void bindSignal() {
+            signal.setImageResource(active ? SIGNALS_ACTIVE[getSignalLevel(item)] : SIGNALS[getSignalLevel(item)]);
         }
 
         @Override
         public void onClick(View v) {
-            if (iNetsAdapter != null) iNetsAdapter.onNetClick(items.get(getAdapterPosition()));
+            int position = getAdapterPosition();
+            if (iNetsAdapter != null && position != RecyclerView.NO_POSITION) iNetsAdapter.onNetClick(getItem(position));
         }
     }
 
@@ -128,39 +215,89 @@ public class NetsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         }
     }
 
-    private ArrayList<WiFiItem> items = new ArrayList<>();
-    private WifiInfo connectionInfo;
-    private NetworkInfo.State connectedState;
+    /**
+     * SSID of the active connection, null if not connected.
+     */
+    private String activeSsid;
+    /**
+     * Ids of the networks in the current list, the ids of the gone networks are dropped.
+     */
+    private final Map<String, Long> stableIds = new HashMap<>();
+    private long nextStableId = NO_ITEMS_ID + 1;
     private INetsAdapter iNetsAdapter;
 
-    public NetsAdapter(ArrayList<WiFiItem> items) {
-        this.items = items;
-        connectionInfo = Presenter.getInstance().getConnectionInfo();
-        connectedState = Presenter.getInstance().getConnectedState();
+    public NetsAdapter(List<WiFiItem> items) {
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
+        WiFiSnapshot snapshot = Presenter.getInstance().getSnapshot();
+        activeSsid = getActiveSsid(snapshot.getConnectionInfo(), snapshot.getConnectedState());
+        submitList(items);
     }
 
     public void setiNetsAdapter(INetsAdapter iNetsAdapter) {
         this.iNetsAdapter = iNetsAdapter;
     }
 
-    public void update(ArrayList<WiFiItem> items) {
-        this.items = items;
-        notifyDataSetChanged();
+    /**
+     * Refreshes the connection state: only the rows of the previous and the new active network are rebound.
+     */
+    public void update(WifiInfo connectionInfo, NetworkInfo.State connectedState) {
+        String newActiveSsid = getActiveSsid(connectionInfo, connectedState);
+        if (newActiveSsid == null ? activeSsid == null : newActiveSsid.equals(activeSsid))
+            return;
+
+        String oldActiveSsid = activeSsid;
+        activeSsid = newActiveSsid;
+        List<WiFiItem> items = getCurrentList();
+        for (int i = 0; i < items.size(); i++) {
+            WiFiItem item = items.get(i);
+            if (item != null && (item.getSSID().equals(oldActiveSsid) || item.getSSID().equals(newActiveSsid)))
+                notifyItemChanged(i, PAYLOAD_ACTIVE);
+        }
     }
 
-    public void update(WifiInfo connectionInfo, NetworkInfo.State connectedState) {
-        this.connectionInfo = connectionInfo;
-        this.connectedState = connectedState;
-        notifyDataSetChanged();
+    @Nullable
+    private static String getActiveSsid(WifiInfo connectionInfo, NetworkInfo.State connectedState) {
+        if (connectionInfo == null || connectedState == NetworkInfo.State.DISCONNECTED
+                || connectedState == NetworkInfo.State.SUSPENDED || connectedState == NetworkInfo.State.UNKNOWN)
+            return null;
+        return Utils.unquote(connectionInfo.getSSID());
     }
 
     @Override
     public int getItemViewType(int position) {
-        if (items.size() == 1 && items.get(0) == null)
+        if (getItemCount() == 1 && getItem(0) == null)
             return NO_ITEMS;
         return HAS_ITEMS;
     }
 
+    @Override
+    public long getItemId(int position) {
+        WiFiItem item = getItem(position);
+        if (item == null)
+            return NO_ITEMS_ID;
+        Long id = stableIds.get(item.getSSID());
+        if (id == null) {
+            id = nextStableId++;
+            stableIds.put(item.getSSID(), id);
+        }
+        return id;
+    }
+
+    @Override
+    public void onCurrentListChanged(@NonNull List<WiFiItem> previousList, @NonNull List<WiFiItem> currentList) {
+        super.onCurrentListChanged(previousList, currentList);
+        if (stableIds.isEmpty())
+            return;
+
+        Set<String> current = new HashSet<>(currentList.size());
+        for (WiFiItem item : currentList) {
+            if (item != null)
+                current.add(item.getSSID());
+        }
+        stableIds.keySet().retainAll(current);
+    }
+
     @NonNull
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -179,7 +316,21 @@ public class NetsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
     }
 
     @Override
-    public int getItemCount() {
-        return items.size();
+    public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!(holder instanceof WiFiViewHolder))
+            return;
+
+        int payload = 0;
+        for (Object value : payloads) {
+            if (!(value instanceof Integer)) {
+                payload = 0;
+                break;
+            }
+            payload |= (Integer) value;
+        }
+        if (payloads.isEmpty() || payload == 0)
+            onBindViewHolder(holder, position);
+        else
+            ((WiFiViewHolder)holder).onBindViewHolder(position, payload);
     }
 }
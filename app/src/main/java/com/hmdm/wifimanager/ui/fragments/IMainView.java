@@ -24,9 +24,12 @@ package com.hmdm.wifimanager.ui.fragments;
 import android.net.NetworkInfo;
 import android.net.wifi.WifiInfo;
 
+import androidx.annotation.Nullable;
+
 import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.scan.ScanDelta;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Interface for MainFragment events.
@@ -40,9 +43,10 @@ public interface IMainView {
 
     /**
      * Refresh the network scanning results.
-     * @param items
+     * @param items displayed items (unmodifiable).
+     * @param delta changes since the previous scan, null if the whole list should be refreshed.
      */
-    void onScanComplete(ArrayList<WiFiItem> items);
+    void onScanComplete(List<WiFiItem> items, @Nullable ScanDelta delta);
 
     /**
      * Refresh the connection parameters.
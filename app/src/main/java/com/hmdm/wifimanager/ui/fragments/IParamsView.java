@@ -24,7 +24,10 @@ package com.hmdm.wifimanager.ui.fragments;
 import android.net.NetworkInfo;
 import android.net.wifi.WifiInfo;
 
+import androidx.annotation.Nullable;
+
 import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.scan.ScanDelta;
 
 import java.util.Map;
 
@@ -35,10 +38,11 @@ public interface IParamsView {
     /**
      * Refresh of scan results and connection parameters.
      * @param lastScan
+     * @param delta changes since the previous scan, null if not caused by a scan.
      * @param connectionInfo
      * @param connectedState
      */
-    void onParamsResults(Map<String, WiFiItem> lastScan, WifiInfo connectionInfo, NetworkInfo.State connectedState);
+    void onParamsResults(Map<String, WiFiItem> lastScan, @Nullable ScanDelta delta, WifiInfo connectionInfo, NetworkInfo.State connectedState);
 
     /**
      * Connection error.
@@ -41,11 +41,12 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.hmdm.MDMService;
 import com.hmdm.wifimanager.R;
 import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.scan.ScanDelta;
 import com.hmdm.wifimanager.Presenter;
 import com.hmdm.wifimanager.ui.activities.MainActivity;
 import com.hmdm.wifimanager.ui.adapters.NetsAdapter;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
@@ -114,8 +115,8 @@ public class MainFragment extends Fragment implements IMainView,
     }
 
     @Override
-    public void onScanComplete(ArrayList<WiFiItem> items) {
-        MDMService.Log.d(TAG, "onScanComplete(); items: " + items.size());
+    public void onScanComplete(List<WiFiItem> items, @Nullable ScanDelta delta) {
+        MDMService.Log.d(TAG, "onScanComplete(); items: " + items.size() + (delta != null ? "; " + delta : ""));
 
         if (adapter == null) {
             adapter = new NetsAdapter(items);
@@ -124,7 +125,7 @@ public class MainFragment extends Fragment implements IMainView,
             recycler.setAdapter(adapter);
         }
         else
-            adapter.update(items);
+            adapter.submitList(items);
     }
 
     @Override
@@ -51,8 +51,10 @@ import com.hmdm.wifimanager.BuildConfig;
 import com.hmdm.wifimanager.Presenter;
 import com.hmdm.wifimanager.R;
 import com.hmdm.wifimanager.Utils;
+import com.hmdm.wifimanager.WiFiSnapshot;
 import com.hmdm.wifimanager.model.Capabilities;
 import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.scan.ScanDelta;
 
 import java.util.Locale;
 import java.util.Map;
@@ -63,6 +65,7 @@ import butterknife.ButterKnife;
 public class ParamsFragment extends Fragment implements IParamsView, View.OnClickListener {
     private final static String TAG = "HeadwindWiFi";
     private WiFiItem item;
+    private NetworkInfo.State lastConnectedState;
 
     @BindView(R.id.titleLevel) TextView titleLevel;
     @BindView(R.id.level) TextView level;
@@ -110,8 +113,10 @@ public class ParamsFragment extends Fragment implements IParamsView, View.OnClic
 
         Presenter.getInstance().setiParamsView(this);
 
-        updateUI(Presenter.getInstance().getLastScanSSIDMap() == null ? null : Presenter.getInstance().getLastScanSSIDMap().get(item.getSSID()),
-                Presenter.getInstance().getConnectionInfo(), Presenter.getInstance().getConnectedState());
+        WiFiSnapshot snapshot = Presenter.getInstance().getSnapshot();
+        lastConnectedState = snapshot.getConnectedState();
+        updateUI(snapshot.getSsidMap() == null ? null : snapshot.getSsidMap().get(item.getSSID()),
+                snapshot.getConnectionInfo(), lastConnectedState);
 
         passwordVisibility.setOnClickListener(this);
         action.setOnClickListener(this);
@@ -213,10 +218,15 @@ public class ParamsFragment extends Fragment implements IParamsView, View.OnClic
     }
 
     @Override
-    public void onParamsResults(Map<String, WiFiItem> lastScan, WifiInfo connectionInfo, NetworkInfo.State connectedState) {
+    public void onParamsResults(Map<String, WiFiItem> lastScan, @Nullable ScanDelta delta, WifiInfo connectionInfo, NetworkInfo.State connectedState) {
         MDMService.Log.d(TAG, "onParamsResults(); lastScan: " + lastScan.size() + "; connectionInfo: " + (connectionInfo == null ? "null" : connectionInfo.toString())
                 + "; connectedState: " + (connectedState == null ? "null" : connectedState.toString()));
 
+        // Skip the scans which haven't changed this network
+        if (delta != null && !delta.affects(item.getSSID()) && connectedState == lastConnectedState)
+            return;
+        lastConnectedState = connectedState;
+
         updateUI(lastScan.get(item.getSSID()), connectionInfo, connectedState);
     }
 
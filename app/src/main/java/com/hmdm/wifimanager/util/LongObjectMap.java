@@ -0,0 +1,206 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map with primitive long keys.
+ * Entries are stored densely in insertion order (until removed), so they can be iterated
+ * by index without allocation: {@link #keyAt(int)}, {@link #valueAt(int)}.
+ * Not thread safe.
+ */
+public class LongObjectMap<V> {
+    /**
+     * Slots of the hash table: 0 if empty, otherwise entry index + 1.
+     */
+    private int[] table;
+    private int mask;
+    private long[] keys;
+    private Object[] values;
+    private int size;
+
+    public LongObjectMap() {
+        this(8);
+    }
+
+    public LongObjectMap(int expectedSize) {
+        int capacity = Math.max(expectedSize, 4);
+        keys = new long[capacity];
+        values = new Object[capacity];
+        table = new int[tableSize(capacity)];
+        mask = table.length - 1;
+    }
+
+    /**
+     * @return power of two keeping the load factor at most 0.5.
+     */
+    private static int tableSize(int capacity) {
+        int size = 8;
+        while (size < capacity * 2)
+            size <<= 1;
+        return size;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @return slot containing the key, or (-slot - 1) of the empty slot where it should be inserted.
+     */
+    private int slotOf(long key) {
+        int slot = hash(key) & mask;
+        while (true) {
+            int entry = table[slot];
+            if (entry == 0)
+                return -slot - 1;
+            if (keys[entry - 1] == key)
+                return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return slotOf(key) >= 0;
+    }
+
+    /**
+     * @return index of the entry with this key, or -1 if not found.
+     */
+    public int indexOfKey(long key) {
+        int slot = slotOf(key);
+        return slot >= 0 ? table[slot] - 1 : -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int slot = slotOf(key);
+        return slot >= 0 ? (V) values[table[slot] - 1] : null;
+    }
+
+    public long keyAt(int index) {
+        return keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V valueAt(int index) {
+        return (V) values[index];
+    }
+
+    /**
+     * @return previous value, or null if there was no entry with this key.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        int slot = slotOf(key);
+        if (slot >= 0) {
+            int index = table[slot] - 1;
+            V old = (V) values[index];
+            values[index] = value;
+            return old;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        if ((size + 1) * 2 > table.length) {
+            rehash(table.length * 2);
+            slot = slotOf(key);
+        }
+
+        table[-slot - 1] = size + 1;
+        keys[size] = key;
+        values[size] = value;
+        size++;
+        return null;
+    }
+
+    /**
+     * Removes the entry. The last entry takes the index of the removed one.
+     * @return removed value, or null if there was no entry with this key.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int slot = slotOf(key);
+        if (slot < 0)
+            return null;
+
+        int index = table[slot] - 1;
+        V old = (V) values[index];
+        deleteSlot(slot);
+
+        int last = size - 1;
+        if (index != last) {
+            table[slotOf(keys[last])] = index + 1;
+            keys[index] = keys[last];
+            values[index] = values[last];
+        }
+        values[last] = null;
+        size--;
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(table, 0);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Backward shift deletion: moves the following entries of the probe sequence into the gap.
+     */
+    private void deleteSlot(int slot) {
+        int gap = slot;
+        int next = (slot + 1) & mask;
+        while (table[next] != 0) {
+            int ideal = hash(keys[table[next] - 1]) & mask;
+            if (((next - ideal) & mask) >= ((next - gap) & mask)) {
+                table[gap] = table[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[gap] = 0;
+    }
+
+    private void rehash(int newSize) {
+        table = new int[newSize];
+        mask = newSize - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(keys[i]) & mask;
+            while (table[slot] != 0)
+                slot = (slot + 1) & mask;
+            table[slot] = i + 1;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.connect;
+
+import com.hmdm.wifimanager.model.WiFiItem;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class CandidateQueueTest {
+    private static CandidateQueue.Candidate candidate(String ssid, String bssid, int rank, double score) {
+        return new CandidateQueue.Candidate(new WiFiItem(ssid, bssid, "[WPA2-PSK-CCMP][ESS]", -60), rank, rank, score);
+    }
+
+    @Test
+    public void poll_byRankThenScore() {
+        CandidateQueue.Candidate backup = candidate("Backup", "00:00:00:00:00:01", 1, 0.9);
+        CandidateQueue.Candidate weak = candidate("Main", "00:00:00:00:00:02", 0, 0.3);
+        CandidateQueue.Candidate strong = candidate("Office", "00:00:00:00:00:03", 0, 0.7);
+        CandidateQueue queue = new CandidateQueue();
+        queue.reset(Arrays.asList(backup, weak, strong));
+
+        assertEquals(3, queue.size());
+        assertSame(strong, queue.poll());
+        assertSame(weak, queue.poll());
+        assertSame(backup, queue.poll());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void poll_deterministicTies() {
+        CandidateQueue.Candidate b = candidate("B", "00:00:00:00:00:01", 0, 0.5);
+        CandidateQueue.Candidate a2 = candidate("A", "00:00:00:00:00:03", 0, 0.5);
+        CandidateQueue.Candidate a1 = candidate("A", "00:00:00:00:00:02", 0, 0.5);
+        CandidateQueue queue = new CandidateQueue();
+        queue.reset(Arrays.asList(b, a2, a1));
+        assertSame(a1, queue.poll());
+        assertSame(a2, queue.poll());
+        assertSame(b, queue.poll());
+        assertTrue(a1.isBetterThan(b));
+        assertFalse(b.isBetterThan(a1));
+    }
+
+    @Test
+    public void reset_replacesRemaining() {
+        CandidateQueue queue = new CandidateQueue();
+        queue.reset(Arrays.asList(candidate("A", null, 0, 0.5), candidate("B", null, 0, 0.4)));
+        queue.poll();
+        assertEquals(1, queue.size());
+
+        CandidateQueue.Candidate c = candidate("C", null, 0, 0.1);
+        queue.reset(Collections.singletonList(c));
+        assertSame(c, queue.poll());
+
+        queue.reset(Collections.singletonList(c));
+        queue.clear();
+        assertNull(queue.poll());
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.connect;
+
+import android.net.wifi.WifiConfiguration;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.model.MDMConfig;
+import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.platform.ConfiguredNetworks;
+import com.hmdm.wifimanager.platform.FakeWifiPlatform;
+import com.hmdm.wifimanager.policy.KnownGoodCache;
+import com.hmdm.wifimanager.policy.PolicyHolder;
+import com.hmdm.wifimanager.policy.WiFiPolicy;
+import com.hmdm.wifimanager.scan.ScanIndex;
+import com.hmdm.wifimanager.score.ConnectionHistory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConnectionEngineTest {
+    private static final String CAPABILITIES = "[WPA2-PSK-CCMP][ESS]";
+    private static final String CORP_BSSID = "aa:bb:cc:dd:ee:01";
+    private static final String BACKUP_BSSID = "aa:bb:cc:dd:ee:02";
+
+    private final FakeWifiPlatform platform = new FakeWifiPlatform();
+    private final ConfiguredNetworks networks = new ConfiguredNetworks(platform);
+    private final PolicyHolder policies = new PolicyHolder();
+    private final Map<String, String> saved = new HashMap<>();
+    private final List<String> errors = new ArrayList<>();
+    private int provisionings;
+    private long time = 1000000;
+
+    private final ConnectionEngine engine = new ConnectionEngine(platform, networks, policies, new ConnectionHistory(),
+            storage(), clock(), new ConnectionEngine.Listener() {
+                @Override
+                public boolean onProvisioningNeeded(WiFiPolicy policy) {
+                    provisionings++;
+                    return false;
+                }
+
+                @Override
+                public void onCandidateChosen(CandidateQueue.Candidate candidate) {
+                }
+
+                @Override
+                public void onConnectionStarted(String ssid, long enableTime) {
+                }
+
+                @Override
+                public void onConnectionError(int error, String ssid) {
+                    errors.add(ssid);
+                }
+            });
+
+    private ConnectionEngine.Storage storage() {
+        return new ConnectionEngine.Storage() {
+            @Override
+            public String load(String key) {
+                return saved.get(key);
+            }
+
+            @Override
+            public void save(String key, String json) {
+                saved.put(key, json);
+            }
+        };
+    }
+
+    private ConnectionEngine.Clock clock() {
+        return new ConnectionEngine.Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return time;
+            }
+
+            @Override
+            public long elapsedRealtime() {
+                return time;
+            }
+        };
+    }
+
+    /**
+     * @param listedOnly true for the LISTED_ONLY mode, false for PROTECTED_OR_LISTED.
+     */
+    private static MDMConfig config(boolean listedOnly, AllowedItem... items) {
+        MDMConfig config = new MDMConfig();
+        config.allAllowed = !listedOnly;
+        config.freeAllowed = false;
+        config.allowed.addAll(Arrays.asList(items));
+        return config;
+    }
+
+    /**
+     * Allows Corp and Backup (in this order); both networks are saved and visible.
+     * The networks are saved in advance: the BitSet fields of WifiConfiguration are null
+     * in the mockable android.jar, so SecurityProfile.applyTo can't run in the JVM tests.
+     */
+    private void setUp(boolean listedOnly) {
+        policies.compile(config(listedOnly,
+                new AllowedItem("Corp", null, "secret123"),
+                new AllowedItem("Backup", null, "secret456")));
+        save("Corp");
+        save("Backup");
+        engine.setScan(ScanIndex.build(Arrays.asList(
+                new WiFiItem("Corp", CORP_BSSID, CAPABILITIES, -70),
+                new WiFiItem("Backup", BACKUP_BSSID, CAPABILITIES, -50)), null), true);
+    }
+
+    private void save(String ssid) {
+        WifiConfiguration config = new WifiConfiguration();
+        config.SSID = "\"" + ssid + "\"";
+        networks.add(config);
+    }
+
+    private int id(String ssid) {
+        WifiConfiguration config = networks.getBySsid(ssid);
+        return config != null ? config.networkId : -1;
+    }
+
+    private void timeout() {
+        time += ConnectionStateMachine.ASSOCIATING_TIMEOUT;
+        assertTrue(engine.getConnection().checkDeadline(time));
+        engine.onConnectionFailed(-1);
+    }
+
+    @Test
+    public void failedAttempt_failsOverToNextCandidate() {
+        setUp(true);
+        // Listed order wins over the signal level
+        assertTrue(engine.connectBest());
+        assertEquals(id("Corp"), platform.getEnabledNetworkId());
+        assertEquals("Corp", engine.getConnection().getSsid());
+
+        timeout();
+        assertEquals(id("Backup"), platform.getEnabledNetworkId());
+        assertEquals("Backup", engine.getConnection().getSsid());
+        assertEquals(Arrays.asList("\"Corp\""), errors);
+        assertTrue(saved.containsKey(ConnectionEngine.KEY_FAILURE_LEDGER));
+
+        // The failed network waits for the backoff
+        engine.cancel();
+        assertTrue(engine.connectBest());
+        assertEquals("Backup", engine.getConnection().getSsid());
+    }
+
+    @Test
+    public void timeout_keepsNetwork() {
+        setUp(true);
+        engine.connectBest();
+        timeout();
+        assertNotEquals(-1, id("Corp"));
+        assertFalse(policies.get().isWrong("Corp", null));
+    }
+
+    @Test
+    public void authenticationFailure_forgetsNetwork() {
+        setUp(true);
+        engine.connectBest();
+        int corp = id("Corp");
+        assertTrue(engine.getConnection().onDisconnected(true, time));
+        engine.onConnectionFailed(1);
+
+        assertEquals(-1, id("Corp"));
+        assertTrue(policies.get().isWrong("Corp", null));
+        assertNotEquals(corp, platform.getEnabledNetworkId());
+        assertEquals("Backup", engine.getConnection().getSsid());
+    }
+
+    @Test
+    public void wrongPassword_survivesRecompile() {
+        setUp(true);
+        engine.connectBest();
+        assertTrue(engine.getConnection().onDisconnected(true, time));
+        engine.onConnectionFailed(1);
+
+        // The same configuration is applied again, as on each resume of the app
+        MDMConfig config = config(true,
+                new AllowedItem("Corp", null, "secret123"),
+                new AllowedItem("Backup", null, "secret456"));
+        assertTrue(policies.compile(config, engine.getFailureLedger()).isWrong("Corp", null));
+        assertFalse(policies.get().isWrong("Backup", null));
+
+        // After the restart, the ledger is loaded from the storage
+        PolicyHolder restarted = new PolicyHolder();
+        ConnectionEngine other = new ConnectionEngine(platform, networks, restarted, new ConnectionHistory(),
+                storage(), clock(), null);
+        assertTrue(restarted.compile(config, other.getFailureLedger()).isWrong("Corp", null));
+    }
+
+    @Test
+    public void knownGood_pinsAccessPoint() {
+        setUp(false);
+        engine.rememberKnownGood("Corp", CORP_BSSID, 5180, CAPABILITIES);
+        assertTrue(saved.containsKey(ConnectionEngine.KEY_KNOWN_GOOD));
+
+        KnownGoodCache.Entry entry = engine.connectKnownGood();
+        assertNotNull(entry);
+        assertEquals("Corp", entry.getSsid());
+        assertEquals(id("Corp"), engine.getPinnedNetworkId());
+        assertEquals(id("Corp"), platform.getEnabledNetworkId());
+        assertEquals(CORP_BSSID, networks.getBySsid("Corp").BSSID);
+
+        // Connected: the network may roam again
+        engine.onConnected();
+        assertEquals(-1, engine.getPinnedNetworkId());
+        assertEquals("any", networks.getBySsid("Corp").BSSID);
+    }
+
+    @Test
+    public void knownGoodUnavailable_failsOverToScan() {
+        setUp(false);
+        engine.rememberKnownGood("Backup", BACKUP_BSSID, 2437, CAPABILITIES);
+        engine.connectKnownGood();
+        assertEquals(id("Backup"), engine.getPinnedNetworkId());
+
+        timeout();
+        assertEquals(-1, engine.getPinnedNetworkId());
+        assertEquals("any", networks.getBySsid("Backup").BSSID);
+        assertNull(engine.getKnownGood().get("Backup"));
+        assertNotEquals(-1, id("Backup"));
+        // The access point out of range is not an error of the network
+        assertTrue(errors.isEmpty());
+        assertTrue(engine.getConnection().isActive());
+    }
+
+    @Test
+    public void knownGood_skipsChangedCredentials() {
+        setUp(false);
+        engine.rememberKnownGood("Corp", CORP_BSSID, 5180, CAPABILITIES);
+
+        policies.compile(config(false, new AllowedItem("Corp", null, "changed")));
+        assertNull(engine.connectKnownGood());
+        assertFalse(engine.getConnection().isActive());
+    }
+
+    @Test
+    public void noCandidates_provisionsOnlyAfterNewNetworks() {
+        policies.compile(config(false, new AllowedItem("Corp", null, "secret123")));
+        ScanIndex scan = ScanIndex.build(Arrays.asList(new WiFiItem("Corp", CORP_BSSID, CAPABILITIES, -60)), null);
+
+        engine.setScan(scan, true);
+        assertFalse(engine.connectBest());
+        assertEquals(1, provisionings);
+        engine.setScan(scan, false);
+        assertFalse(engine.connectBest());
+        assertEquals(1, provisionings);
+        engine.setScan(scan, true);
+        assertFalse(engine.connectBest());
+        assertEquals(2, provisionings);
+    }
+}
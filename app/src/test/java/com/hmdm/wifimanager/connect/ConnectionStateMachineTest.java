@@ -0,0 +1,112 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.connect;
+
+import org.junit.Test;
+
+import static com.hmdm.wifimanager.connect.ConnectionStateMachine.State.*;
+import static org.junit.Assert.*;
+
+public class ConnectionStateMachineTest {
+    private static ConnectionStateMachine started(long now) {
+        ConnectionStateMachine machine = new ConnectionStateMachine();
+        machine.start(3, "Corp", "00:00:00:00:00:01", now);
+        return machine;
+    }
+
+    @Test
+    public void connect_recordsPhaseDurations() {
+        ConnectionStateMachine machine = started(1000);
+        assertEquals(ASSOCIATING, machine.getState());
+        assertEquals(1000 + ConnectionStateMachine.ASSOCIATING_TIMEOUT, machine.getDeadline());
+
+        assertTrue(machine.advance(AUTHENTICATING, 1300));
+        // Repeated and out of order states are ignored
+        assertFalse(machine.advance(AUTHENTICATING, 1400));
+        assertFalse(machine.advance(ASSOCIATING, 1500));
+        assertTrue(machine.advance(OBTAINING_IP, 1800));
+        assertEquals(1800 + ConnectionStateMachine.OBTAINING_IP_TIMEOUT, machine.getDeadline());
+
+        machine.onConnected(2500);
+        assertEquals(CONNECTED, machine.getState());
+        assertFalse(machine.isActive());
+        assertEquals(ConnectionStateMachine.NO_DEADLINE, machine.getDeadline());
+        assertEquals(300, machine.getDuration(ASSOCIATING));
+        assertEquals(500, machine.getDuration(AUTHENTICATING));
+        assertEquals(700, machine.getDuration(OBTAINING_IP));
+        assertEquals(1500, machine.getTotalDuration());
+        assertNull(machine.getFailure());
+    }
+
+    @Test
+    public void disconnected_beforeAssociationIgnored() {
+        ConnectionStateMachine machine = started(0);
+        // Late event of the previous connection
+        assertFalse(machine.onDisconnected(false, 100));
+        assertEquals(ASSOCIATING, machine.getState());
+
+        machine.advance(AUTHENTICATING, 200);
+        assertTrue(machine.onDisconnected(false, 900));
+        assertEquals(FAILED, machine.getState());
+        assertEquals(ConnectionStateMachine.Failure.DISCONNECTED, machine.getFailure());
+        assertEquals(AUTHENTICATING, machine.getFailedState());
+        assertEquals(700, machine.getDuration(AUTHENTICATING));
+    }
+
+    @Test
+    public void authenticationError_failsImmediately() {
+        ConnectionStateMachine machine = started(0);
+        assertTrue(machine.onDisconnected(true, 50));
+        assertEquals(ConnectionStateMachine.Failure.AUTHENTICATION, machine.getFailure());
+        assertEquals(ASSOCIATING, machine.getFailedState());
+        // Finished attempts ignore the events
+        assertFalse(machine.onDisconnected(true, 60));
+        assertFalse(machine.advance(OBTAINING_IP, 70));
+    }
+
+    @Test
+    public void deadline_abortsStuckPhase() {
+        ConnectionStateMachine machine = started(0);
+        machine.advance(AUTHENTICATING, 5000);
+        assertFalse(machine.checkDeadline(5000 + ConnectionStateMachine.AUTHENTICATING_TIMEOUT - 1));
+        assertTrue(machine.checkDeadline(5000 + ConnectionStateMachine.AUTHENTICATING_TIMEOUT));
+        assertEquals(ConnectionStateMachine.Failure.TIMEOUT, machine.getFailure());
+        assertEquals(AUTHENTICATING, machine.getFailedState());
+        assertEquals(5000 + ConnectionStateMachine.AUTHENTICATING_TIMEOUT, machine.getTotalDuration());
+    }
+
+    @Test
+    public void restart_dropsPreviousAttempt() {
+        ConnectionStateMachine machine = started(0);
+        machine.onDisconnected(true, 10);
+        machine.start(4, "Guest", null, 100);
+        assertEquals(ASSOCIATING, machine.getState());
+        assertEquals(4, machine.getNetworkId());
+        assertEquals("", machine.getBssid());
+        assertNull(machine.getFailure());
+        assertEquals(0, machine.getDuration(ASSOCIATING));
+
+        machine.reset();
+        assertEquals(IDLE, machine.getState());
+        assertFalse(machine.checkDeadline(Long.MAX_VALUE - 1));
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BssidTest {
+    @Test
+    public void parseAndFormat() {
+        long key = Bssid.parse("AA:bb:0C:dd-EE:0f");
+        assertEquals(0xaabb0cddee0fL, key);
+        assertEquals("aa:bb:0c:dd:ee:0f", Bssid.format(key));
+        assertEquals(Bssid.NONE, Bssid.parse(null));
+        assertEquals(Bssid.NONE, Bssid.parse(""));
+        assertEquals(Bssid.NONE, Bssid.parse("aa:bb:cc:dd:ee"));
+        assertEquals(Bssid.NONE, Bssid.parse("aa:bb:cc:dd:ee:gg"));
+        assertEquals(0L, Bssid.parse("00:00:00:00:00:00"));
+    }
+}
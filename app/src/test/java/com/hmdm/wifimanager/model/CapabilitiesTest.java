@@ -0,0 +1,118 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CapabilitiesTest {
+    @Test
+    public void parse_wpa2Psk() {
+        Capabilities capabilities = Capabilities.parse("[WPA2-PSK-CCMP][ESS][WPS]");
+        assertEquals(Capabilities.AuthMethod.WPA2, capabilities.getAuthMethod());
+        assertEquals(Capabilities.KeyManagementAlgorithm.PSK, capabilities.getKeyManagementAlgorithm());
+        assertEquals(Capabilities.ChiperMethod.CCMP, capabilities.getChiperMethod());
+        assertEquals(Capabilities.TopologyMode.ESS, capabilities.getTopologyMode());
+        assertTrue(capabilities.isWps());
+        assertFalse(capabilities.isOpen());
+        assertEquals("WPA2(PSK+CCMP)", capabilities.format());
+    }
+
+    @Test
+    public void parse_mixedCiphers() {
+        Capabilities capabilities = Capabilities.parse("[WPA-PSK-TKIP+CCMP][WPA2-PSK-TKIP+CCMP][ESS]");
+        assertEquals(Capabilities.AuthMethod.WPA, capabilities.getAuthMethod());
+        assertEquals(Capabilities.ChiperMethod.TKIP, capabilities.getChiperMethod());
+        assertTrue(capabilities.hasAuthMethod(Capabilities.AuthMethod.WPA2));
+        assertTrue(capabilities.hasChiper(Capabilities.ChiperMethod.CCMP));
+        assertFalse(capabilities.hasKeyManagement(Capabilities.KeyManagementAlgorithm.EAP));
+        assertEquals("WPA(PSK+TKIP)", capabilities.format());
+    }
+
+    @Test
+    public void parse_open() {
+        assertTrue(Capabilities.parse("[ESS]").isOpen());
+        assertTrue(Capabilities.parse("[IBSS]").isOpen());
+        assertEquals("OPEN", Capabilities.parse("[ESS]").format());
+        assertFalse(Capabilities.parse("").isOpen());
+        assertFalse(Capabilities.parse(null).isOpen());
+        assertEquals("", Capabilities.parse(null).format());
+    }
+
+    @Test
+    public void parse_openRoundTrip() {
+        Capabilities capabilities = Capabilities.parse("[ESS]");
+        assertEquals(Capabilities.AuthMethod.OPEN, capabilities.getAuthMethod());
+        assertEquals(Capabilities.KeyManagementAlgorithm.NONE, capabilities.getKeyManagementAlgorithm());
+        assertEquals(Capabilities.ChiperMethod.NONE, capabilities.getChiperMethod());
+
+        // Cipher without key management defaults to NONE
+        capabilities = Capabilities.parse("[WPA2-CCMP][ESS]");
+        assertEquals(Capabilities.KeyManagementAlgorithm.NONE, capabilities.getKeyManagementAlgorithm());
+        assertEquals("WPA2(CCMP)", capabilities.format());
+
+        // Key management not present in the token
+        assertNull(Capabilities.parse("[WPA2][ESS]").getKeyManagementAlgorithm());
+    }
+
+    @Test
+    public void parse_wep() {
+        Capabilities capabilities = Capabilities.parse("[WEP][ESS]");
+        assertEquals(Capabilities.KeyManagementAlgorithm.WEP, capabilities.getKeyManagementAlgorithm());
+        assertFalse(capabilities.isOpen());
+        assertEquals("OTHER(WEP+WEP)", capabilities.format());
+    }
+
+    @Test
+    public void parse_withoutChiper() {
+        assertEquals("WPA2(PSK)", Capabilities.parse("[WPA2-PSK]").format());
+        assertEquals("WPA2", Capabilities.parse("[WPA2]").format());
+    }
+
+    @Test
+    public void getSecurityLevel() {
+        assertEquals(Capabilities.SECURITY_NONE, Capabilities.parse("[ESS]").getSecurityLevel());
+        assertEquals(Capabilities.SECURITY_WEP, Capabilities.parse("[WEP][ESS]").getSecurityLevel());
+        assertEquals(Capabilities.SECURITY_WPA, Capabilities.parse("[WPA-PSK-TKIP][ESS]").getSecurityLevel());
+        assertEquals(Capabilities.SECURITY_WPA2, Capabilities.parse("[WPA-PSK-TKIP+CCMP][WPA2-PSK-TKIP+CCMP][ESS]").getSecurityLevel());
+        assertEquals(Capabilities.SECURITY_WPA2, Capabilities.parse("[WPA2-EAP-CCMP][RSN-EAP-CCMP][ESS][MFPC]").getSecurityLevel());
+        assertEquals(Capabilities.SECURITY_WPA3, Capabilities.parse("[RSN-SAE-CCMP][ESS]").getSecurityLevel());
+        // Transition mode is ranked as WPA2
+        assertEquals(Capabilities.SECURITY_WPA2, Capabilities.parse("[WPA2-PSK+SAE-CCMP][ESS][MFPC]").getSecurityLevel());
+    }
+
+    @Test
+    public void parse_isCached() {
+        String str = new String("[RSN-SAE-CCMP][ESS]");
+        assertSame(Capabilities.parse(str), Capabilities.parse(new String(str)));
+    }
+
+    @Test
+    public void parse_isInterned() {
+        Capabilities first = Capabilities.parse("[WPA2-PSK-CCMP][ESS]");
+        Capabilities second = Capabilities.parse("[WPA2-PSK-CCMP][MFPC][ESS]");
+        assertSame(first, second);
+        assertEquals(first.getId(), second.getId());
+        assertNotSame(first, Capabilities.parse("[WPA2-EAP-CCMP][ESS]"));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.model;
+
+import android.net.wifi.WifiConfiguration;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class SecurityProfileTest {
+    private static BitSet bits(int... values) {
+        BitSet result = new BitSet();
+        for (int value : values)
+            result.set(value);
+        return result;
+    }
+
+    @Test
+    public void compile_wpa2Psk() {
+        SecurityProfile profile = SecurityProfile.compile("[WPA2-PSK-CCMP][ESS][WPS]");
+        assertEquals(bits(WifiConfiguration.Protocol.WPA, WifiConfiguration.Protocol.RSN), profile.getAllowedProtocols());
+        assertEquals(bits(WifiConfiguration.AuthAlgorithm.OPEN), profile.getAllowedAuthAlgorithms());
+        assertEquals(bits(WifiConfiguration.KeyMgmt.WPA_PSK), profile.getAllowedKeyManagement());
+        assertEquals(bits(WifiConfiguration.PairwiseCipher.CCMP, WifiConfiguration.PairwiseCipher.TKIP), profile.getAllowedPairwiseCiphers());
+        assertEquals("\"secret123\"", profile.encodePassword("secret123"));
+    }
+
+    @Test
+    public void compile_wpaEap() {
+        SecurityProfile profile = SecurityProfile.compile("[WPA2-EAP-CCMP][ESS]");
+        assertEquals(bits(WifiConfiguration.AuthAlgorithm.LEAP), profile.getAllowedAuthAlgorithms());
+        assertEquals(bits(WifiConfiguration.KeyMgmt.WPA_EAP), profile.getAllowedKeyManagement());
+    }
+
+    @Test
+    public void compile_ieee8021x() {
+        SecurityProfile profile = SecurityProfile.compile("[IEEE802.1X][ESS]");
+        assertEquals(bits(), profile.getAllowedProtocols());
+        assertEquals(bits(WifiConfiguration.KeyMgmt.IEEE8021X), profile.getAllowedKeyManagement());
+    }
+
+    @Test
+    public void compile_wep() {
+        SecurityProfile profile = SecurityProfile.compile("[WEP][ESS]");
+        assertTrue(profile.isWep());
+        assertEquals(bits(WifiConfiguration.AuthAlgorithm.SHARED), profile.getAllowedAuthAlgorithms());
+        assertEquals(bits(WifiConfiguration.KeyMgmt.NONE), profile.getAllowedKeyManagement());
+        assertEquals("0123456789", profile.encodePassword("0123456789"));
+        assertEquals("ABCdef", profile.encodePassword("ABCdef"));
+        assertEquals("\"secret\"", profile.encodePassword("secret"));
+    }
+
+    @Test
+    public void compile_open() {
+        SecurityProfile profile = SecurityProfile.compile("[ESS]");
+        assertFalse(profile.isEmpty());
+        assertEquals(bits(), profile.getAllowedProtocols());
+        assertEquals(bits(WifiConfiguration.KeyMgmt.NONE), profile.getAllowedKeyManagement());
+        assertTrue(SecurityProfile.compile("").isEmpty());
+        assertTrue(SecurityProfile.compile(null).isEmpty());
+    }
+
+    @Test
+    public void compile_isCached() {
+        assertSame(SecurityProfile.compile("[WPA-PSK-TKIP][ESS]"), SecurityProfile.compile(new String("[WPA-PSK-TKIP][ESS]")));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.platform;
+
+import android.net.wifi.WifiConfiguration;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConfiguredNetworksTest {
+    private static WifiConfiguration config(String ssid) {
+        WifiConfiguration config = new WifiConfiguration();
+        config.SSID = "\"" + ssid + "\"";
+        return config;
+    }
+
+    @Test
+    public void lookups_useCachedList() {
+        FakeWifiPlatform platform = new FakeWifiPlatform();
+        int home = platform.addNetwork(config("Home"));
+        int office = platform.addNetwork(config("Office"));
+        ConfiguredNetworks networks = new ConfiguredNetworks(platform);
+
+        assertEquals(home, networks.getBySsid("home").networkId);
+        assertEquals("\"Office\"", networks.getById(office).SSID);
+        assertNull(networks.getBySsid("Guest"));
+        assertNull(networks.getById(100));
+        assertEquals(2, networks.getAll().size());
+
+        assertEquals(1, platform.getMeter().getCount(IpcMeter.Call.GET_CONFIGURED_NETWORKS));
+        assertEquals(1, networks.getLoads());
+        assertEquals(4, networks.getSavedCalls());
+    }
+
+    @Test
+    public void changes_invalidate() {
+        FakeWifiPlatform platform = new FakeWifiPlatform();
+        ConfiguredNetworks networks = new ConfiguredNetworks(platform);
+        assertNull(networks.getBySsid("Home"));
+
+        int id = networks.add(config("Home"));
+        assertEquals(id, networks.getBySsid("Home").networkId);
+        assertTrue(networks.remove(id));
+        assertNull(networks.getBySsid("Home"));
+
+        // Changed by another app: visible after the broadcast
+        platform.addNetwork(config("Other"));
+        assertNull(networks.getBySsid("Other"));
+        networks.invalidate();
+        assertNotNull(networks.getBySsid("Other"));
+        assertEquals(4, networks.getLoads());
+    }
+
+    @Test
+    public void unavailableList_notCached() {
+        FakeWifiPlatform platform = new FakeWifiPlatform();
+        platform.addNetwork(config("Home"));
+        platform.setWifiEnabled(false);
+        ConfiguredNetworks networks = new ConfiguredNetworks(platform);
+        assertTrue(networks.getAll().isEmpty());
+
+        platform.setWifiEnabled(true);
+        assertNotNull(networks.getBySsid("Home"));
+        assertEquals(2, platform.getMeter().getCount(IpcMeter.Call.GET_CONFIGURED_NETWORKS));
+    }
+
+    @Test
+    public void meter_countsCalls() {
+        IpcMeter meter = new IpcMeter();
+        meter.record(IpcMeter.Call.START_SCAN, 2000000);
+        meter.record(IpcMeter.Call.START_SCAN, 4000000);
+        meter.record(IpcMeter.Call.RECONNECT, 1000000);
+
+        assertEquals(2, meter.getCount(IpcMeter.Call.START_SCAN));
+        assertEquals(6000000, meter.getTotalNanos(IpcMeter.Call.START_SCAN));
+        assertEquals(4000000, meter.getMaxNanos(IpcMeter.Call.START_SCAN));
+        assertEquals(3, meter.getCount());
+        assertEquals("calls: 3; startScan: 2, avg 3.00 ms, max 4.00 ms; reconnect: 1, avg 1.00 ms, max 1.00 ms", meter.toString());
+
+        meter.reset();
+        assertEquals(0, meter.getCount());
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.platform;
+
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiNetworkSuggestion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory WiFi platform for the JVM tests and profiling. Deterministic: the network ids
+ * are assigned sequentially, and every call is recorded in the meter with zero duration.
+ */
+public class FakeWifiPlatform implements WifiPlatform {
+    private final IpcMeter meter = new IpcMeter();
+    private boolean wifiEnabled = true;
+    private final List<ScanResult> scanResults = new ArrayList<>();
+    private final List<WifiConfiguration> configured = new ArrayList<>();
+    private final List<WifiNetworkSuggestion> suggestions = new ArrayList<>();
+    private int nextNetworkId;
+    private int enabledNetworkId = -1;
+    private WifiInfo connectionInfo;
+    private int scans;
+
+    public IpcMeter getMeter() {
+        return meter;
+    }
+
+    public void setScanResults(List<ScanResult> results) {
+        scanResults.clear();
+        scanResults.addAll(results);
+    }
+
+    public void setConnectionInfo(WifiInfo connectionInfo) {
+        this.connectionInfo = connectionInfo;
+    }
+
+    /**
+     * @return id of the network enabled by the last enableNetwork() call, -1 if none.
+     */
+    public int getEnabledNetworkId() {
+        return enabledNetworkId;
+    }
+
+    public int getScans() {
+        return scans;
+    }
+
+    public List<WifiNetworkSuggestion> getSuggestions() {
+        return suggestions;
+    }
+
+    private static WifiConfiguration find(List<WifiConfiguration> list, int networkId) {
+        for (WifiConfiguration config : list) {
+            if (config.networkId == networkId)
+                return config;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isWifiEnabled() {
+        meter.record(IpcMeter.Call.IS_WIFI_ENABLED, 0);
+        return wifiEnabled;
+    }
+
+    @Override
+    public boolean setWifiEnabled(boolean enabled) {
+        meter.record(IpcMeter.Call.SET_WIFI_ENABLED, 0);
+        wifiEnabled = enabled;
+        return true;
+    }
+
+    @Override
+    public boolean startScan() {
+        meter.record(IpcMeter.Call.START_SCAN, 0);
+        if (wifiEnabled)
+            scans++;
+        return wifiEnabled;
+    }
+
+    @Override
+    public List<ScanResult> getScanResults() {
+        meter.record(IpcMeter.Call.GET_SCAN_RESULTS, 0);
+        return new ArrayList<>(scanResults);
+    }
+
+    @Override
+    public List<WifiConfiguration> getConfiguredNetworks() {
+        meter.record(IpcMeter.Call.GET_CONFIGURED_NETWORKS, 0);
+        // Like the platform, returns a new list each time and nothing when WiFi is disabled
+        return wifiEnabled ? new ArrayList<>(configured) : null;
+    }
+
+    @Override
+    public WifiInfo getConnectionInfo() {
+        meter.record(IpcMeter.Call.GET_CONNECTION_INFO, 0);
+        return connectionInfo;
+    }
+
+    @Override
+    public int addNetwork(WifiConfiguration config) {
+        meter.record(IpcMeter.Call.ADD_NETWORK, 0);
+        if (!wifiEnabled || config.SSID == null)
+            return -1;
+        config.networkId = nextNetworkId++;
+        configured.add(config);
+        return config.networkId;
+    }
+
+    @Override
+    public int updateNetwork(WifiConfiguration config) {
+        meter.record(IpcMeter.Call.UPDATE_NETWORK, 0);
+        WifiConfiguration existing = find(configured, config.networkId);
+        if (existing == null)
+            return -1;
+        configured.set(configured.indexOf(existing), config);
+        return config.networkId;
+    }
+
+    @Override
+    public boolean removeNetwork(int networkId) {
+        meter.record(IpcMeter.Call.REMOVE_NETWORK, 0);
+        if (enabledNetworkId == networkId)
+            enabledNetworkId = -1;
+        return configured.remove(find(configured, networkId));
+    }
+
+    @Override
+    public boolean enableNetwork(int networkId, boolean disableOthers) {
+        meter.record(IpcMeter.Call.ENABLE_NETWORK, 0);
+        if (find(configured, networkId) == null)
+            return false;
+        enabledNetworkId = networkId;
+        return true;
+    }
+
+    @Override
+    public boolean disableNetwork(int networkId) {
+        meter.record(IpcMeter.Call.DISABLE_NETWORK, 0);
+        if (enabledNetworkId == networkId)
+            enabledNetworkId = -1;
+        return find(configured, networkId) != null;
+    }
+
+    @Override
+    public boolean disconnect() {
+        meter.record(IpcMeter.Call.DISCONNECT, 0);
+        connectionInfo = null;
+        return true;
+    }
+
+    @Override
+    public boolean reconnect() {
+        meter.record(IpcMeter.Call.RECONNECT, 0);
+        return wifiEnabled;
+    }
+
+    @Override
+    public boolean reassociate() {
+        meter.record(IpcMeter.Call.REASSOCIATE, 0);
+        return wifiEnabled;
+    }
+
+    @Override
+    public int addNetworkSuggestions(List<WifiNetworkSuggestion> list) {
+        meter.record(IpcMeter.Call.ADD_NETWORK_SUGGESTIONS, 0);
+        suggestions.addAll(list);
+        return 0;
+    }
+
+    @Override
+    public int removeNetworkSuggestions(List<WifiNetworkSuggestion> list) {
+        meter.record(IpcMeter.Call.REMOVE_NETWORK_SUGGESTIONS, 0);
+        suggestions.removeAll(list);
+        return 0;
+    }
+}
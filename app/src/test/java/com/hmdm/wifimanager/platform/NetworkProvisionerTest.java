@@ -0,0 +1,160 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.platform;
+
+import android.net.wifi.WifiConfiguration;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.model.MDMConfig;
+import com.hmdm.wifimanager.policy.FailureLedger;
+import com.hmdm.wifimanager.policy.WiFiPolicy;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NetworkProvisionerTest {
+    /**
+     * Saves the password as is; networks without the password have unknown security.
+     */
+    private static final NetworkProvisioner.Configurator CONFIGURATOR = new NetworkProvisioner.Configurator() {
+        @Override
+        public boolean configure(WifiConfiguration config, AllowedItem item) {
+            if (item.password == null)
+                return false;
+            config.preSharedKey = item.password;
+            return true;
+        }
+    };
+
+    private static WiFiPolicy policy(AllowedItem... items) {
+        MDMConfig config = new MDMConfig();
+        for (AllowedItem item : items)
+            config.allowed.add(item);
+        return new WiFiPolicy(config);
+    }
+
+    private static AllowedItem pattern(String ssidPattern) {
+        AllowedItem item = new AllowedItem();
+        item.ssidPattern = ssidPattern;
+        item.password = "secret123";
+        return item;
+    }
+
+    @Test
+    public void provision_appliesOnlyDifferences() {
+        FakeWifiPlatform platform = new FakeWifiPlatform();
+        ConfiguredNetworks networks = new ConfiguredNetworks(platform);
+        NetworkProvisioner provisioner = new NetworkProvisioner(networks, CONFIGURATOR);
+
+        NetworkProvisioner.Result result = provisioner.provision(policy(
+                new AllowedItem("Corp", null, "secret123"),
+                new AllowedItem("Warehouse", null, "secret456"),
+                new AllowedItem("Unknown", null, null),
+                pattern("Store-*")));
+        assertEquals(2, result.getAdded());
+        assertEquals(1, result.getSkipped());
+        assertTrue(result.hasChanges());
+        assertEquals("secret123", networks.getBySsid("corp").preSharedKey);
+
+        // Same configuration: nothing to do
+        long calls = platform.getMeter().getCount(IpcMeter.Call.ADD_NETWORK);
+        result = provisioner.provision(policy(
+                new AllowedItem("Corp", null, "secret123"),
+                new AllowedItem("Warehouse", null, "secret456"),
+                new AllowedItem("Unknown", null, null),
+                pattern("Store-*")));
+        assertFalse(result.hasChanges());
+        assertEquals(2, result.getUnchanged());
+        assertEquals(calls, platform.getMeter().getCount(IpcMeter.Call.ADD_NETWORK));
+
+        // Changed password, removed network
+        result = provisioner.provision(policy(new AllowedItem("Corp", null, "secret789")));
+        assertEquals(1, result.getUpdated());
+        assertEquals(1, result.getRemoved());
+        assertEquals("secret789", networks.getBySsid("Corp").preSharedKey);
+        assertNull(networks.getBySsid("Warehouse"));
+        assertEquals(1, provisioner.size());
+    }
+
+    @Test
+    public void provision_keepsNetworksSavedByUser() {
+        FakeWifiPlatform platform = new FakeWifiPlatform();
+        WifiConfiguration home = new WifiConfiguration();
+        home.SSID = "\"Home\"";
+        platform.addNetwork(home);
+        ConfiguredNetworks networks = new ConfiguredNetworks(platform);
+        NetworkProvisioner provisioner = new NetworkProvisioner(networks, CONFIGURATOR);
+
+        NetworkProvisioner.Result result = provisioner.provision(policy(new AllowedItem("home", null, "secret123")));
+        assertEquals(1, result.getUnchanged());
+        assertEquals(0, platform.getMeter().getCount(IpcMeter.Call.UPDATE_NETWORK));
+
+        result = provisioner.provision(policy());
+        assertEquals(0, result.getRemoved());
+        assertNotNull(networks.getBySsid("Home"));
+    }
+
+    @Test
+    public void provision_skipsNetworkForgottenAfterAuthenticationFailure() {
+        FakeWifiPlatform platform = new FakeWifiPlatform();
+        ConfiguredNetworks networks = new ConfiguredNetworks(platform);
+        NetworkProvisioner provisioner = new NetworkProvisioner(networks, CONFIGURATOR);
+        WiFiPolicy policy = policy(new AllowedItem("Corp", null, "secret123"));
+        provisioner.provision(policy);
+
+        // Forgotten after the authentication failure
+        networks.remove(networks.getBySsid("Corp").networkId);
+        FailureLedger ledger = new FailureLedger();
+        ledger.recordFailure(policy.getFingerprint(0), "Corp", null, FailureLedger.Failure.AUTHENTICATION, 0);
+        NetworkProvisioner.Result result = provisioner.provision(policy, ledger);
+        assertEquals(0, result.getAdded());
+        assertEquals(1, result.getWrong());
+        assertNull(networks.getBySsid("Corp"));
+
+        // New password on the server
+        result = provisioner.provision(policy(new AllowedItem("Corp", null, "secret456")), ledger);
+        assertEquals(1, result.getAdded());
+
+        // Removed by the user: saved again
+        networks.remove(networks.getBySsid("Corp").networkId);
+        result = provisioner.provision(policy(new AllowedItem("Corp", null, "secret456")), ledger);
+        assertEquals(1, result.getAdded());
+    }
+
+    @Test
+    public void json_survivesReload() {
+        FakeWifiPlatform platform = new FakeWifiPlatform();
+        ConfiguredNetworks networks = new ConfiguredNetworks(platform);
+        NetworkProvisioner provisioner = new NetworkProvisioner(networks, CONFIGURATOR);
+        provisioner.provision(policy(new AllowedItem("Corp", null, "secret123")));
+
+        NetworkProvisioner restored = new NetworkProvisioner(networks, CONFIGURATOR);
+        restored.loadJson(provisioner.toJson());
+        assertEquals(1, restored.size());
+        // Removed from the configuration after the restart
+        assertEquals(1, restored.provision(policy()).getRemoved());
+
+        restored.loadJson("not a json");
+        assertEquals(0, restored.size());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.platform;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SuggestionSyncTest {
+    private static final String SALT = "0123456789abcdef0123456789abcdef";
+
+    private static List<AllowedItem> allowed(AllowedItem... items) {
+        return new ArrayList<>(Arrays.asList(items));
+    }
+
+    private static AllowedItem pattern(String ssidPattern) {
+        AllowedItem item = new AllowedItem();
+        item.ssidPattern = ssidPattern;
+        return item;
+    }
+
+    @Test
+    public void plan_containsOnlyDifferences() {
+        SuggestionSync sync = new SuggestionSync(SALT);
+        SuggestionSync.Plan plan = sync.plan(allowed(
+                new AllowedItem("Corp", null, "secret123"),
+                new AllowedItem(null, "aa:bb:cc:dd:ee:ff", null),
+                pattern("Store-*")));
+        assertEquals(2, plan.getAdded().size());
+        assertTrue(plan.getRemoved().isEmpty());
+        assertTrue(plan.getAdded().get(0).isSecured());
+        assertFalse(plan.getAdded().get(1).isSecured());
+        sync.onAdded(plan);
+
+        // Same configuration: nothing to submit
+        plan = sync.plan(allowed(
+                new AllowedItem("Corp", null, "secret123"),
+                new AllowedItem(null, "AA:BB:CC:DD:EE:FF", null)));
+        assertTrue(plan.isEmpty());
+        assertEquals(2, plan.getUnchanged());
+
+        // Changed password replaces the suggestion, removed network is dropped
+        plan = sync.plan(allowed(new AllowedItem("Corp", null, "secret456")));
+        assertEquals(1, plan.getAdded().size());
+        assertEquals(2, plan.getRemoved().size());
+        sync.onRemoved(plan);
+        sync.onAdded(plan);
+        assertEquals(1, sync.size());
+        assertTrue(sync.plan(allowed(new AllowedItem("Corp", null, "secret456"))).isEmpty());
+    }
+
+    @Test
+    public void failedAddition_isPlannedAgain() {
+        SuggestionSync sync = new SuggestionSync(SALT);
+        SuggestionSync.Plan plan = sync.plan(allowed(new AllowedItem("Corp", null, "secret123")));
+        // The platform refused the suggestions: nothing recorded
+        assertEquals(1, sync.plan(allowed(new AllowedItem("Corp", null, "secret123"))).getAdded().size());
+        assertEquals(0, sync.size());
+        assertFalse(plan.isEmpty());
+    }
+
+    @Test
+    public void partialAddition_recordsOnlyAdded() {
+        SuggestionSync sync = new SuggestionSync(SALT);
+        SuggestionSync.Plan plan = sync.plan(allowed(
+                new AllowedItem("Corp", null, "secret123"),
+                new AllowedItem("Guest", null, null)));
+        // Only the second suggestion was accepted
+        sync.onAdded(plan.getAdded().get(1));
+        assertEquals(1, sync.size());
+
+        plan = sync.plan(allowed(
+                new AllowedItem("Corp", null, "secret123"),
+                new AllowedItem("Guest", null, null)));
+        assertEquals(1, plan.getAdded().size());
+        assertEquals("Corp", plan.getAdded().get(0).getSsid());
+        assertEquals(1, plan.getUnchanged());
+    }
+
+    @Test
+    public void json_survivesReload() {
+        SuggestionSync sync = new SuggestionSync(SALT);
+        AllowedItem hidden = new AllowedItem("Hidden", null, "secret123");
+        hidden.hidden = true;
+        SuggestionSync.Plan plan = sync.plan(allowed(hidden));
+        sync.onAdded(plan);
+        assertFalse(sync.toJson().contains("secret123"));
+
+        SuggestionSync restored = new SuggestionSync(SALT);
+        restored.loadJson(sync.toJson());
+        assertTrue(restored.plan(allowed(hidden)).isEmpty());
+
+        plan = restored.plan(allowed());
+        assertEquals(1, plan.getRemoved().size());
+        assertTrue(plan.getRemoved().get(0).isHidden());
+        assertEquals("Hidden", plan.getRemoved().get(0).getSsid());
+
+        // Other install: the fingerprints differ
+        SuggestionSync other = new SuggestionSync(SuggestionSync.newSalt());
+        other.loadJson(sync.toJson());
+        assertEquals(1, other.plan(allowed(hidden)).getAdded().size());
+        assertFalse(sync.fingerprint(hidden).equals(other.fingerprint(hidden)));
+        assertEquals(64, sync.fingerprint(hidden).length());
+
+        restored.loadJson("not a json");
+        assertEquals(0, restored.size());
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.policy;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.model.MDMConfig;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FailureLedgerTest {
+    private static final long MINUTE = 60 * 1000L;
+
+    @Test
+    public void authenticationFailure_blocksSsidWithBackoff() {
+        FailureLedger ledger = new FailureLedger();
+        long now = 1000000;
+
+        long retryAt = ledger.recordFailure("f1", "Corp", "aa:bb:cc:dd:ee:01", FailureLedger.Failure.AUTHENTICATION, now);
+        assertEquals(now + 5 * MINUTE, retryAt);
+        assertTrue(ledger.isBlocked("f1", "CORP", "aa:bb:cc:dd:ee:02", now + MINUTE));
+        assertFalse(ledger.isBlocked("f1", "Corp", null, now + 5 * MINUTE));
+        // New credentials on the server
+        assertFalse(ledger.isBlocked("f2", "Corp", null, now + MINUTE));
+
+        retryAt = ledger.recordFailure("f1", "Corp", null, FailureLedger.Failure.AUTHENTICATION, now);
+        assertEquals(now + 10 * MINUTE, retryAt);
+    }
+
+    @Test
+    public void associationFailure_blocksAccessPoint() {
+        FailureLedger ledger = new FailureLedger();
+        ledger.recordFailure("f1", "Corp", "aa:bb:cc:dd:ee:01", FailureLedger.Failure.ASSOCIATION, 0);
+
+        assertTrue(ledger.isBlocked("f1", "Corp", "AA:BB:CC:DD:EE:01", 1000));
+        assertFalse(ledger.isBlocked("f1", "Corp", "aa:bb:cc:dd:ee:02", 1000));
+
+        ledger.recordSuccess("f1", "corp");
+        assertEquals(0, ledger.size());
+    }
+
+    @Test
+    public void applyWrongPasswords_marksUnchangedCredentials() {
+        MDMConfig config = new MDMConfig();
+        config.allowed.add(new AllowedItem("Corp", null, "secret123"));
+        config.allowed.add(new AllowedItem("Backup", null, "secret456"));
+        WiFiPolicy policy = new WiFiPolicy(config);
+        FailureLedger ledger = new FailureLedger();
+        ledger.recordFailure(policy.getFingerprint(0), "Corp", "aa:bb:cc:dd:ee:01", FailureLedger.Failure.AUTHENTICATION, 0);
+        ledger.recordFailure(policy.getFingerprint(1), "Backup", "aa:bb:cc:dd:ee:02", FailureLedger.Failure.ASSOCIATION, 0);
+
+        WiFiPolicy restored = FailureLedger.fromJson(ledger.toJson(), 1000).applyWrongPasswords(new WiFiPolicy(config));
+        assertTrue(restored.isWrong("Corp", null));
+        assertFalse(restored.isWrong("Backup", null));
+
+        // New credentials on the server
+        MDMConfig changed = new MDMConfig();
+        changed.allowed.add(new AllowedItem("Corp", null, "secret789"));
+        WiFiPolicy fresh = new WiFiPolicy(changed);
+        assertSame(fresh, ledger.applyWrongPasswords(fresh));
+    }
+
+    @Test
+    public void backoff_isCapped() {
+        assertEquals(24 * 60 * MINUTE, FailureLedger.backoff(FailureLedger.Failure.AUTHENTICATION, 100));
+        assertEquals(60 * MINUTE, FailureLedger.backoff(FailureLedger.Failure.ASSOCIATION, 100));
+    }
+
+    @Test
+    public void json_survivesReload() {
+        FailureLedger ledger = new FailureLedger();
+        ledger.recordFailure("f1", "Corp", null, FailureLedger.Failure.AUTHENTICATION, 0);
+        ledger.recordFailure("f1", "Old", null, FailureLedger.Failure.AUTHENTICATION, -8 * 24 * 60 * MINUTE);
+
+        FailureLedger restored = FailureLedger.fromJson(ledger.toJson(), MINUTE);
+        assertEquals(1, restored.size());
+        assertTrue(restored.isBlocked("f1", "Corp", null, MINUTE));
+
+        assertEquals(0, FailureLedger.fromJson("not a json", 0).size());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.policy;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KnownGoodCacheTest {
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    public void recordSuccess_reportsChangedAccessPoint() {
+        KnownGoodCache cache = new KnownGoodCache();
+
+        assertTrue(cache.recordSuccess("f1", "Corp", "aa:bb:cc:dd:ee:01", 5180, "[WPA2-PSK-CCMP][ESS]", 1000));
+        assertFalse(cache.recordSuccess("f1", "corp", "AA:BB:CC:DD:EE:01", 5180, null, 2000));
+        assertTrue(cache.recordSuccess("f1", "Corp", "aa:bb:cc:dd:ee:02", 2437, null, 3000));
+
+        KnownGoodCache.Entry entry = cache.get("CORP");
+        assertEquals("aa:bb:cc:dd:ee:02", entry.getBssid());
+        assertEquals(2437, entry.getFrequency());
+        // Unknown capabilities keep the previous value
+        assertEquals("[WPA2-PSK-CCMP][ESS]", entry.getCapabilities());
+        assertEquals(3000, entry.getLastSuccess());
+        assertEquals(1, cache.size());
+
+        // New credentials on the server
+        assertTrue(cache.recordSuccess("f2", "Corp", "aa:bb:cc:dd:ee:02", 2437, null, 4000));
+    }
+
+    @Test
+    public void entries_mostRecentFirst() {
+        KnownGoodCache cache = new KnownGoodCache();
+        cache.recordSuccess("f1", "Office", "aa:bb:cc:dd:ee:01", 2412, null, 1000);
+        cache.recordSuccess("f2", "Warehouse", "aa:bb:cc:dd:ee:02", 5200, null, 3000);
+        cache.recordSuccess("f1", "Office", "aa:bb:cc:dd:ee:01", 2412, null, 2000);
+
+        List<KnownGoodCache.Entry> entries = cache.getEntries();
+        assertEquals("Warehouse", entries.get(0).getSsid());
+        assertEquals("Office", entries.get(1).getSsid());
+
+        assertTrue(cache.remove("warehouse"));
+        assertFalse(cache.remove("warehouse"));
+        assertNull(cache.get("Warehouse"));
+    }
+
+    @Test
+    public void json_survivesReload() {
+        KnownGoodCache cache = new KnownGoodCache();
+        cache.recordSuccess("f1", "Corp", "aa:bb:cc:dd:ee:01", 5180, "[WPA2-PSK-CCMP][ESS]", 40 * DAY);
+        cache.recordSuccess("f1", "Old", "aa:bb:cc:dd:ee:02", 2412, null, 0);
+
+        KnownGoodCache restored = KnownGoodCache.fromJson(cache.toJson(), 41 * DAY);
+        assertEquals(1, restored.size());
+        KnownGoodCache.Entry entry = restored.get("Corp");
+        assertEquals("f1", entry.getFingerprint());
+        assertEquals("aa:bb:cc:dd:ee:01", entry.getBssid());
+        assertEquals(5180, entry.getFrequency());
+        assertEquals("[WPA2-PSK-CCMP][ESS]", entry.getCapabilities());
+
+        assertEquals(0, KnownGoodCache.fromJson("not a json", 0).size());
+        assertEquals(0, KnownGoodCache.fromJson(null, 0).size());
+    }
+
+    @Test
+    public void recordSuccess_savesTimeHourly() {
+        KnownGoodCache cache = new KnownGoodCache();
+        long hour = 60 * 60 * 1000L;
+        assertTrue(cache.recordSuccess("f1", "Corp", "aa:bb:cc:dd:ee:01", 5180, null, 40 * DAY));
+        assertFalse(cache.recordSuccess("f1", "Corp", "aa:bb:cc:dd:ee:01", 5180, null, 40 * DAY + hour / 2));
+        assertTrue(cache.recordSuccess("f1", "Corp", "aa:bb:cc:dd:ee:01", 5180, null, 40 * DAY + hour));
+
+        // The entry used daily doesn't expire after the restart
+        KnownGoodCache restored = KnownGoodCache.fromJson(cache.toJson(), 40 * DAY + hour);
+        assertFalse(restored.recordSuccess("f1", "Corp", "aa:bb:cc:dd:ee:01", 5180, null, 40 * DAY + hour + 1));
+        assertEquals(40 * DAY + hour, KnownGoodCache.fromJson(cache.toJson(), 69 * DAY).get("Corp").getLastSuccess());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.policy;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.model.Bssid;
+import com.hmdm.wifimanager.model.BssidRange;
+import com.hmdm.wifimanager.model.MDMConfig;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PatternRulesTest {
+    @Test
+    public void ssidPatternTrie_matchesGlobs() {
+        SsidPatternTrie trie = new SsidPatternTrie();
+        trie.add("Store-*", 3, false);
+        trie.add("store-1?", 1, true);
+        trie.add("*-guest", 2, false);
+        trie.add("a*b*c", 0, false);
+
+        assertEquals(1, trie.indexOf("STORE-12"));
+        assertEquals(3, trie.indexOf("Store-123"));
+        assertEquals(3, trie.indexOf("Store-"));
+        assertEquals(2, trie.indexOf("Cafe-Guest"));
+        assertEquals(0, trie.indexOf("abc"));
+        assertEquals(0, trie.indexOf("axxbyyc"));
+        assertEquals(-1, trie.indexOf("axxbyy"));
+        assertEquals(-1, trie.indexOf("Office"));
+        assertEquals(1, trie.passwordIndexOf("Store-12"));
+        assertEquals(-1, trie.passwordIndexOf("Store-123"));
+    }
+
+    @Test
+    public void bssidRange_parse() {
+        BssidRange oui = BssidRange.parse("00:11:22:*");
+        assertEquals(24, oui.getBits());
+        assertTrue(oui.matches(Bssid.parse("00:11:22:33:44:55")));
+        assertFalse(oui.matches(Bssid.parse("00:11:23:33:44:55")));
+
+        BssidRange bits = BssidRange.parse("00:11:22:33:40:00/36");
+        assertTrue(bits.matches(Bssid.parse("00:11:22:33:4f:ff")));
+        assertFalse(bits.matches(Bssid.parse("00:11:22:33:50:00")));
+
+        assertNull(BssidRange.parse("00:11:2*"));
+        assertNull(BssidRange.parse("00:11:22:33:44:55/49"));
+        assertNull(BssidRange.parse(""));
+    }
+
+    @Test
+    public void bssidRangeTable_usesFirstRule() {
+        BssidRangeTable table = new BssidRangeTable();
+        table.add(BssidRange.parse("00:11:*"), 5, true);
+        table.add(BssidRange.parse("00:11:22:*"), 2, false);
+
+        assertEquals(2, table.indexOf(Bssid.parse("00:11:22:00:00:01")));
+        assertEquals(5, table.indexOf(Bssid.parse("00:11:33:00:00:01")));
+        assertEquals(5, table.passwordIndexOf(Bssid.parse("00:11:22:00:00:01")));
+        assertEquals(-1, table.indexOf(Bssid.parse("00:12:22:00:00:01")));
+    }
+
+    @Test
+    public void policy_evaluatesPatterns() {
+        MDMConfig config = new MDMConfig();
+        config.allAllowed = false;
+        AllowedItem stores = new AllowedItem(null, null, "storepass");
+        stores.ssidPattern = "Store-*";
+        AllowedItem vendor = new AllowedItem();
+        vendor.bssidRange = "00:11:22:*";
+        config.allowed.add(new AllowedItem("Office", null, "officepass"));
+        config.allowed.add(stores);
+        config.allowed.add(vendor);
+
+        WiFiPolicy policy = new WiFiPolicy(config);
+        assertEquals(3, policy.getAllowedList().size());
+
+        Verdict store = policy.evaluate("store-42", "aa:00:00:00:00:01", true);
+        assertTrue(store.isAllowed());
+        assertEquals(1, store.getPriority());
+        assertEquals("storepass", store.getPassword());
+
+        assertTrue(policy.evaluate("Cafe", "00:11:22:00:00:01", true).isAllowed());
+        assertFalse(policy.evaluate("Cafe", "00:11:23:00:00:01", true).isAllowed());
+        assertEquals(0, policy.evaluate("Office", "00:11:22:00:00:01", true).getPriority());
+
+        WiFiPolicy wrong = policy.withWrongPassword("Store-7", "aa:00:00:00:00:02");
+        assertTrue(wrong.evaluate("Store-1", null, true).isWrong());
+        assertFalse(wrong.evaluate("Office", null, true).isWrong());
+    }
+
+    @Test
+    public void withWrongPassword_marksAllMatchingRules() {
+        MDMConfig config = new MDMConfig();
+        AllowedItem first = new AllowedItem(null, null, "pass1");
+        first.ssidPattern = "Store-*";
+        AllowedItem second = new AllowedItem(null, null, "pass2");
+        second.ssidPattern = "store-*";
+        AllowedItem range = new AllowedItem(null, null, "pass3");
+        range.bssidRange = "00:11:22:*";
+        AllowedItem other = new AllowedItem(null, null, "pass4");
+        other.bssidRange = "00:11:23:*";
+        config.allowed.add(first);
+        config.allowed.add(second);
+        config.allowed.add(range);
+        config.allowed.add(other);
+
+        WiFiPolicy wrong = new WiFiPolicy(config).withWrongPassword("Store-1", "00:11:22:00:00:01");
+        assertTrue(wrong.isWrong(0));
+        assertTrue(wrong.isWrong(1));
+        assertTrue(wrong.isWrong(2));
+        assertFalse(wrong.isWrong(3));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.policy;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.model.MDMConfig;
+import com.hmdm.wifimanager.model.WiFiItem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class WiFiPolicyTest {
+    private static MDMConfig config(boolean allAllowed, boolean freeAllowed, AllowedItem... items) {
+        MDMConfig config = new MDMConfig();
+        config.allAllowed = allAllowed;
+        config.freeAllowed = freeAllowed;
+        for (AllowedItem item : items)
+            config.allowed.add(item);
+        return config;
+    }
+
+    @Test
+    public void isAllowed_ignoresCase() {
+        WiFiPolicy policy = new WiFiPolicy(config(false, false,
+                new AllowedItem("Corp", null, "secret123"),
+                new AllowedItem(null, "AA:BB:CC:DD:EE:FF", null)));
+
+        assertTrue(policy.isAllowed("corp", null));
+        assertTrue(policy.isAllowed("Guest", "aa:bb:cc:dd:ee:ff"));
+        assertFalse(policy.isAllowed("Guest", "aa:bb:cc:dd:ee:00"));
+        assertFalse(policy.isAllowed(null, null));
+        assertFalse(new WiFiPolicy(null).isAllowed("Corp", null));
+    }
+
+    @Test
+    public void isWrong_usesFirstMatch() {
+        AllowedItem first = new AllowedItem(null, "aa:bb:cc:dd:ee:ff", null);
+        AllowedItem second = new AllowedItem("Corp", null, null);
+        second.wrongPassword = true;
+        WiFiPolicy policy = new WiFiPolicy(config(false, false, first, second));
+
+        assertTrue(policy.isWrong("Corp", "00:00:00:00:00:01"));
+        assertFalse(policy.isWrong("Corp", "aa:bb:cc:dd:ee:ff"));
+        assertSame(first, policy.findAllowed("Corp", "aa:bb:cc:dd:ee:ff"));
+        assertEquals(1, policy.getPriority("CORP", null));
+    }
+
+    @Test
+    public void getPasswordFromAllowed_skipsEmptyPasswords() {
+        WiFiPolicy policy = new WiFiPolicy(config(false, false,
+                new AllowedItem("Corp", null, ""),
+                new AllowedItem("corp", null, "secret123")));
+
+        assertEquals("secret123", policy.getPasswordFromAllowed("Corp", ""));
+        assertEquals("", policy.getPasswordFromAllowed("Guest", ""));
+    }
+
+    @Test
+    public void createList_protectedOrListed() {
+        WiFiPolicy policy = new WiFiPolicy(config(true, false, new AllowedItem("Free", null, null)));
+        Map<String, WiFiItem> scan = new HashMap<>();
+        scan.put("Free", new WiFiItem("Free", "00:00:00:00:00:01", "[ESS]", -50));
+        scan.put("Cafe", new WiFiItem("Cafe", "00:00:00:00:00:02", "[ESS]", -50));
+        scan.put("Corp", new WiFiItem("Corp", "00:00:00:00:00:03", "[WPA2-PSK-CCMP][ESS]", -50));
+
+        Map<String, WiFiItem> result = new HashMap<>();
+        for (WiFiItem item : policy.createList(scan))
+            result.put(item.getSSID(), item);
+
+        assertTrue(result.get("Free").isAllowed());
+        assertFalse(result.get("Cafe").isAllowed());
+        assertTrue(result.get("Corp").isAllowed());
+    }
+
+    @Test
+    public void createList_empty() {
+        ArrayList<WiFiItem> result = new WiFiPolicy(null).createList(new HashMap<String, WiFiItem>());
+        assertEquals(1, result.size());
+        assertNull(result.get(0));
+    }
+
+    @Test
+    public void evaluate_returnsVerdict() {
+        WiFiPolicy policy = new WiFiPolicy(config(true, false,
+                new AllowedItem("Corp", null, null),
+                new AllowedItem(null, "aa:bb:cc:dd:ee:ff", "secret123")));
+
+        Verdict listed = policy.evaluate("corp", null, true);
+        assertTrue(listed.isAllowed());
+        assertFalse(listed.hasUserAction());
+        assertEquals(0, listed.getPriority());
+
+        assertTrue(policy.evaluate("Cafe", null, true).isAllowed());
+        assertFalse(policy.evaluate("Cafe", null, false).isAllowed());
+
+        // Both keys match different items: the first one wins, the password comes from the second
+        Verdict both = policy.evaluate("Corp", "AA:BB:CC:DD:EE:FF", true);
+        assertEquals(0, both.getPriority());
+        assertEquals("secret123", both.getPassword());
+        assertEquals(WiFiPolicy.Mode.PROTECTED_OR_LISTED, policy.getMode());
+    }
+
+    @Test
+    public void withWrongPassword_keepsConfig() {
+        AllowedItem item = new AllowedItem("Corp", null, "secret123");
+        MDMConfig config = config(false, false, item, new AllowedItem("", "", "ignored"));
+        WiFiPolicy policy = new WiFiPolicy(config);
+        assertEquals(1, policy.getAllowedList().size());
+
+        WiFiPolicy wrong = policy.withWrongPassword("CORP", "00:00:00:00:00:01");
+        assertTrue(wrong.evaluate("Corp", null, true).isWrong());
+        assertFalse(policy.evaluate("Corp", null, true).isWrong());
+        assertFalse(item.wrongPassword);
+        assertEquals(2, config.allowed.size());
+        assertSame(wrong, wrong.withWrongPassword("Corp", null));
+    }
+
+    @Test
+    public void policyHolder_publishesNewerVersions() {
+        PolicyHolder holder = new PolicyHolder();
+        assertFalse(holder.get().isConfigured());
+
+        WiFiPolicy first = holder.compile(config(false, false, new AllowedItem("Corp", null, null)));
+        WiFiPolicy second = holder.compile(config(true, true));
+        assertTrue(second.getVersion() > first.getVersion());
+        assertSame(second, holder.get());
+
+        holder.compile(config(false, false, new AllowedItem("Corp", null, null)));
+        WiFiPolicy marked = holder.markWrongPassword("Corp", null);
+        assertSame(marked, holder.get());
+        assertTrue(marked.isWrong("Corp", null));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.scan;
+
+import com.hmdm.wifimanager.model.Bssid;
+import com.hmdm.wifimanager.model.WiFiItem;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AccessPointCacheTest {
+    private static final String A = "00:00:00:00:00:01";
+    private static final String B = "00:00:00:00:00:02";
+
+    private static WiFiItem ap(String bssid, int level) {
+        return new WiFiItem("Corp", bssid, "[WPA2-PSK-CCMP][ESS]", level);
+    }
+
+    @Test
+    public void update_smoothsSignalLevel() {
+        AccessPointCache cache = new AccessPointCache(2, 0.5f);
+        WiFiItem first = ap(A, -60);
+        assertSame(first, cache.update(Collections.singletonList(first)).get(0));
+
+        List<WiFiItem> result = cache.update(Collections.singletonList(ap(A, -80)));
+        assertEquals(-70, result.get(0).getLevel());
+        assertEquals(-70, cache.getLevel(Bssid.parse(A)));
+
+        // Same rounded level: the item is reused
+        WiFiItem smoothed = result.get(0);
+        assertSame(smoothed, cache.update(Collections.singletonList(ap(A, -70))).get(0));
+    }
+
+    @Test
+    public void update_keepsMissingAccessPoints() {
+        AccessPointCache cache = new AccessPointCache(2, 1f);
+        WiFiItem a = ap(A, -50);
+        WiFiItem b = ap(B, -60);
+        cache.update(Arrays.asList(a, b));
+
+        List<WiFiItem> result = cache.update(Collections.singletonList(ap(A, -50)));
+        assertEquals(2, result.size());
+        assertTrue(result.contains(b));
+        assertEquals(1, cache.getMissed(Bssid.parse(B)));
+
+        cache.update(Collections.singletonList(ap(A, -50)));
+        assertEquals(2, cache.size());
+        result = cache.update(Collections.singletonList(ap(A, -50)));
+        assertEquals(1, result.size());
+        assertEquals(-1, cache.getMissed(Bssid.parse(B)));
+        assertEquals(Integer.MIN_VALUE, cache.getLevel(Bssid.parse(B)));
+    }
+
+    @Test
+    public void update_removalKeepsOtherSlots() {
+        AccessPointCache cache = new AccessPointCache(0, 0.5f);
+        cache.update(Arrays.asList(ap(A, -50), ap(B, -80)));
+
+        // A is removed, B moves into its slot and keeps its smoothed level
+        List<WiFiItem> result = cache.update(Collections.singletonList(ap(B, -60)));
+        assertEquals(1, result.size());
+        assertEquals(-70, result.get(0).getLevel());
+        assertEquals(-65, cache.update(Collections.singletonList(ap(B, -60))).get(0).getLevel());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.scan;
+
+import com.hmdm.wifimanager.model.Bssid;
+import com.hmdm.wifimanager.model.WiFiItem;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ScanDifferTest {
+    private static WiFiItem ap(String ssid, String bssid, int level) {
+        return new WiFiItem(ssid, bssid, "[WPA2-PSK-CCMP][ESS]", level);
+    }
+
+    @Test
+    public void update_reportsChangesAndKeepsUnchangedItems() {
+        ScanDiffer differ = new ScanDiffer();
+        WiFiItem a = ap("Corp", "00:00:00:00:00:01", -50);
+        WiFiItem b = ap("Corp", "00:00:00:00:00:02", -60);
+        WiFiItem c = ap("Guest", "00:00:00:00:00:03", -70);
+
+        ScanDelta first = differ.update(Arrays.asList(a, b, c), null);
+        assertEquals(3, first.getAdded().size());
+
+        // New objects for the same access points: a unchanged, b weaker, c gone, d new
+        WiFiItem a2 = ap("Corp", "00:00:00:00:00:01", -50);
+        WiFiItem b2 = ap("Corp", "00:00:00:00:00:02", -65);
+        WiFiItem d = ap("Cafe", "00:00:00:00:00:04", -80);
+        ScanDelta delta = differ.update(Arrays.asList(a2, b2, d), null);
+
+        assertEquals(Arrays.asList(d), delta.getAdded());
+        assertEquals(Arrays.asList(c), delta.getRemoved());
+        assertEquals(Arrays.asList(b2), delta.getChanged());
+        assertSame(a, differ.getIndex().getByBssid().get(Bssid.parse("00:00:00:00:00:01")));
+        assertSame(a, differ.getIndex().getItems().get(0));
+        assertTrue(delta.affects("Guest"));
+        assertFalse(delta.affects("Office"));
+
+        assertTrue(differ.update(Arrays.asList(a2, b2, d), null).isEmpty());
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.scan;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.model.Bssid;
+import com.hmdm.wifimanager.model.HiddenWiFiItem;
+import com.hmdm.wifimanager.model.WiFiItem;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ScanIndexTest {
+    private static WiFiItem ap(String ssid, String bssid, int level) {
+        return new WiFiItem(ssid, bssid, "[WPA2-PSK-CCMP][ESS]", level);
+    }
+
+    @Test
+    public void build_strongestAccessPointRepresentsNetwork() {
+        WiFiItem near = ap("Corp", "00:00:00:00:00:01", -40);
+        WiFiItem far = ap("Corp", "00:00:00:00:00:02", -85);
+        WiFiItem middle = ap("Corp", "00:00:00:00:00:03", -60);
+        WiFiItem guest = ap("Guest", "00:00:00:00:00:04", -70);
+
+        ScanIndex index = ScanIndex.build(Arrays.asList(near, far, middle, guest), null);
+
+        assertSame(near, index.getBySsid().get("Corp"));
+        assertEquals(Arrays.asList(near, middle, far), index.getGroup("Corp"));
+        assertSame(guest, index.getBySsid().get("Guest"));
+        assertEquals(4, index.getByBssid().size());
+        assertSame(far, index.getByBssid().get(Bssid.parse("00:00:00:00:00:02")));
+        assertNull(index.getGroup("Office"));
+    }
+
+    @Test
+    public void build_equalLevelsOrderedByBssid() {
+        WiFiItem second = ap("Corp", "00:00:00:00:00:02", -50);
+        WiFiItem first = ap("Corp", "00:00:00:00:00:01", -50);
+
+        ScanIndex index = ScanIndex.build(Arrays.asList(second, first), null);
+
+        assertSame(first, index.getBySsid().get("Corp"));
+        assertEquals(Arrays.asList(first, second), index.getGroup("Corp"));
+    }
+
+    @Test
+    public void build_skipsDuplicateBssidAndEmptySsid() {
+        WiFiItem a = ap("Corp", "00:00:00:00:00:01", -50);
+        WiFiItem duplicate = ap("Corp", "00:00:00:00:00:01", -40);
+        WiFiItem nameless = ap("", "00:00:00:00:00:05", -30);
+
+        ScanIndex index = ScanIndex.build(Arrays.asList(a, duplicate, nameless), null);
+
+        assertEquals(Arrays.asList(a, nameless), index.getItems());
+        assertSame(a, index.getBySsid().get("Corp"));
+        assertFalse(index.getBySsid().containsKey(""));
+        assertSame(nameless, index.getByBssid().get(Bssid.parse("00:00:00:00:00:05")));
+    }
+
+    @Test
+    public void build_addsHiddenNetworksNotInScan() {
+        AllowedItem visible = new AllowedItem();
+        visible.ssid = "Corp";
+        visible.hidden = true;
+        AllowedItem hidden = new AllowedItem();
+        hidden.ssid = "Secret";
+        hidden.hidden = true;
+        hidden.security = "WPA2-PSK-CCMP";
+        AllowedItem shown = new AllowedItem();
+        shown.ssid = "Lab";
+
+        WiFiItem corp = ap("Corp", "00:00:00:00:00:01", -50);
+        ScanIndex index = ScanIndex.build(Collections.singletonList(corp), Arrays.asList(visible, hidden, shown));
+
+        assertSame(corp, index.getBySsid().get("Corp"));
+        assertTrue(index.getBySsid().get("Secret") instanceof HiddenWiFiItem);
+        assertEquals(1, index.getGroup("Secret").size());
+        assertFalse(index.getBySsid().containsKey("Lab"));
+        assertEquals(1, index.getByBssid().size());
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.scan;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ScanSchedulerTest {
+    private static final long WINDOW = ScanScheduler.THROTTLE_WINDOW;
+
+    @Test
+    public void request_spendsTokensAndWaitsForTheOldest() {
+        ScanScheduler scheduler = new ScanScheduler(4, WINDOW, 1000, 1000, 1000);
+        long now = 1000000;
+        for (int i = 0; i < 4; i++) {
+            ScanScheduler.Decision decision = scheduler.request(now, "test", false);
+            assertEquals(ScanScheduler.Action.START, decision.getAction());
+            assertEquals(3 - i, decision.getTokens());
+            scheduler.onScanResults(now + 2000, now + 1500);
+            now += 10000;
+        }
+
+        ScanScheduler.Decision decision = scheduler.request(now, "test", false);
+        assertEquals(ScanScheduler.Action.THROTTLED, decision.getAction());
+        // The first token returns when the window has passed since the first scan
+        assertEquals(1000000 + WINDOW - now, decision.getDelay());
+
+        assertEquals(ScanScheduler.Action.START, scheduler.request(1000000 + WINDOW, "test", false).getAction());
+    }
+
+    @Test
+    public void request_mergesWhileScanRuns() {
+        ScanScheduler scheduler = new ScanScheduler(4, WINDOW, 1000, 1000, 1000);
+        assertEquals(ScanScheduler.Action.START, scheduler.request(0, "resume", false).getAction());
+        ScanScheduler.Decision decision = scheduler.request(500, "wifiEnabled", false);
+        assertEquals(ScanScheduler.Action.MERGED, decision.getAction());
+        assertEquals(ScanScheduler.SCAN_TIMEOUT - 500, decision.getDelay());
+        assertEquals(3, decision.getTokens());
+
+        // A lost scan doesn't block the scheduler forever
+        assertEquals(ScanScheduler.Action.START, scheduler.request(ScanScheduler.SCAN_TIMEOUT, "periodic", false).getAction());
+    }
+
+    @Test
+    public void request_periodicIntervalDependsOnState() {
+        ScanScheduler scheduler = new ScanScheduler(0, 0, 5000, 15000, 60000);
+        assertEquals(ScanScheduler.Action.START, scheduler.request(0, "periodic", true).getAction());
+        scheduler.onScanResults(1000, 800);
+        assertEquals(4000, scheduler.getNextDelay(1000));
+
+        scheduler.setState(ScanScheduler.State.CONNECTED_GOOD);
+        ScanScheduler.Decision decision = scheduler.request(6000, "periodic", true);
+        assertEquals(ScanScheduler.Action.DEFERRED, decision.getAction());
+        assertEquals(54000, decision.getDelay());
+        assertEquals(-1, decision.getTokens());
+
+        // Explicit requests ignore the interval
+        assertEquals(ScanScheduler.Action.START, scheduler.request(6000, "resume", false).getAction());
+    }
+
+    @Test
+    public void onStartResult_refusedScanBlocksUntilTokenReturns() {
+        ScanScheduler scheduler = ScanScheduler.create(true);
+        assertEquals(ScanScheduler.Action.START, scheduler.request(0, "resume", false).getAction());
+        scheduler.onStartResult(false, 0);
+        assertFalse(scheduler.isInFlight());
+
+        ScanScheduler.Decision decision = scheduler.request(1000, "periodic", false);
+        assertEquals(ScanScheduler.Action.THROTTLED, decision.getAction());
+        assertEquals(WINDOW / ScanScheduler.THROTTLE_SCANS - 1000, decision.getDelay());
+        assertEquals(2, scheduler.getHistory().size());
+        assertSame(decision, scheduler.getHistory().get(1));
+    }
+
+    @Test
+    public void request_freshPassiveResultsReplacePeriodicScan() {
+        ScanScheduler scheduler = new ScanScheduler(4, WINDOW, 30000, 60000, 120000);
+        assertEquals(ScanScheduler.Action.START, scheduler.request(0, "resume", false).getAction());
+        scheduler.onScanResults(2000, 1500);
+
+        // Another app scanned, the results are delivered while we don't scan
+        scheduler.onScanResults(20000, 19000);
+        ScanScheduler.Decision decision = scheduler.request(30000, "periodic", true);
+        assertEquals(ScanScheduler.Action.FRESH, decision.getAction());
+        assertEquals(19000, decision.getDelay());
+        assertEquals(19000, scheduler.getNextDelay(30000));
+        assertEquals(ScanScheduler.Action.START, scheduler.request(49000, "periodic", true).getAction());
+
+        // A shorter configured age: the interval since our own scan applies
+        scheduler.onScanResults(51000, 50000);
+        scheduler.onScanResults(60000, 59000);
+        scheduler.setMaxResultAge(5000);
+        assertEquals(ScanScheduler.Action.DEFERRED, scheduler.request(70000, "periodic", true).getAction());
+        assertEquals(ScanScheduler.Action.START, scheduler.request(79000, "periodic", true).getAction());
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.score;
+
+import com.hmdm.wifimanager.model.ScoringWeights;
+import com.hmdm.wifimanager.model.WiFiItem;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScoringEngineTest {
+    private static final String WPA2 = "[WPA2-PSK-CCMP][ESS]";
+
+    private static WiFiItem ap(String ssid, String bssid, String capabilities, int level, int frequency) {
+        return new WiFiItem(ssid, bssid, capabilities, level, frequency, 0);
+    }
+
+    private static ScoringEngine engine(ScoringWeights weights) {
+        return new ScoringEngine(new WeightedScorer(weights), new ConnectionHistory());
+    }
+
+    @Test
+    public void rank_strongestFirst() {
+        WiFiItem weak = ap("Weak", "00:00:00:00:00:01", WPA2, -85, 2412);
+        WiFiItem strong = ap("Strong", "00:00:00:00:00:02", WPA2, -50, 2412);
+
+        List<ScoringEngine.Score> ranking = engine(null).rank(Arrays.asList(weak, strong));
+        assertSame(strong, ranking.get(0).getAccessPoint());
+        assertSame(weak, ranking.get(1).getAccessPoint());
+    }
+
+    @Test
+    public void rank_preferredBandAndSecurity() {
+        WiFiItem band24 = ap("Corp", "00:00:00:00:00:01", WPA2, -60, 2437);
+        WiFiItem band5 = ap("Corp", "00:00:00:00:00:02", WPA2, -62, 5180);
+        assertSame(band5, engine(null).rank(Arrays.asList(band24, band5)).get(0).getAccessPoint());
+
+        WiFiItem open = ap("Guest", "00:00:00:00:00:03", "[ESS]", -60, 2437);
+        WiFiItem secure = ap("Corp", "00:00:00:00:00:04", WPA2, -60, 2437);
+        assertSame(secure, engine(null).rank(Arrays.asList(open, secure)).get(0).getAccessPoint());
+    }
+
+    @Test
+    public void rank_usesHistory() {
+        WiFiItem flaky = ap("Flaky", "00:00:00:00:00:01", WPA2, -55, 2412);
+        WiFiItem reliable = ap("Reliable", "00:00:00:00:00:02", WPA2, -60, 2412);
+        ScoringEngine engine = engine(null);
+        assertSame(flaky, engine.rank(Arrays.asList(flaky, reliable)).get(0).getAccessPoint());
+
+        for (int i = 0; i < 3; i++) {
+            engine.getHistory().recordFailure("flaky");
+            engine.getHistory().recordSuccess("Reliable", 1500);
+        }
+        assertSame(reliable, engine.rank(Arrays.asList(flaky, reliable)).get(0).getAccessPoint());
+        assertEquals(3, engine.getHistory().get("FLAKY").getAttempts());
+        assertEquals(0, engine.getHistory().get("FLAKY").getSuccesses());
+    }
+
+    @Test
+    public void rank_configurableWeights() {
+        WiFiItem strong = ap("Strong", "00:00:00:00:00:01", WPA2, -50, 2412);
+        WiFiItem band5 = ap("Fast", "00:00:00:00:00:02", WPA2, -75, 5180);
+        assertSame(strong, engine(null).rank(Arrays.asList(strong, band5)).get(0).getAccessPoint());
+
+        ScoringWeights weights = new ScoringWeights();
+        weights.rssi = 0.1;
+        weights.band = 1;
+        assertSame(band5, engine(weights).rank(Arrays.asList(strong, band5)).get(0).getAccessPoint());
+    }
+
+    @Test
+    public void rank_deterministicTies() {
+        WiFiItem b2 = ap("B", "00:00:00:00:00:02", WPA2, -60, 2412);
+        WiFiItem a = ap("A", "00:00:00:00:00:03", WPA2, -60, 2412);
+        WiFiItem b1 = ap("B", "00:00:00:00:00:01", WPA2, -60, 2412);
+
+        List<ScoringEngine.Score> first = engine(null).rank(Arrays.asList(b2, a, b1));
+        List<ScoringEngine.Score> second = engine(null).rank(Arrays.asList(b1, b2, a));
+        for (List<ScoringEngine.Score> ranking : Arrays.asList(first, second)) {
+            assertSame(a, ranking.get(0).getAccessPoint());
+            assertSame(b1, ranking.get(1).getAccessPoint());
+            assertSame(b2, ranking.get(2).getAccessPoint());
+        }
+    }
+
+    @Test
+    public void history_timeToIpAverage() {
+        ConnectionHistory history = new ConnectionHistory();
+        assertNull(history.get("Corp"));
+        history.recordSuccess("Corp", 1000);
+        assertEquals(1000, history.get("Corp").getTimeToIp());
+        history.recordSuccess("Corp", 2000);
+        assertEquals(1300, history.get("Corp").getTimeToIp());
+        assertEquals(1.0, WeightedScorer.rateTimeToIp(history.get("Corp")), 0.2);
+        assertEquals(0.5, WeightedScorer.rateSuccess(null), 0);
+    }
+}
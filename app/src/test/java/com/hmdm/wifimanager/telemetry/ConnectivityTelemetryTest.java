@@ -0,0 +1,87 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.telemetry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConnectivityTelemetryTest {
+    @Test
+    public void histogram_buckets() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals("n=0", histogram.toString());
+
+        for (int i = 0; i < 8; i++)
+            histogram.record(80);
+        histogram.record(400);
+        histogram.record(7000);
+        histogram.record(-1);
+
+        assertEquals(10, histogram.getCount());
+        assertEquals(7000, histogram.getMax());
+        assertEquals(804, histogram.getMean());
+        assertEquals(100, histogram.getPercentile(50));
+        assertEquals(500, histogram.getPercentile(90));
+        assertEquals(7000, histogram.getPercentile(100));
+        assertEquals("n=10, mean 804 ms, p50 100 ms, p90 500 ms, max 7000 ms", histogram.toString());
+
+        histogram.record(1000000);
+        assertEquals(1, histogram.getBucket(LatencyHistogram.getBucketCount() - 1));
+        assertEquals(1000000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void telemetry_byNetwork() {
+        ConnectivityTelemetry telemetry = new ConnectivityTelemetry();
+        telemetry.record(ConnectivityTelemetry.Stage.SCAN, null, 3000);
+        telemetry.record(ConnectivityTelemetry.Stage.CONNECT, "Corp", 1500);
+        telemetry.record(ConnectivityTelemetry.Stage.CONNECT, "CORP", 2500);
+        telemetry.record(ConnectivityTelemetry.Stage.CONNECT, "Guest", 900);
+
+        ConnectivityTelemetry.Snapshot snapshot = telemetry.getSnapshot();
+        assertEquals(1, snapshot.get(ConnectivityTelemetry.Stage.SCAN).getCount());
+        assertEquals(3, snapshot.get(ConnectivityTelemetry.Stage.CONNECT).getCount());
+        assertEquals(2, snapshot.get(ConnectivityTelemetry.Stage.CONNECT, "corp").getCount());
+        assertEquals(2000, snapshot.get(ConnectivityTelemetry.Stage.CONNECT, "Corp").getMean());
+        assertNull(snapshot.get(ConnectivityTelemetry.Stage.CONNECT, "Other"));
+        assertEquals("CONNECT: n=1, mean 900 ms, p50 900 ms, p90 900 ms, max 900 ms", snapshot.format("Guest"));
+
+        // The snapshot is a copy
+        telemetry.record(ConnectivityTelemetry.Stage.CONNECT, "Corp", 100);
+        assertEquals(2, snapshot.get(ConnectivityTelemetry.Stage.CONNECT, "Corp").getCount());
+        assertEquals(3, telemetry.getSnapshot().get(ConnectivityTelemetry.Stage.CONNECT, "Corp").getCount());
+    }
+
+    @Test
+    public void telemetry_evictsOldNetworks() {
+        ConnectivityTelemetry telemetry = new ConnectivityTelemetry();
+        for (int i = 0; i <= ConnectivityTelemetry.MAX_NETWORKS; i++)
+            telemetry.record(ConnectivityTelemetry.Stage.CONNECT, "network-" + i, 100);
+
+        ConnectivityTelemetry.Snapshot snapshot = telemetry.getSnapshot();
+        assertNull(snapshot.get(ConnectivityTelemetry.Stage.CONNECT, "network-0"));
+        assertNotNull(snapshot.get(ConnectivityTelemetry.Stage.CONNECT, "network-1"));
+        assertEquals(ConnectivityTelemetry.MAX_NETWORKS + 1, snapshot.get(ConnectivityTelemetry.Stage.CONNECT).getCount());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.benchmark;
+
+import com.hmdm.wifimanager.model.Capabilities;
+import com.hmdm.wifimanager.model.WiFiItem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Parsing of the capabilities strings of one scan. One operation parses all access points.
+ */
+@State(Scope.Benchmark)
+public class CapabilitiesBenchmark {
+    @Param({"50", "500", "5000"})
+    public int apCount;
+
+    private String[] capabilities;
+
+    @Setup
+    public void setup() {
+        List<WiFiItem> scan = ScanCorpus.scan(apCount, 1);
+        capabilities = new String[scan.size()];
+        for (int i = 0; i < capabilities.length; i++) {
+            capabilities[i] = scan.get(i).getCapabilities();
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        for (String item : capabilities) {
+            blackhole.consume(Capabilities.parse(item));
+        }
+    }
+}
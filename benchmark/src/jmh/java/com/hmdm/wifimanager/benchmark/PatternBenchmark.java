@@ -0,0 +1,116 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.benchmark;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.model.BssidRange;
+import com.hmdm.wifimanager.model.MDMConfig;
+import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.policy.AllowListIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+
+/**
+ * Matching of the scan against SSID patterns and BSSID ranges:
+ * the compiled trie and masked prefix table versus a linear scan of the rules.
+ * One operation matches all access points of one scan.
+ */
+@State(Scope.Benchmark)
+public class PatternBenchmark {
+    @Param({"500"})
+    public int apCount;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int ruleCount;
+
+    private List<WiFiItem> scan;
+    private List<AllowedItem> rules;
+    private BssidRange[] ranges;
+    private AllowListIndex index;
+
+    @Setup
+    public void setup() {
+        scan = ScanCorpus.scan(apCount, 1);
+        MDMConfig config = ScanCorpus.patternConfig(ruleCount, scan, 2);
+        rules = config.allowed;
+        ranges = new BssidRange[rules.size()];
+        for (int i = 0; i < ranges.length; i++)
+            ranges[i] = BssidRange.parse(rules.get(i).bssidRange);
+        index = new AllowListIndex(rules);
+    }
+
+    @Benchmark
+    public void compiled(Blackhole blackhole) {
+        for (WiFiItem item : scan) {
+            blackhole.consume(index.indexOf(item.getSSID(), item.getBssidKey()));
+        }
+    }
+
+    @Benchmark
+    public void linear(Blackhole blackhole) {
+        for (WiFiItem item : scan) {
+            blackhole.consume(linearIndexOf(item));
+        }
+    }
+
+    private int linearIndexOf(WiFiItem item) {
+        for (int i = 0; i < rules.size(); i++) {
+            AllowedItem rule = rules.get(i);
+            if ((rule.ssidPattern != null && glob(rule.ssidPattern, item.getSSID()))
+                    || (ranges[i] != null && ranges[i].matches(item.getBssidKey())))
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Case insensitive glob matching with backtracking on the last '*'.
+     */
+    private static boolean glob(String pattern, String s) {
+        int p = 0, i = 0, star = -1, mark = 0;
+        while (i < s.length()) {
+            if (p < pattern.length() && (pattern.charAt(p) == '?'
+                    || Character.toLowerCase(pattern.charAt(p)) == Character.toLowerCase(s.charAt(i)))) {
+                p++;
+                i++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                star = p++;
+                mark = i;
+            } else if (star >= 0) {
+                p = star + 1;
+                i = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*')
+            p++;
+        return p == pattern.length();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.benchmark;
+
+import com.hmdm.wifimanager.model.MDMConfig;
+import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.policy.WiFiPolicy;
+import com.hmdm.wifimanager.scan.ScanIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluation of the visible networks against the configuration.
+ * One operation evaluates all access points of one scan.
+ */
+@State(Scope.Benchmark)
+public class PolicyBenchmark {
+    @Param({"50", "500", "5000"})
+    public int apCount;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int allowedCount;
+
+    @Param({"ALL_ALLOWED", "PROTECTED_OR_LISTED", "LISTED_ONLY"})
+    public PolicyMode mode;
+
+    private List<WiFiItem> scan;
+    private Map<String, WiFiItem> ssidMap;
+    private WiFiPolicy policy;
+
+    @Setup
+    public void setup() {
+        scan = ScanCorpus.scan(apCount, 1);
+        MDMConfig config = ScanCorpus.config(mode, allowedCount, scan, 2);
+        ssidMap = ScanIndex.build(scan, config.allowed).getBySsid();
+        policy = new WiFiPolicy(config);
+    }
+
+    @Benchmark
+    public ArrayList<WiFiItem> createList() {
+        return policy.createList(ssidMap);
+    }
+
+    @Benchmark
+    public void evaluate(Blackhole blackhole) {
+        for (WiFiItem item : scan) {
+            blackhole.consume(policy.evaluate(item));
+        }
+    }
+
+    @Benchmark
+    public void isAllowed(Blackhole blackhole) {
+        for (WiFiItem item : scan) {
+            blackhole.consume(policy.isAllowed(item.getSSID(), item.getBSSID()));
+        }
+    }
+
+    @Benchmark
+    public void isWrong(Blackhole blackhole) {
+        for (WiFiItem item : scan) {
+            blackhole.consume(policy.isWrong(item.getSSID(), item.getBSSID()));
+        }
+    }
+
+    @Benchmark
+    public void getPasswordFromAllowed(Blackhole blackhole) {
+        for (WiFiItem item : scan) {
+            blackhole.consume(policy.getPasswordFromAllowed(item.getSSID(), item.getBSSID()));
+        }
+    }
+}
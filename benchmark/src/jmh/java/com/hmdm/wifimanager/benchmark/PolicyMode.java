@@ -0,0 +1,55 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.benchmark;
+
+import com.hmdm.wifimanager.model.MDMConfig;
+
+/**
+ * The three policy modes of MDMConfig.
+ */
+public enum PolicyMode {
+    /**
+     * allAllowed = true, all networks are allowed.
+     */
+    ALL_ALLOWED(true, true),
+    /**
+     * allAllowed = true, freeAllowed = false: protected networks and networks from the list are allowed.
+     */
+    PROTECTED_OR_LISTED(true, false),
+    /**
+     * allAllowed = false: only networks from the list are allowed.
+     */
+    LISTED_ONLY(false, false);
+
+    private final boolean allAllowed;
+    private final boolean freeAllowed;
+
+    PolicyMode(boolean allAllowed, boolean freeAllowed) {
+        this.allAllowed = allAllowed;
+        this.freeAllowed = freeAllowed;
+    }
+
+    void apply(MDMConfig config) {
+        config.allAllowed = allAllowed;
+        config.freeAllowed = freeAllowed;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.benchmark;
+
+import com.hmdm.wifimanager.model.AllowedItem;
+import com.hmdm.wifimanager.model.MDMConfig;
+import com.hmdm.wifimanager.model.WiFiItem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic, reproducible scanning results and configurations.
+ */
+public final class ScanCorpus {
+    /**
+     * Access points per SSID (a typical site has several APs with the same SSID).
+     */
+    public static final int BSSIDS_PER_SSID = 4;
+
+    private static final String[] CAPABILITIES = {
+            "[WPA2-PSK-CCMP][ESS]",
+            "[WPA2-PSK-CCMP][RSN-PSK-CCMP][ESS][WPS]",
+            "[WPA-PSK-TKIP+CCMP][WPA2-PSK-TKIP+CCMP][ESS]",
+            "[WPA2-EAP-CCMP][ESS]",
+            "[WPA2-EAP-CCMP][RSN-EAP-CCMP][ESS][MFPC]",
+            "[RSN-SAE-CCMP][ESS]",
+            "[WPA2-PSK+SAE-CCMP][ESS][MFPC]",
+            "[WEP][ESS]",
+            "[ESS]",
+            "[ESS][WPS]",
+    };
+
+    private ScanCorpus() {}
+
+    /**
+     * Generates the scanning results.
+     * @param apCount number of access points.
+     * @param seed random seed.
+     */
+    public static List<WiFiItem> scan(int apCount, long seed) {
+        Random random = new Random(seed);
+        List<WiFiItem> result = new ArrayList<>(apCount);
+        for (int i = 0; i < apCount; i++) {
+            int ssidIndex = i / BSSIDS_PER_SSID;
+            // Copy the strings: every scan delivers new String instances
+            String capabilities = new String(CAPABILITIES[ssidIndex % CAPABILITIES.length]);
+            result.add(new WiFiItem(ssid(ssidIndex), bssid(i), capabilities, -30 - random.nextInt(60)));
+        }
+        return result;
+    }
+
+    /**
+     * Generates the configuration.
+     * Half of the allowed networks are visible in the scan (listed in upper case to check the case-insensitive
+     * comparison), the others are not; every fourth item also has a BSSID, every 50th is hidden.
+     * @param mode policy mode.
+     * @param allowedCount number of allowed networks.
+     * @param scan scanning results.
+     * @param seed random seed.
+     */
+    public static MDMConfig config(PolicyMode mode, int allowedCount, List<WiFiItem> scan, long seed) {
+        Random random = new Random(seed);
+        MDMConfig config = new MDMConfig();
+        mode.apply(config);
+
+        int ssidCount = (scan.size() + BSSIDS_PER_SSID - 1) / BSSIDS_PER_SSID;
+        for (int i = 0; i < allowedCount; i++) {
+            AllowedItem item = new AllowedItem();
+            if (i % 2 == 0 && ssidCount > 0) {
+                int ssidIndex = random.nextInt(ssidCount);
+                item.ssid = ssid(ssidIndex).toUpperCase(Locale.US);
+                if (i % 4 == 0)
+                    item.bssid = bssid(Math.min(ssidIndex * BSSIDS_PER_SSID, scan.size() - 1)).toUpperCase(Locale.US);
+            } else {
+                item.ssid = "remote-" + i;
+                if (i % 4 == 1)
+                    item.bssid = bssid(1000000 + i);
+            }
+            item.password = "password-" + i;
+            item.hidden = i % 50 == 49;
+            if (item.hidden)
+                item.security = "WPA2-PSK-CCMP";
+            config.allowed.add(item);
+        }
+        return config;
+    }
+
+    /**
+     * Generates the configuration of SSID patterns and BSSID ranges, some of them matching the scan.
+     * @param ruleCount number of rules.
+     * @param scan scanning results.
+     * @param seed random seed.
+     */
+    public static MDMConfig patternConfig(int ruleCount, List<WiFiItem> scan, long seed) {
+        Random random = new Random(seed);
+        MDMConfig config = new MDMConfig();
+        PolicyMode.LISTED_ONLY.apply(config);
+
+        int ssidCount = (scan.size() + BSSIDS_PER_SSID - 1) / BSSIDS_PER_SSID;
+        for (int i = 0; i < ruleCount; i++) {
+            // A quarter of the rules may match the scan, the others are for remote sites
+            int index = i % 8 < 2 ? random.nextInt(Math.max(ssidCount, 1)) : 100000 + i;
+            AllowedItem item = new AllowedItem();
+            switch (i % 4) {
+                case 0:
+                    item.ssidPattern = "CORP-" + index + "*";
+                    break;
+                case 1:
+                    item.ssidPattern = "?orp-" + index;
+                    break;
+                case 2:
+                    item.bssidRange = bssid(index * BSSIDS_PER_SSID).substring(0, 12) + "*";
+                    break;
+                default:
+                    item.bssidRange = bssid(index * BSSIDS_PER_SSID) + "/44";
+                    break;
+            }
+            item.password = "password-" + i;
+            config.allowed.add(item);
+        }
+        return config;
+    }
+
+    private static String ssid(int index) {
+        return "corp-" + index;
+    }
+
+    private static String bssid(int index) {
+        return String.format(Locale.US, "02:00:%02x:%02x:%02x:%02x",
+                (index >> 24) & 0xff, (index >> 16) & 0xff, (index >> 8) & 0xff, index & 0xff);
+    }
+}
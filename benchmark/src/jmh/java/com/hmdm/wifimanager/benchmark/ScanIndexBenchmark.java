@@ -0,0 +1,92 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.benchmark;
+
+import com.hmdm.wifimanager.model.MDMConfig;
+import com.hmdm.wifimanager.model.WiFiItem;
+import com.hmdm.wifimanager.scan.AccessPointCache;
+import com.hmdm.wifimanager.scan.ScanDelta;
+import com.hmdm.wifimanager.scan.ScanDiffer;
+import com.hmdm.wifimanager.scan.ScanIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Building the lookup indexes from the scanning results. One operation processes one scan.
+ */
+@State(Scope.Benchmark)
+public class ScanIndexBenchmark {
+    @Param({"50", "500", "5000"})
+    public int apCount;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int allowedCount;
+
+    private List<WiFiItem> scan;
+    private List<WiFiItem> rescan;
+    private MDMConfig config;
+    private ScanDiffer differ;
+    private AccessPointCache cache;
+
+    @Setup
+    public void setup() {
+        scan = ScanCorpus.scan(apCount, 1);
+        // Same access points, new objects: about a quarter of them get a different signal level
+        rescan = ScanCorpus.scan(apCount, 1);
+        for (int i = 0; i < rescan.size(); i += 4) {
+            WiFiItem item = rescan.get(i);
+            rescan.set(i, new WiFiItem(item.getSSID(), item.getBSSID(), item.getCapabilities(), item.getLevel() - 1));
+        }
+        config = ScanCorpus.config(PolicyMode.LISTED_ONLY, allowedCount, scan, 2);
+        differ = new ScanDiffer();
+        cache = new AccessPointCache();
+    }
+
+    @Benchmark
+    public ScanIndex build() {
+        return ScanIndex.build(scan, config.allowed);
+    }
+
+    /**
+     * Diff of two alternating scans with a quarter of the access points changed.
+     */
+    @Benchmark
+    public ScanDelta diff() {
+        differ.update(scan, config.allowed);
+        return differ.update(rescan, config.allowed);
+    }
+
+    /**
+     * Signal smoothing of two alternating scans.
+     */
+    @Benchmark
+    public List<WiFiItem> smooth() {
+        cache.update(scan);
+        return cache.update(rescan);
+    }
+}
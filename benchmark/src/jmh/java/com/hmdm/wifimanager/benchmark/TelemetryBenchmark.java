@@ -0,0 +1,69 @@
+/*
+ * Headwind MDM: Open Source Android MDM Software
+ * https://h-mdm.com
+ *
+ * WiFi Manager Plugin
+ *
+ * Copyright (C) 2020 Headwind Solutions LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hmdm.wifimanager.benchmark;
+
+import com.hmdm.wifimanager.telemetry.ConnectivityTelemetry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Recording the latency of a connection. Should not allocate once the networks are known.
+ */
+@State(Scope.Benchmark)
+public class TelemetryBenchmark {
+    @Param({"1", "64"})
+    public int networkCount;
+
+    private ConnectivityTelemetry telemetry;
+    private String[] networks;
+    private int next;
+
+    @Setup
+    public void setup() {
+        telemetry = new ConnectivityTelemetry();
+        networks = new String[networkCount];
+        for (int i = 0; i < networkCount; i++) {
+            // Real SSIDs are mostly mixed case
+            networks[i] = (i % 2 == 0 ? "Corp-WiFi-" : "network-") + i;
+            telemetry.record(ConnectivityTelemetry.Stage.CONNECT, networks[i], 0);
+        }
+    }
+
+    /**
+     * Stages of a successful connection.
+     */
+    @Benchmark
+    public void record() {
+        String ssid = networks[next];
+        next = (next + 1) % networks.length;
+        long duration = 100 + next * 37;
+        telemetry.record(ConnectivityTelemetry.Stage.DECISION, ssid, 1);
+        telemetry.record(ConnectivityTelemetry.Stage.ENABLE, ssid, 12);
+        telemetry.record(ConnectivityTelemetry.Stage.ASSOCIATION, ssid, duration);
+        telemetry.record(ConnectivityTelemetry.Stage.OBTAINING_IP, ssid, duration * 3);
+        telemetry.record(ConnectivityTelemetry.Stage.CONNECT, ssid, duration * 4);
+    }
+}